@@ -0,0 +1,116 @@
+package com.eduardo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.StrategyAdaptive;
+import com.eduardo.boardingcards.StrategyLinearScan;
+import com.eduardo.boardingcards.StrategyParallelListRanking;
+import com.eduardo.boardingcards.StrategySharedChain;
+import com.eduardo.boardingcards.TripSorterStrategy;
+
+/**
+ * Mide las estrategias entre las que elige {@link StrategyAdaptive}, para calibrar
+ * sus umbrales en cada máquina.
+ * <p>
+ * Los benchmarks de viajes cortos comparan {@link StrategyLinearScan} con
+ * {@link StrategySharedChain}: el umbral del recorrido lineal es el número de tramos
+ * a partir del cual el índice es más rápido. Los de viajes largos comparan
+ * {@link StrategySharedChain} con {@link StrategyParallelListRanking} sin umbral: el
+ * umbral de paralelismo es el número de tramos a partir del cual la ordenación
+ * paralela es más rápida. En ambos casos se mide también {@link StrategyAdaptive}
+ * con los umbrales por defecto.
+ *
+ * @author eduardo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AdaptiveSortBenchmark {
+
+	private static final TripSorterStrategy LINEAR_SCAN = new StrategyLinearScan();
+	private static final TripSorterStrategy SHARED_CHAIN = new StrategySharedChain();
+	private static final TripSorterStrategy PARALLEL_RANKING = new StrategyParallelListRanking(0, ForkJoinPool.commonPool());
+	private static final TripSorterStrategy ADAPTIVE = new StrategyAdaptive();
+
+	@State(Scope.Benchmark)
+	public static class ShortTrip {
+
+		/**
+		 * Número de tramos del viaje
+		 */
+		@Param({ "2", "3", "4", "6", "8", "12", "16", "32" })
+		public int legs;
+
+		private List<BoardingCard> unsortedBoardingCards;
+
+		@Setup
+		public void setUp() {
+			unsortedBoardingCards = TripFixtures.unsortedTrip(legs);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class LongTrip {
+
+		/**
+		 * Número de tramos del viaje
+		 */
+		@Param({ "16384", "65536", "262144", "1000000" })
+		public int legs;
+
+		private List<BoardingCard> unsortedBoardingCards;
+
+		@Setup
+		public void setUp() {
+			unsortedBoardingCards = TripFixtures.unsortedTrip(legs);
+		}
+	}
+
+	@Benchmark
+	public List<BoardingCard> shortLinearScan(ShortTrip trip) {
+		return LINEAR_SCAN.sortTrip(trip.unsortedBoardingCards);
+	}
+
+	@Benchmark
+	public List<BoardingCard> shortSharedChain(ShortTrip trip) {
+		return SHARED_CHAIN.sortTrip(trip.unsortedBoardingCards);
+	}
+
+	@Benchmark
+	public List<BoardingCard> shortAdaptive(ShortTrip trip) {
+		return ADAPTIVE.sortTrip(trip.unsortedBoardingCards);
+	}
+
+	@Benchmark
+	public List<BoardingCard> longSharedChain(LongTrip trip) {
+		return SHARED_CHAIN.sortTrip(trip.unsortedBoardingCards);
+	}
+
+	@Benchmark
+	public List<BoardingCard> longParallelRanking(LongTrip trip) {
+		return PARALLEL_RANKING.sortTrip(trip.unsortedBoardingCards);
+	}
+
+	@Benchmark
+	public List<BoardingCard> longAdaptive(LongTrip trip) {
+		return ADAPTIVE.sortTrip(trip.unsortedBoardingCards);
+	}
+}
@@ -0,0 +1,34 @@
+package com.eduardo.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los benchmarks con el profiler de recolección de basura de JMH, que añade
+ * a cada resultado la tasa de reserva de memoria (gc.alloc.rate y
+ * gc.alloc.rate.norm, bytes reservados por operación).
+ * <p>
+ * Admite como primer argumento una expresión regular para elegir los benchmarks a
+ * ejecutar; por defecto se ejecutan todos los del paquete.
+ * <p>
+ * {@code
+ * java -cp target/benchmarks.jar com.eduardo.benchmark.BenchmarkRunner SortTripBenchmark
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*";
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,84 @@
+package com.eduardo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eduardo.boardingcards.AeroplaneBoardingCardFactory;
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.BoardingCardFactory;
+import com.eduardo.boardingcards.BusBoardingCardFactory;
+import com.eduardo.boardingcards.TrainBoardingCardFactory;
+import com.eduardo.location.Place;
+
+/**
+ * Mide la construcción de tarjetas de embarque a través de cada implementación de
+ * {@link BoardingCardFactory}, tanto la llamada a la factoría por sí sola como la
+ * construcción completa con la cadena de métodos set que se usa en Main.
+ *
+ * @author eduardo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardingCardFactoryBenchmark {
+
+	/**
+	 * Factoría de tarjetas de embarque: avión, tren o autobús
+	 */
+	@Param({ "aeroplane", "train", "bus" })
+	public String type;
+
+	private BoardingCardFactory factory;
+
+	private Place departure;
+
+	private Place destination;
+
+	@Setup
+	public void setUp() {
+		switch (type) {
+		case "aeroplane":
+			factory = new AeroplaneBoardingCardFactory();
+			break;
+		case "train":
+			factory = new TrainBoardingCardFactory();
+			break;
+		case "bus":
+			factory = new BusBoardingCardFactory();
+			break;
+		default:
+			throw new IllegalArgumentException("Tipo de tarjeta desconocido: " + type);
+		}
+		departure = TripFixtures.place(0);
+		destination = TripFixtures.place(1);
+	}
+
+	@Benchmark
+	public BoardingCard createBoardingCard() {
+		return factory.createBoardingCard();
+	}
+
+	@Benchmark
+	public BoardingCard createAndFillBoardingCard() {
+		return factory.createBoardingCard()
+				.setIdentifier("001")
+				.setSeat("45B")
+				.setDeparture(departure)
+				.setDestination(destination);
+	}
+}
@@ -0,0 +1,110 @@
+package com.eduardo.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eduardo.boardingcards.BoardingCardLineFormatter;
+import com.eduardo.boardingcards.StrategyExternalMemory;
+
+/**
+ * Mide la ordenación de un fichero de tarjetas de embarque con
+ * {@link StrategyExternalMemory#sortFile(Path, Path)} para viajes desde 100.000 hasta
+ * 50 millones de tramos, con un presupuesto de memoria fijo de 16 MB y un heap de
+ * 512 MB. A partir de unos pocos millones de tramos el fichero de entrada ya no cabe
+ * en el heap, de modo que la medida muestra cómo evoluciona el rendimiento cuando los
+ * datos superan la memoria disponible. Dividiendo el número de tramos entre el tiempo
+ * medio se obtienen los tramos ordenados por segundo.
+ * <p>
+ * El fichero de entrada se genera una sola vez por cada tamaño, escribiendo las
+ * tarjetas desordenadas directamente en disco para no tener que crearlas todas en
+ * memoria.
+ *
+ * @author eduardo
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class ExternalSortBenchmark {
+
+	/**
+	 * Presupuesto de memoria de la estrategia, en bytes
+	 */
+	private static final long MEMORY_BUDGET = 16L << 20;
+
+	/**
+	 * Multiplicador con el que se desordenan los tramos: la posición i del fichero
+	 * contiene el tramo (i * SHUFFLE_MULTIPLIER) mod legs
+	 */
+	private static final long SHUFFLE_MULTIPLIER = 2_654_435_761L;
+
+	/**
+	 * Número de tramos del viaje
+	 */
+	@Param({ "100000", "1000000", "10000000", "50000000" })
+	public int legs;
+
+	private Path directory;
+	private Path input;
+	private Path output;
+	private StrategyExternalMemory strategy;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("external-sort-benchmark");
+		input = directory.resolve("unsorted.txt");
+		output = directory.resolve("sorted.txt");
+		strategy = new StrategyExternalMemory(directory, MEMORY_BUDGET);
+		long multiplier = SHUFFLE_MULTIPLIER;
+		while (gcd(multiplier, legs) != 1) {
+			multiplier++;
+		}
+		try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+			for (long position = 0; position < legs; position++) {
+				int leg = (int) (position * multiplier % legs);
+				BoardingCardLineFormatter.format(
+						TripFixtures.boardingCard(leg, TripFixtures.place(leg), TripFixtures.place(leg + 1)), writer);
+				writer.newLine();
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public Path sortFile() throws IOException {
+		strategy.sortFile(input, output);
+		return output;
+	}
+
+	private static long gcd(long a, long b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+}
@@ -0,0 +1,65 @@
+package com.eduardo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eduardo.boardingcards.BoardingCard;
+
+/**
+ * Mide {@link BoardingCard#showInfo()} para cada tipo de tarjeta de embarque.
+ *
+ * @author eduardo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShowInfoBenchmark {
+
+	/**
+	 * Tipo de tarjeta de embarque: avión, tren o autobús
+	 */
+	@Param({ "aeroplane", "train", "bus" })
+	public String type;
+
+	private BoardingCard bcard;
+
+	@Setup
+	public void setUp() {
+		// TripFixtures alterna avión, tren y autobús según la posición del tramo
+		int leg;
+		switch (type) {
+		case "aeroplane":
+			leg = 3;
+			break;
+		case "train":
+			leg = 1;
+			break;
+		case "bus":
+			leg = 2;
+			break;
+		default:
+			throw new IllegalArgumentException("Tipo de tarjeta desconocido: " + type);
+		}
+		bcard = TripFixtures.boardingCard(leg, TripFixtures.place(leg), TripFixtures.place(leg + 1));
+	}
+
+	@Benchmark
+	public String showInfo() {
+		return bcard.showInfo();
+	}
+}
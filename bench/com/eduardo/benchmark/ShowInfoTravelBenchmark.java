@@ -0,0 +1,127 @@
+package com.eduardo.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.StrategyNoStartNoEnd;
+import com.eduardo.boardingcards.Trip;
+
+/**
+ * Mide la generación del texto completo de un viaje ya ordenado con
+ * {@link Trip#showInfoTravel()} para viajes desde 4 hasta 10 millones de tramos, y
+ * su escritura directa en un flujo de salida con
+ * {@link Trip#writeInfoTravel(OutputStream)}.
+ * <p>
+ * El viaje de 10 millones de tramos se mide en sus propios benchmarks,
+ * {@link #showInfoTravelLarge(LargeTrips)} y {@link #writeInfoTravelLarge(LargeTrips)},
+ * que son los únicos que reservan un heap de 12 GB, para que el resto de tamaños
+ * pueda ejecutarse en máquinas con menos memoria.
+ *
+ * @author eduardo
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ShowInfoTravelBenchmark {
+
+	/**
+	 * Flujo de salida que descarta todo lo que se escribe en él
+	 */
+	private static final OutputStream DISCARD = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	/**
+	 * Viajes ordenados de hasta un millón de tramos
+	 */
+	@State(Scope.Benchmark)
+	public static class Trips {
+
+		/**
+		 * Número de tramos del viaje
+		 */
+		@Param({ "4", "16", "1000", "100000", "1000000" })
+		public int legs;
+
+		private Trip trip;
+
+		@Setup
+		public void setUp() {
+			trip = sortedTrip(legs);
+		}
+	}
+
+	/**
+	 * Viajes ordenados de 10 millones de tramos
+	 */
+	@State(Scope.Benchmark)
+	public static class LargeTrips {
+
+		/**
+		 * Número de tramos del viaje
+		 */
+		@Param("10000000")
+		public int legs;
+
+		private Trip trip;
+
+		@Setup
+		public void setUp() {
+			trip = sortedTrip(legs);
+		}
+	}
+
+	@Benchmark
+	public String showInfoTravel(Trips trips) {
+		return trips.trip.showInfoTravel();
+	}
+
+	@Benchmark
+	public void writeInfoTravel(Trips trips) throws IOException {
+		trips.trip.writeInfoTravel(DISCARD);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Xms12g", "-Xmx12g" })
+	public String showInfoTravelLarge(LargeTrips trips) {
+		return trips.trip.showInfoTravel();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Xms12g", "-Xmx12g" })
+	public void writeInfoTravelLarge(LargeTrips trips) throws IOException {
+		trips.trip.writeInfoTravel(DISCARD);
+	}
+
+	private static Trip sortedTrip(int legs) {
+		List<BoardingCard> boardingCards = TripFixtures.sortedTrip(legs);
+		Trip trip = new Trip(boardingCards);
+		trip.setOrderingTravelStrategy(new StrategyNoStartNoEnd());
+		trip.sortTrip(boardingCards);
+		return trip;
+	}
+}
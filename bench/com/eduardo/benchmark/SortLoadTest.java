@@ -0,0 +1,239 @@
+package com.eduardo.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.BoardingCardLineFormatter;
+import com.eduardo.boardingcards.SortRequestCoalescer;
+import com.eduardo.boardingcards.StrategySharedChain;
+import com.eduardo.mainapp.SortServer;
+import com.eduardo.metrics.LatencyHistogram;
+
+/**
+ * Prueba de carga local de {@link SortServer}: arranca el servicio en un puerto libre
+ * (o usa el indicado), y durante el tiempo indicado varios clientes concurrentes
+ * envían el mismo viaje desordenado tan rápido como pueden. Al terminar muestra las
+ * peticiones por segundo y los percentiles 50, 99 y máximo de la latencia de las
+ * peticiones, medida en los clientes.
+ * <p>
+ * A diferencia del resto de benchmarks, no usa JMH: mide el servicio completo,
+ * incluidas la red local y la serialización de la respuesta. Cada cliente mantiene
+ * abierta su conexión y envía cada petición con una única escritura y sin el
+ * algoritmo de Nagle, para que la medida no incluya las esperas de los clientes HTTP
+ * que envían la cabecera y el cuerpo por separado.
+ * <p>
+ * Argumentos, todos opcionales: número de tramos del viaje (6), número de clientes
+ * concurrentes (64), duración en segundos (30), formato de respuesta (text o json),
+ * tamaño máximo de lote del {@link SortRequestCoalescer} del servicio (0, sin lotes) y
+ * URL de un servicio ya arrancado, en cuyo caso se ignora el tamaño de lote.
+ * <p>
+ * {@code
+ * java -cp target/benchmarks.jar com.eduardo.benchmark.SortLoadTest 6 64 30 json 64
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class SortLoadTest {
+
+	/**
+	 * Duración del calentamiento previo a la medida, en segundos
+	 */
+	private static final int WARMUP_SECONDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int legs = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		String format = args.length > 3 ? args[3] : "text";
+		int maxBatchSize = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+		SortServer server = null;
+		SortRequestCoalescer coalescer = null;
+		String url;
+		if (args.length > 5) {
+			url = args[5];
+		} else {
+			InetSocketAddress address = new InetSocketAddress("localhost", 0);
+			if (maxBatchSize > 0) {
+				coalescer = new SortRequestCoalescer(new StrategySharedChain(), maxBatchSize,
+						SortRequestCoalescer.DEFAULT_MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+				server = new SortServer(address, coalescer, SortServer.DEFAULT_MAX_BODY_SIZE);
+			} else {
+				server = new SortServer(address);
+			}
+			server.start();
+			url = "http://localhost:" + server.getPort() + SortServer.SORT_PATH;
+		}
+		URI uri = URI.create("json".equals(format) ? url + "?format=json" : url);
+		byte[] request = request(uri, TripFixtures.unsortedTrip(legs));
+
+		try {
+			System.out.printf("Calentamiento: %d s%n", WARMUP_SECONDS);
+			run(uri, request, clients, WARMUP_SECONDS, new LatencyHistogram(), new LongAdder());
+
+			LatencyHistogram latency = new LatencyHistogram();
+			LongAdder errors = new LongAdder();
+			long start = System.nanoTime();
+			run(uri, request, clients, seconds, latency, errors);
+			double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("Tramos por viaje: %d, clientes: %d, formato: %s, lote máximo: %d%n", legs, clients, format,
+					maxBatchSize);
+			if (coalescer != null && coalescer.getBatchCount() > 0) {
+				System.out.printf("Tamaño medio de lote: %.1f%n",
+						(double) coalescer.getRequestCount() / coalescer.getBatchCount());
+			}
+			System.out.printf("Peticiones: %d (%d errores) en %.1f s%n", latency.getCount(), errors.sum(), elapsedSeconds);
+			System.out.printf("Peticiones por segundo: %.0f%n", latency.getCount() / elapsedSeconds);
+			System.out.printf("Latencia p50: %d us, p99: %d us, máxima: %d us%n",
+					TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(50)),
+					TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(99)),
+					TimeUnit.NANOSECONDS.toMicros(latency.getMax()));
+		} finally {
+			if (server != null) {
+				server.stop(0);
+			}
+			if (coalescer != null) {
+				coalescer.close();
+			}
+		}
+	}
+
+	/**
+	 * Envía peticiones desde varios clientes concurrentes durante el tiempo indicado
+	 */
+	private static void run(URI uri, byte[] request, int clients, int seconds,
+			LatencyHistogram latency, LongAdder errors) throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ExecutorService workers = Executors.newFixedThreadPool(clients);
+		try {
+			List<Future<?>> futures = new ArrayList<>(clients);
+			for (int c = 0; c < clients; c++) {
+				futures.add(workers.submit(() -> {
+					Socket socket = null;
+					while (System.nanoTime() < deadline) {
+						long start = System.nanoTime();
+						try {
+							if (socket == null) {
+								socket = connect(uri);
+							}
+							if (send(socket, request) != 200) {
+								errors.increment();
+							}
+						} catch (IOException e) {
+							errors.increment();
+							socket = close(socket);
+						}
+						latency.record(System.nanoTime() - start);
+					}
+					close(socket);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	private static Socket connect(URI uri) throws IOException {
+		Socket socket = new Socket(uri.getHost(), uri.getPort() < 0 ? 80 : uri.getPort());
+		socket.setTcpNoDelay(true);
+		return socket;
+	}
+
+	private static Socket close(Socket socket) {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// La conexión ya no se usa
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Envía una petición por una conexión abierta y lee la respuesta completa, que
+	 * debe indicar su longitud
+	 * @return El código de estado de la respuesta
+	 */
+	private static int send(Socket socket, byte[] request) throws IOException {
+		OutputStream out = socket.getOutputStream();
+		out.write(request);
+		out.flush();
+		InputStream in = new BufferedInputStream(socket.getInputStream());
+		String statusLine = readLine(in);
+		int status = Integer.parseInt(statusLine.substring(9, 12));
+		long contentLength = -1;
+		for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+			int colon = header.indexOf(':');
+			if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+				contentLength = Long.parseLong(header.substring(colon + 1).trim());
+			}
+		}
+		if (contentLength < 0) {
+			throw new IOException("La respuesta no indica su longitud");
+		}
+		for (long remaining = contentLength; remaining > 0; remaining--) {
+			if (in.read() < 0) {
+				throw new EOFException();
+			}
+		}
+		return status;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b < 0) {
+				throw new EOFException();
+			}
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+		return line.toString(StandardCharsets.ISO_8859_1.name());
+	}
+
+	/**
+	 * Genera la petición HTTP completa, con la cabecera y el cuerpo con las tarjetas de
+	 * embarque, una por línea
+	 */
+	private static byte[] request(URI uri, List<BoardingCard> boardingCards) {
+		StringBuilder body = new StringBuilder(boardingCards.size() * 96);
+		for (BoardingCard bcard : boardingCards) {
+			body.append(BoardingCardLineFormatter.format(bcard)).append('\n');
+		}
+		byte[] bodyBytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		String path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+		byte[] header = ("POST " + path + " HTTP/1.1\r\n"
+				+ "Host: " + uri.getHost() + ":" + uri.getPort() + "\r\n"
+				+ "Content-Type: text/plain; charset=UTF-8\r\n"
+				+ "Content-Length: " + bodyBytes.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+		byte[] request = new byte[header.length + bodyBytes.length];
+		System.arraycopy(header, 0, request, 0, header.length);
+		System.arraycopy(bodyBytes, 0, request, header.length, bodyBytes.length);
+		return request;
+	}
+}
@@ -0,0 +1,92 @@
+package com.eduardo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.StrategyNoStartNoEnd;
+
+/**
+ * Mide la ordenación de un viaje con {@link StrategyNoStartNoEnd#sortTrip(List)}
+ * para viajes desde 4 hasta 10 millones de tramos.
+ * <p>
+ * Se crea una estrategia nueva en cada invocación, igual que hacen hoy los usuarios
+ * de la API, de modo que la reserva de sus tablas forma parte de la medida.
+ * <p>
+ * El viaje de 10 millones de tramos se mide en su propio benchmark,
+ * {@link #sortTripLarge(LargeTrips)}, que es el único que reserva un heap de 12 GB,
+ * para que el resto de tamaños pueda ejecutarse en máquinas con menos memoria.
+ *
+ * @author eduardo
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SortTripBenchmark {
+
+	/**
+	 * Viajes desordenados de hasta un millón de tramos
+	 */
+	@State(Scope.Benchmark)
+	public static class Trips {
+
+		/**
+		 * Número de tramos del viaje
+		 */
+		@Param({ "4", "16", "1000", "100000", "1000000" })
+		public int legs;
+
+		private List<BoardingCard> unsortedBoardingCards;
+
+		@Setup
+		public void setUp() {
+			unsortedBoardingCards = TripFixtures.unsortedTrip(legs);
+		}
+	}
+
+	/**
+	 * Viajes desordenados de 10 millones de tramos
+	 */
+	@State(Scope.Benchmark)
+	public static class LargeTrips {
+
+		/**
+		 * Número de tramos del viaje
+		 */
+		@Param("10000000")
+		public int legs;
+
+		private List<BoardingCard> unsortedBoardingCards;
+
+		@Setup
+		public void setUp() {
+			unsortedBoardingCards = TripFixtures.unsortedTrip(legs);
+		}
+	}
+
+	@Benchmark
+	public List<BoardingCard> sortTrip(Trips trips) {
+		return new StrategyNoStartNoEnd().sortTrip(trips.unsortedBoardingCards);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Xms12g", "-Xmx12g" })
+	public List<BoardingCard> sortTripLarge(LargeTrips trips) {
+		return new StrategyNoStartNoEnd().sortTrip(trips.unsortedBoardingCards);
+	}
+}
@@ -0,0 +1,109 @@
+package com.eduardo.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.eduardo.boardingcards.AeroplaneBoardingCard;
+import com.eduardo.boardingcards.AeroplaneBoardingCardFactory;
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.BoardingCardFactory;
+import com.eduardo.boardingcards.BusBoardingCardFactory;
+import com.eduardo.boardingcards.TrainBoardingCardFactory;
+import com.eduardo.location.Place;
+import com.eduardo.transport.Train;
+
+/**
+ * Genera los datos de entrada de los benchmarks: viajes sintéticos formados por una
+ * cadena de tarjetas de embarque de avión, tren y autobús que se alternan.
+ * <p>
+ * Los viajes se generan siempre con la misma semilla para que todas las ejecuciones
+ * midan exactamente la misma entrada.
+ *
+ * @author eduardo
+ *
+ */
+public final class TripFixtures {
+
+	/**
+	 * Semilla para desordenar las tarjetas de embarque
+	 */
+	private static final long SEED = 20161018L;
+
+	private static final BoardingCardFactory AEROPLANE_FACTORY = new AeroplaneBoardingCardFactory();
+	private static final BoardingCardFactory TRAIN_FACTORY = new TrainBoardingCardFactory();
+	private static final BoardingCardFactory BUS_FACTORY = new BusBoardingCardFactory();
+
+	private TripFixtures() {
+	}
+
+	/**
+	 * Genera las tarjetas de embarque de un viaje con el número de tramos indicado,
+	 * ordenadas desde el origen hasta el destino final
+	 * @param legs Número de tramos del viaje
+	 * @return Las tarjetas de embarque del viaje ordenadas
+	 */
+	public static List<BoardingCard> sortedTrip(int legs) {
+		List<BoardingCard> boardingCards = new ArrayList<>(legs);
+		Place departure = place(0);
+		for (int leg = 0; leg < legs; leg++) {
+			Place destination = place(leg + 1);
+			boardingCards.add(boardingCard(leg, departure, destination));
+			departure = destination;
+		}
+		return boardingCards;
+	}
+
+	/**
+	 * Genera las tarjetas de embarque de un viaje con el número de tramos indicado,
+	 * desordenadas
+	 * @param legs Número de tramos del viaje
+	 * @return Las tarjetas de embarque del viaje desordenadas
+	 */
+	public static List<BoardingCard> unsortedTrip(int legs) {
+		List<BoardingCard> boardingCards = sortedTrip(legs);
+		Collections.shuffle(boardingCards, new Random(SEED));
+		return boardingCards;
+	}
+
+	/**
+	 * Genera una tarjeta de embarque del tipo que corresponde a la posición del
+	 * tramo: avión, tren y autobús de forma alterna
+	 * @param leg Posición del tramo en el viaje
+	 * @param departure Lugar de salida
+	 * @param destination Lugar de llegada
+	 * @return La tarjeta de embarque
+	 */
+	public static BoardingCard boardingCard(int leg, Place departure, Place destination) {
+		BoardingCard bcard;
+		switch (leg % 3) {
+		case 0:
+			bcard = ((AeroplaneBoardingCard) AEROPLANE_FACTORY.createBoardingCard())
+					.setFlightNumber("SK" + leg)
+					.setGate("G" + (leg % 50))
+					.setBaggageTicketCounter(leg % 2 == 0 ? null : Integer.toString(leg % 400));
+			break;
+		case 1:
+			bcard = TRAIN_FACTORY.createBoardingCard().setTransport(new Train("T" + leg));
+			break;
+		default:
+			bcard = BUS_FACTORY.createBoardingCard();
+			break;
+		}
+		return bcard
+				.setIdentifier(Integer.toString(leg))
+				.setSeat((leg % 40) + "A")
+				.setDeparture(departure)
+				.setDestination(destination);
+	}
+
+	/**
+	 * Genera el lugar correspondiente a una parada del viaje
+	 * @param stop Posición de la parada en el viaje
+	 * @return El lugar de la parada
+	 */
+	public static Place place(int stop) {
+		return new Place("place-" + stop, "City " + stop, "Country " + (stop % 200));
+	}
+}
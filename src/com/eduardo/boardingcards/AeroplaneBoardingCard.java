@@ -1,5 +1,7 @@
 package com.eduardo.boardingcards;
 
+import java.io.IOException;
+
 public class AeroplaneBoardingCard extends BoardingCard {
 
 	private String flightNumber;
@@ -78,16 +80,21 @@ public class AeroplaneBoardingCard extends BoardingCard {
 
 	@Override
 	public String showInfo() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("From ").append(getDeparture().getCity()).append(" Airport, take flight ")
+		return writeInfoToString();
+	}
+
+	@Override
+	public void writeInfo(Appendable out) throws IOException {
+		out.append("From ").append(getDeparture().getCity()).append(" Airport, take flight ")
 			.append(getFlightNumber()).append(" to ").append(getDestination().getCity())
 			.append(". ").append(getGate()).append(", seat ").append(getGate())
 			.append(".");
-		sb = getBaggageTicketCounter() == null
-				? sb.append("Baggage will be automatically transferred from your last leg")
-				: sb.append("Baggage drop at ticket counter").append(getBaggageTicketCounter());
-		sb.append("\n");
-		return sb.toString();
+		if (getBaggageTicketCounter() == null) {
+			out.append("Baggage will be automatically transferred from your last leg");
+		} else {
+			out.append("Baggage drop at ticket counter").append(getBaggageTicketCounter());
+		}
+		out.append("\n");
 	}
 	
 
@@ -0,0 +1,166 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Permite ordenar en paralelo un gran número de viajes independientes, por ejemplo
+ * los viajes de todos los pasajeros de un día.
+ * <p>
+ * Los viajes se reparten entre los hilos de un {@link ForkJoinPool} dividiendo
+ * recursivamente el lote en tramos, de modo que los hilos que terminan antes roban
+ * trabajo a los demás. Cada hilo del pool obtiene su propia estrategia de ordenación
+ * a partir de la factoría indicada y la reutiliza para todos los viajes que ordena,
+ * por lo que las tablas y arrays auxiliares de la estrategia no se comparten entre
+ * hilos ni se vuelven a reservar para cada viaje.
+ * <p>
+ * {@code
+ * BatchTripSorter sorter = new BatchTripSorter(StrategySharedChain::new, 8);
+ * List<List<BoardingCard>> sortedTrips = sorter.sortTrips(unsortedTrips);
+ * sorter.close();
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class BatchTripSorter implements AutoCloseable {
+
+	/**
+	 * Número de tramos en los que se intenta dividir el lote por cada hilo del pool,
+	 * para que el reparto de trabajo se equilibre aunque los viajes tengan longitudes
+	 * muy distintas
+	 */
+	private static final int SPLITS_PER_THREAD = 8;
+
+	/**
+	 * Pool de hilos en el que se ordenan los viajes
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Indica si el pool ha sido creado por esta clase y, por tanto, debe cerrarse en
+	 * {@link #close()}
+	 */
+	private final boolean ownsPool;
+
+	/**
+	 * Estrategia de ordenación de cada hilo del pool
+	 */
+	private final ThreadLocal<TripSorterStrategy> strategies;
+
+	/**
+	 * Construye un ordenador por lotes que usa {@link StrategySharedChain} sobre el
+	 * pool común de la JVM
+	 */
+	public BatchTripSorter() {
+		this(StrategySharedChain::new, ForkJoinPool.commonPool(), false);
+	}
+
+	/**
+	 * Construye un ordenador por lotes con su propio pool de hilos
+	 * @param strategyFactory Factoría que crea la estrategia de ordenación de cada hilo
+	 * @param parallelism Número de hilos del pool
+	 */
+	public BatchTripSorter(Supplier<? extends TripSorterStrategy> strategyFactory, int parallelism) {
+		this(strategyFactory, new ForkJoinPool(parallelism), true);
+	}
+
+	/**
+	 * Construye un ordenador por lotes sobre un pool de hilos existente. El pool no se
+	 * cierra al cerrar el ordenador
+	 * @param strategyFactory Factoría que crea la estrategia de ordenación de cada hilo
+	 * @param pool Pool de hilos en el que se ordenan los viajes
+	 */
+	public BatchTripSorter(Supplier<? extends TripSorterStrategy> strategyFactory, ForkJoinPool pool) {
+		this(strategyFactory, pool, false);
+	}
+
+	private BatchTripSorter(Supplier<? extends TripSorterStrategy> strategyFactory, ForkJoinPool pool,
+			boolean ownsPool) {
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.strategies = ThreadLocal.withInitial(strategyFactory);
+	}
+
+	/**
+	 * Ordena un lote de viajes independientes en paralelo
+	 * <p>
+	 * Coste computacional del método: O(n / p), siendo n el número total de tarjetas
+	 * y p el número de hilos del pool
+	 * @param unsortedTrips Listados de tarjetas de embarque desordenadas, uno por viaje
+	 * @return Los listados de tarjetas de embarque ordenadas, en el mismo orden en el
+	 * que se recibieron los viajes
+	 */
+	public List<List<BoardingCard>> sortTrips(Collection<List<BoardingCard>> unsortedTrips) {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<BoardingCard>[] trips = unsortedTrips.toArray(new List[unsortedTrips.size()]);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<BoardingCard>[] sortedTrips = new List[trips.length];
+		if (trips.length > 0) {
+			int threshold = Math.max(1, trips.length / (pool.getParallelism() * SPLITS_PER_THREAD));
+			pool.invoke(new SortRangeAction(trips, sortedTrips, 0, trips.length, threshold));
+		}
+		return new ArrayList<>(Arrays.asList(sortedTrips));
+	}
+
+	/**
+	 * Permite obtener el número de hilos del pool en el que se ordenan los viajes
+	 * @return El número de hilos del pool
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Cierra el pool de hilos si fue creado por este ordenador
+	 */
+	@Override
+	public void close() {
+		if (ownsPool) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tarea que ordena los viajes de un tramo del lote, dividiéndolo en dos mitades
+	 * mientras su tamaño supere el umbral
+	 */
+	private class SortRangeAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<BoardingCard>[] trips;
+		private final List<BoardingCard>[] sortedTrips;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		SortRangeAction(List<BoardingCard>[] trips, List<BoardingCard>[] sortedTrips, int from, int to,
+				int threshold) {
+			this.trips = trips;
+			this.sortedTrips = sortedTrips;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				TripSorterStrategy strategy = strategies.get();
+				for (int i = from; i < to; i++) {
+					sortedTrips[i] = strategy.sortTrip(trips[i]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new SortRangeAction(trips, sortedTrips, from, middle, threshold),
+					new SortRangeAction(trips, sortedTrips, middle, to, threshold));
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package com.eduardo.boardingcards;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 
 import com.eduardo.location.Place;
@@ -113,8 +115,9 @@ public abstract class BoardingCard {
 		identifier = "000000";
 		transport = null;
 		seat = "";
+		// LocalDateTime es inmutable, por lo que ambas fechas pueden compartir la misma lectura del reloj
 		departureDate = LocalDateTime.now();
-		arrivalDate = LocalDateTime.now();
+		arrivalDate = departureDate;
 		transportCompany = null;
 		owner = null;
 		denied = false;
@@ -397,4 +400,35 @@ public abstract class BoardingCard {
 	 */
 	public abstract String showInfo();
 
+	/**
+	 * Escribe la información contenida en una tarjeta de embarque directamente en el
+	 * destino indicado, sin construir una cadena de texto intermedia.
+	 * <p>
+	 * Las subclases deberían sobrescribir este método para escribir cada fragmento
+	 * del texto en el destino. La implementación por defecto escribe el resultado de
+	 * {@link #showInfo()}.
+	 * @param out Destino en el que se escribe la información
+	 * @throws IOException si se produce un error al escribir en el destino
+	 */
+	public void writeInfo(Appendable out) throws IOException {
+		out.append(showInfo());
+	}
+
+	/**
+	 * Permite obtener en una cadena de texto la información que escribe el método
+	 * {@link #writeInfo(Appendable)}. Pensado para que las subclases que sobrescriben
+	 * dicho método implementen {@link #showInfo()} a partir de él.
+	 * @return La información contenida en la tarjeta de embarque
+	 */
+	protected String writeInfoToString() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeInfo(sb);
+		} catch (IOException e) {
+			// StringBuilder nunca lanza IOException
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
 }
@@ -0,0 +1,129 @@
+package com.eduardo.boardingcards;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.eduardo.location.Place;
+import com.eduardo.transport.Train;
+
+/**
+ * Escribe tarjetas de embarque en el formato de texto que lee
+ * {@link MappedBoardingCardLoader}: una tarjeta por línea, con los campos separados
+ * por punto y coma.
+ * <pre>
+ * tipo;identificador;asiento;idSalida;ciudadSalida;paísSalida;idLlegada;ciudadLlegada;paísLlegada[;extra...]
+ * </pre>
+ * Los campos nulos se escriben vacíos. El formato no admite caracteres de escape, por
+ * lo que un campo que contenga un punto y coma o un final de línea no puede escribirse.
+ *
+ * @author eduardo
+ *
+ */
+public final class BoardingCardLineFormatter {
+
+	private static final char SEPARATOR = ';';
+
+	private BoardingCardLineFormatter() {
+	}
+
+	/**
+	 * Escribe una tarjeta de embarque como una línea de texto, sin el final de línea
+	 * @param bcard La tarjeta de embarque
+	 * @param out Destino de la línea
+	 * @throws IOException si se produce un error al escribir en el destino
+	 * @throws IllegalArgumentException si el tipo de tarjeta no tiene representación
+	 * en el formato, o algún campo contiene un punto y coma o un final de línea
+	 */
+	public static void format(BoardingCard bcard, Appendable out) throws IOException {
+		out.append(type(bcard));
+		appendField(out, bcard.getIdentifier());
+		appendField(out, bcard.getSeat());
+		appendPlace(out, bcard.getDeparture());
+		appendPlace(out, bcard.getDestination());
+		if (bcard instanceof AeroplaneBoardingCard) {
+			AeroplaneBoardingCard aeroplaneCard = (AeroplaneBoardingCard) bcard;
+			appendField(out, aeroplaneCard.getFlightNumber());
+			appendField(out, aeroplaneCard.getGate());
+			appendField(out, aeroplaneCard.getBaggageTicketCounter());
+		} else if (bcard instanceof TrainBoardingCard && bcard.getTransport() instanceof Train) {
+			appendField(out, ((Train) bcard.getTransport()).getTrainNumber());
+		}
+	}
+
+	/**
+	 * Permite obtener una tarjeta de embarque como una línea de texto
+	 * @param bcard La tarjeta de embarque
+	 * @return La línea de texto, sin el final de línea
+	 * @throws IllegalArgumentException si el tipo de tarjeta no tiene representación
+	 * en el formato, o algún campo contiene un punto y coma o un final de línea
+	 */
+	public static String format(BoardingCard bcard) {
+		StringBuilder line = new StringBuilder(128);
+		try {
+			format(bcard, line);
+		} catch (IOException e) {
+			// StringBuilder no lanza IOException
+			throw new IllegalStateException(e);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Escribe un listado de tarjetas de embarque en un fichero codificado en UTF-8, una
+	 * tarjeta por línea
+	 * @param boardingCards Listado de tarjetas de embarque
+	 * @param file Fichero de destino, que se crea o se sobrescribe
+	 * @throws IOException si se produce un error al escribir el fichero
+	 */
+	public static void write(List<BoardingCard> boardingCards, Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (BoardingCard bcard : boardingCards) {
+				format(bcard, writer);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Permite obtener el nombre del tipo de una tarjeta de embarque, tal como se
+	 * escribe en la primera columna de su línea
+	 * @param bcard La tarjeta de embarque
+	 * @return El tipo de tarjeta: aeroplane, train o bus
+	 * @throws IllegalArgumentException si el tipo de tarjeta no tiene formato de línea
+	 */
+	public static String type(BoardingCard bcard) {
+		if (bcard instanceof AeroplaneBoardingCard) {
+			return "aeroplane";
+		} else if (bcard instanceof TrainBoardingCard) {
+			return "train";
+		} else if (bcard instanceof BusBoardingCard) {
+			return "bus";
+		}
+		throw new IllegalArgumentException("Tipo de tarjeta de embarque sin formato de línea: "
+				+ bcard.getClass().getName());
+	}
+
+	private static void appendPlace(Appendable out, Place place) throws IOException {
+		appendField(out, place.getIdentifier());
+		appendField(out, place.getCity());
+		appendField(out, place.getCountry());
+	}
+
+	private static void appendField(Appendable out, String value) throws IOException {
+		out.append(SEPARATOR);
+		if (value == null) {
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == SEPARATOR || c == '\n' || c == '\r') {
+				throw new IllegalArgumentException("El campo no puede contener ';' ni finales de línea: " + value);
+			}
+		}
+		out.append(value);
+	}
+}
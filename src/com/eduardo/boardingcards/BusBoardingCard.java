@@ -1,17 +1,24 @@
 package com.eduardo.boardingcards;
 
+import java.io.IOException;
+
 public class BusBoardingCard extends BoardingCard {
 
 	@Override
 	public String showInfo() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("Take the airport bus from ").append(getDeparture().getCity()).append(" to ")
+		return writeInfoToString();
+	}
+
+	@Override
+	public void writeInfo(Appendable out) throws IOException {
+		out.append("Take the airport bus from ").append(getDeparture().getCity()).append(" to ")
 			.append(getDestination().getCity()).append(".");
-		sb = getSeat() == null
-				? sb.append("No seat assignment")
-				: sb.append("Seat ").append(getSeat());
-		sb.append("\n");
-		return sb.toString();
+		if (getSeat() == null) {
+			out.append("No seat assignment");
+		} else {
+			out.append("Seat ").append(getSeat());
+		}
+		out.append("\n");
 	}
 
 }
@@ -0,0 +1,112 @@
+package com.eduardo.boardingcards;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reserva de buffers de bytes de tamaño fijo que se reutilizan entre peticiones, para
+ * no reservar un buffer nuevo cada vez que se escribe un viaje.
+ * <p>
+ * Los buffers pueden ser directos (fuera del heap de Java), de modo que su contenido
+ * se pueda escribir en un canal sin copias intermedias, o buffers normales del heap.
+ * La reserva guarda como máximo el número de buffers indicado; los buffers que se
+ * devuelven cuando ya está llena se descartan.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class ByteBufferPool {
+
+	/**
+	 * Tamaño por defecto de cada buffer, en bytes
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Número máximo por defecto de buffers guardados en la reserva
+	 */
+	public static final int DEFAULT_MAX_POOLED = 64;
+
+	/**
+	 * Tamaño de cada buffer, en bytes
+	 */
+	private final int bufferSize;
+
+	/**
+	 * Indica si los buffers son directos
+	 */
+	private final boolean direct;
+
+	/**
+	 * Buffers disponibles para su reutilización
+	 */
+	private final BlockingQueue<ByteBuffer> available;
+
+	/**
+	 * Construye una reserva de buffers directos con el tamaño y número máximo de
+	 * buffers por defecto
+	 */
+	public ByteBufferPool() {
+		this(DEFAULT_BUFFER_SIZE, true, DEFAULT_MAX_POOLED);
+	}
+
+	/**
+	 * Construye una reserva de buffers
+	 * @param bufferSize Tamaño de cada buffer, en bytes
+	 * @param direct true para reservar buffers directos, fuera del heap de Java; false
+	 * para reservar buffers del heap
+	 * @param maxPooled Número máximo de buffers guardados en la reserva
+	 */
+	public ByteBufferPool(int bufferSize, boolean direct, int maxPooled) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("El tamaño del buffer debe ser positivo: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		this.direct = direct;
+		this.available = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+	}
+
+	/**
+	 * Obtiene un buffer vacío de la reserva, o reserva uno nuevo si no hay ninguno
+	 * disponible
+	 * @return Un buffer vacío, listo para escribir en él
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = available.poll();
+		if (buffer == null) {
+			return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Devuelve un buffer a la reserva para que pueda reutilizarse. El buffer no debe
+	 * usarse después de devolverlo
+	 * @param buffer El buffer obtenido previamente con {@link #acquire()}
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer.capacity() == bufferSize && buffer.isDirect() == direct) {
+			available.offer(buffer);
+		}
+	}
+
+	/**
+	 * Permite obtener el tamaño de cada buffer de la reserva
+	 * @return El tamaño de cada buffer, en bytes
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Permite saber si los buffers de la reserva son directos
+	 * @return true si los buffers son directos, false si son buffers del heap
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+}
@@ -0,0 +1,310 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.eduardo.location.Place;
+
+/**
+ * Estrategia de ordenación que guarda en una caché el orden de los últimos viajes
+ * ordenados, de modo que volver a ordenar el mismo conjunto de tarjetas de embarque
+ * (por ejemplo, cuando un pasajero vuelve a abrir la aplicación) no repite la
+ * ordenación. La ordenación se delega en otra estrategia (patrón Decorator).
+ * <p>
+ * Cada conjunto de tarjetas se identifica por una huella que no depende del orden de
+ * las tarjetas: para cada tarjeta se calcula un hash de 64 bits a partir de su
+ * identificador y de los identificadores de sus lugares de salida y de llegada, y la
+ * huella combina la suma y el xor de dichos hashes, la suma de los hashes
+ * remezclados y el número de tarjetas. La caché guarda, para cada huella, la
+ * secuencia de hashes de las tarjetas en el orden del viaje, y al acertar se
+ * reconstruye la lista ordenada con las tarjetas recibidas.
+ * Si las tarjetas recibidas no encajan con la secuencia guardada (dos tarjetas con el
+ * mismo hash, o una colisión de huellas) se considera un fallo y se ordena de nuevo.
+ * <p>
+ * La caché tiene un número máximo de entradas y, al superarlo, descarta el viaje
+ * usado hace más tiempo (LRU). Los aciertos y fallos se cuentan para poder
+ * monitorizar la eficacia de la caché.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos siempre que la
+ * estrategia en la que delega también lo sea, como {@link StrategySharedChain}.
+ * <p>
+ * {@code
+ * TripSorterStrategy strategy = new CachingTripSorter(new StrategySharedChain(), 10000);
+ * trip.setOrderingTravelStrategy(strategy);
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class CachingTripSorter implements TripSorterStrategy {
+
+	/**
+	 * Valor de la tabla de reconstrucción que indica una posición libre
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * Valor de la tabla de reconstrucción que indica una tarjeta ya colocada
+	 */
+	private static final int USED = -2;
+
+	/**
+	 * Estrategia en la que se delega la ordenación cuando el viaje no está en la caché
+	 */
+	private final TripSorterStrategy delegate;
+
+	/**
+	 * Número máximo de viajes guardados en la caché
+	 */
+	private final int maxEntries;
+
+	/**
+	 * Caché de viajes ordenados: para cada huella, los hashes de las tarjetas en el
+	 * orden del viaje. El orden de iteración es el de acceso, de modo que el primer
+	 * elemento es el usado hace más tiempo
+	 */
+	private final LinkedHashMap<Fingerprint, long[]> cache;
+
+	/**
+	 * Número de ordenaciones resueltas con la caché
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Número de ordenaciones delegadas en la estrategia
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Construye la estrategia
+	 * @param delegate Estrategia en la que se delega la ordenación
+	 * @param maxEntries Número máximo de viajes guardados en la caché
+	 */
+	public CachingTripSorter(TripSorterStrategy delegate, int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("El tamaño de la caché debe ser positivo: " + maxEntries);
+		}
+		this.delegate = delegate;
+		this.maxEntries = maxEntries;
+		this.cache = new LinkedHashMap<Fingerprint, long[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Fingerprint, long[]> eldest) {
+				return size() > CachingTripSorter.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje. Si el
+	 * mismo conjunto de tarjetas se ordenó recientemente, el orden se obtiene de la
+	 * caché sin ejecutar la estrategia.
+	 * <p>
+	 * Coste computacional del método: O(n) en caso de acierto, más el coste de la
+	 * estrategia en caso de fallo
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		int cardCount = boardingCards.size();
+		long[] cardHashes = new long[cardCount];
+		for (int card = 0; card < cardCount; card++) {
+			cardHashes[card] = cardHash(boardingCards.get(card));
+		}
+		Fingerprint fingerprint = new Fingerprint(cardHashes);
+
+		long[] order;
+		synchronized (cache) {
+			order = cache.get(fingerprint);
+		}
+		if (order != null) {
+			List<BoardingCard> sortedCards = reorder(boardingCards, cardHashes, order);
+			if (sortedCards != null) {
+				hits.increment();
+				return sortedCards;
+			}
+		}
+
+		misses.increment();
+		List<BoardingCard> sortedCards = delegate.sortTrip(boardingCards);
+		if (sortedCards.size() == cardCount) {
+			long[] sortedHashes = new long[cardCount];
+			for (int position = 0; position < cardCount; position++) {
+				sortedHashes[position] = cardHash(sortedCards.get(position));
+			}
+			synchronized (cache) {
+				cache.put(fingerprint, sortedHashes);
+			}
+		}
+		return sortedCards;
+	}
+
+	/**
+	 * Permite obtener el número de ordenaciones resueltas con la caché
+	 * @return El número de aciertos de la caché
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Permite obtener el número de ordenaciones que no estaban en la caché y se
+	 * delegaron en la estrategia
+	 * @return El número de fallos de la caché
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Permite obtener el número de viajes guardados en la caché
+	 * @return El número de viajes guardados
+	 */
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Vacía la caché. Los contadores de aciertos y fallos no se modifican
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Reconstruye la lista ordenada de tarjetas a partir de la secuencia de hashes
+	 * guardada en la caché
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Tarjetas de embarque recibidas
+	 * @param cardHashes Hash de cada tarjeta recibida
+	 * @param order Hashes de las tarjetas en el orden del viaje
+	 * @return Las tarjetas recibidas en el orden del viaje, o null si no encajan con
+	 * la secuencia de hashes
+	 */
+	private static List<BoardingCard> reorder(List<BoardingCard> boardingCards, long[] cardHashes, long[] order) {
+		if (order.length != cardHashes.length) {
+			return null;
+		}
+		// Tabla hash con direccionamiento abierto de hash de tarjeta a su posición
+		int capacity = Integer.highestOneBit(Math.max(cardHashes.length * 2 - 1, 1)) << 1;
+		int mask = capacity - 1;
+		long[] keys = new long[capacity];
+		int[] cards = new int[capacity];
+		Arrays.fill(cards, EMPTY);
+		for (int card = 0; card < cardHashes.length; card++) {
+			int slot = (int) cardHashes[card] & mask;
+			while (cards[slot] != EMPTY) {
+				if (keys[slot] == cardHashes[card]) {
+					return null;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = cardHashes[card];
+			cards[slot] = card;
+		}
+		List<BoardingCard> sortedCards = new ArrayList<>(order.length);
+		for (long hash : order) {
+			int slot = (int) hash & mask;
+			while (cards[slot] != EMPTY && keys[slot] != hash) {
+				slot = (slot + 1) & mask;
+			}
+			if (cards[slot] < 0) {
+				return null;
+			}
+			sortedCards.add(boardingCards.get(cards[slot]));
+			cards[slot] = USED;
+		}
+		return sortedCards;
+	}
+
+	/**
+	 * Calcula el hash de 64 bits de una tarjeta a partir de su identificador y de los
+	 * identificadores de sus lugares de salida y de llegada
+	 */
+	private static long cardHash(BoardingCard bcard) {
+		long hash = hash(0x243F6A8885A308D3L, bcard.getIdentifier());
+		hash = hash(hash, placeIdentifier(bcard.getDeparture()));
+		hash = hash(hash, placeIdentifier(bcard.getDestination()));
+		return mix(hash);
+	}
+
+	private static String placeIdentifier(Place place) {
+		return place == null ? null : place.getIdentifier();
+	}
+
+	/**
+	 * Añade una cadena de texto a un hash de 64 bits, incluyendo su longitud para que
+	 * la concatenación de varias cadenas no sea ambigua
+	 */
+	private static long hash(long hash, String value) {
+		if (value == null) {
+			return (hash ^ 0xFFL) * 0x100000001B3L;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+		}
+		return (hash ^ value.length()) * 0x9E3779B97F4A7C15L;
+	}
+
+	/**
+	 * Mezcla los bits de un hash de 64 bits (función final de SplitMix64)
+	 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+
+	/**
+	 * Huella de un conjunto de tarjetas de embarque que no depende de su orden
+	 */
+	private static final class Fingerprint {
+
+		private final long sum;
+		private final long xor;
+		private final long mixedSum;
+		private final int count;
+
+		Fingerprint(long[] cardHashes) {
+			long sum = 0;
+			long xor = 0;
+			long mixedSum = 0;
+			for (long hash : cardHashes) {
+				sum += hash;
+				xor ^= hash;
+				mixedSum += mix(hash);
+			}
+			this.sum = sum;
+			this.xor = xor;
+			this.mixedSum = mixedSum;
+			this.count = cardHashes.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(sum ^ mixedSum * 31) * 31 + count;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Fingerprint)) {
+				return false;
+			}
+			Fingerprint other = (Fingerprint) obj;
+			return sum == other.sum && xor == other.xor && mixedSum == other.mixedSum && count == other.count;
+		}
+	}
+}
@@ -0,0 +1,453 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.eduardo.location.PlaceDictionary;
+import com.eduardo.metrics.BuildTablesEvent;
+import com.eduardo.metrics.InitialCardEvent;
+import com.eduardo.metrics.SortCardsEvent;
+import com.eduardo.metrics.TripPhaseEvent;
+
+/**
+ * Índice del encadenamiento de un conjunto de tarjetas de embarque construido sobre
+ * arrays de tipos primitivos.
+ * <p>
+ * Cada lugar de salida o de llegada se traduce una única vez a un número entero
+ * denso mediante un {@link PlaceDictionary}, y a partir de ahí el índice guarda:
+ * <ul>
+ * <li>Para cada tarjeta, el número de su lugar de salida y de su lugar de llegada</li>
+ * <li>Para cada lugar, la tarjeta que sale de él (sucesor) y la tarjeta que llega
+ * a él (predecesor)</li>
+ * </ul>
+ * Con estas tablas se averigua la tarjeta inicial del viaje y se recorre la cadena
+ * sin tablas hash de cadenas de texto ni objetos intermedios por cada tarjeta.
+ *
+ * @author eduardo
+ *
+ */
+final class ChainIndex {
+
+	/**
+	 * Valor usado en los arrays para indicar que no existe tarjeta o lugar
+	 */
+	static final int NONE = -1;
+
+	/**
+	 * Diccionario de lugares del viaje
+	 */
+	private final PlaceDictionary places;
+
+	/**
+	 * Tarjetas de embarque indexadas, en el orden en el que se recibieron
+	 */
+	private BoardingCard[] cards;
+
+	/**
+	 * Número del lugar de salida de cada tarjeta
+	 */
+	private int[] departurePlace;
+
+	/**
+	 * Número del lugar de llegada de cada tarjeta
+	 */
+	private int[] destinationPlace;
+
+	/**
+	 * Para cada lugar, la tarjeta cuyo lugar de salida es dicho lugar (sucesor)
+	 */
+	private int[] cardByDeparture;
+
+	/**
+	 * Para cada lugar, la tarjeta cuyo lugar de llegada es dicho lugar (predecesor)
+	 */
+	private int[] cardByDestination;
+
+	/**
+	 * Número de tarjetas indexadas
+	 */
+	private int size;
+
+	/**
+	 * Construye un índice vacío con capacidad para el número de tarjetas indicado
+	 * @param expectedCards Número de tarjetas que se espera indexar
+	 */
+	ChainIndex(int expectedCards) {
+		int capacity = Math.max(expectedCards, 1);
+		places = new PlaceDictionary(capacity * 2);
+		cards = new BoardingCard[capacity];
+		departurePlace = new int[capacity];
+		destinationPlace = new int[capacity];
+		cardByDeparture = newEmptyTable(capacity * 2);
+		cardByDestination = newEmptyTable(capacity * 2);
+	}
+
+	/**
+	 * Indexa un listado de tarjetas de embarque. El índice debe estar vacío.
+	 * <p>
+	 * Si varias tarjetas comparten lugar de salida (o de llegada), prevalece la
+	 * última, igual que en las tablas de {@link StrategyNoStartNoEnd}.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque
+	 */
+	void build(List<BoardingCard> boardingCards) {
+		build(boardingCards, null);
+	}
+
+	/**
+	 * Indexa un listado de tarjetas de embarque igual que {@link #build(List)}, y
+	 * registra la construcción de las tablas como un {@link BuildTablesEvent} de JFR
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque
+	 * @param strategy Nombre de la estrategia que ordena las tarjetas
+	 */
+	void buildTables(List<BoardingCard> boardingCards, String strategy) {
+		BuildTablesEvent event = new BuildTablesEvent();
+		event.begin();
+		String outcome = TripPhaseEvent.FAILURE;
+		try {
+			build(boardingCards);
+			outcome = TripPhaseEvent.SUCCESS;
+		} finally {
+			event.finish(boardingCards == null ? 0 : boardingCards.size(), strategy, outcome);
+		}
+	}
+
+	/**
+	 * Indexa un listado de tarjetas de embarque, registrando las tarjetas repetidas y
+	 * las bifurcaciones que se detectan al rellenar las tablas. El índice debe estar
+	 * vacío.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque
+	 * @param anomalies Lista a la que se añaden las anomalías detectadas, o null para
+	 * no registrarlas
+	 */
+	void build(List<BoardingCard> boardingCards, List<TripAnomaly> anomalies) {
+		ensureCardCapacity(boardingCards.size());
+		for (BoardingCard bcard : boardingCards) {
+			int card = size++;
+			int departure = places.intern(bcard.getDeparture().getIdentifier());
+			int destination = places.intern(bcard.getDestination().getIdentifier());
+			ensurePlaceCapacity(places.size());
+			cards[card] = bcard;
+			departurePlace[card] = departure;
+			destinationPlace[card] = destination;
+			if (anomalies != null) {
+				checkCollisions(card, anomalies);
+			}
+			cardByDeparture[departure] = card;
+			cardByDestination[destination] = card;
+		}
+	}
+
+	/**
+	 * Comprueba si una tarjeta que se va a indexar comparte lugar de salida o de
+	 * llegada con otra tarjeta ya indexada
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param card Posición de la tarjeta
+	 * @param anomalies Lista a la que se añaden las anomalías detectadas
+	 */
+	private void checkCollisions(int card, List<TripAnomaly> anomalies) {
+		int departure = departurePlace[card];
+		int destination = destinationPlace[card];
+		int sameDeparture = cardByDeparture[departure];
+		if (sameDeparture != NONE) {
+			if (destinationPlace[sameDeparture] == destination) {
+				anomalies.add(new TripAnomaly(TripAnomaly.Type.DUPLICATE, cards[card], cards[card].getDeparture(),
+						"La tarjeta " + cards[card].getIdentifier() + " repite el tramo de la tarjeta "
+								+ cards[sameDeparture].getIdentifier()));
+				return;
+			}
+			anomalies.add(new TripAnomaly(TripAnomaly.Type.FORK, cards[card], cards[card].getDeparture(),
+					"Las tarjetas " + cards[sameDeparture].getIdentifier() + " y " + cards[card].getIdentifier()
+							+ " salen del mismo lugar"));
+		}
+		int sameDestination = cardByDestination[destination];
+		if (sameDestination != NONE && departurePlace[sameDestination] != departure) {
+			anomalies.add(new TripAnomaly(TripAnomaly.Type.FORK, cards[card], cards[card].getDestination(),
+					"Las tarjetas " + cards[sameDestination].getIdentifier() + " y " + cards[card].getIdentifier()
+							+ " llegan al mismo lugar"));
+		}
+	}
+
+	/**
+	 * Permite obtener la tarjeta en la que comienza el viaje: aquella cuyo lugar de
+	 * salida no figura como lugar de llegada de ninguna tarjeta.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @return La posición de la tarjeta inicial, o {@link #NONE} si no se puede
+	 * averiguar donde comienza el viaje
+	 */
+	int initialCard() {
+		for (int card = 0; card < size; card++) {
+			int departure = departurePlace[card];
+			if (cardByDestination[departure] == NONE && cardByDeparture[departure] == card) {
+				return card;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Permite obtener la tarjeta en la que comienza el viaje igual que
+	 * {@link #initialCard()}, y registra la búsqueda como un {@link InitialCardEvent}
+	 * de JFR
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param strategy Nombre de la estrategia que ordena las tarjetas
+	 * @return La posición de la tarjeta inicial, o {@link #NONE} si no se puede
+	 * averiguar donde comienza el viaje
+	 */
+	int initialCard(String strategy) {
+		InitialCardEvent event = new InitialCardEvent();
+		event.begin();
+		int initialCard = initialCard();
+		event.finish(size, strategy, initialCard == NONE ? TripPhaseEvent.NOT_FOUND : TripPhaseEvent.SUCCESS);
+		return initialCard;
+	}
+
+	/**
+	 * Permite obtener la tarjeta que continúa el viaje tras una tarjeta dada
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param card Posición de la tarjeta
+	 * @return La posición de la tarjeta siguiente, o {@link #NONE} si es la última
+	 */
+	int nextCard(int card) {
+		return cardByDeparture[destinationPlace[card]];
+	}
+
+	/**
+	 * Permite obtener la tarjeta que precede a una tarjeta dada en el viaje
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param card Posición de la tarjeta
+	 * @return La posición de la tarjeta anterior, o {@link #NONE} si es la primera
+	 */
+	int previousCard(int card) {
+		return cardByDestination[departurePlace[card]];
+	}
+
+	/**
+	 * Permite obtener la tarjeta de embarque indexada en una posición
+	 * @param card Posición de la tarjeta
+	 * @return La tarjeta de embarque
+	 */
+	BoardingCard card(int card) {
+		return cards[card];
+	}
+
+	/**
+	 * Permite obtener el número de tarjetas indexadas
+	 * @return El número de tarjetas indexadas
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Permite obtener el número de tarjetas que el índice puede contener sin ampliar
+	 * sus arrays
+	 * @return La capacidad del índice
+	 */
+	int capacity() {
+		return cards.length;
+	}
+
+	/**
+	 * Vacía el índice conservando la memoria reservada para poder reutilizarlo con
+	 * otro listado de tarjetas. Sólo se restauran las posiciones de los arrays que
+	 * se usaron, y se liberan las referencias a las tarjetas indexadas.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 */
+	void reset() {
+		for (int card = 0; card < size; card++) {
+			cardByDeparture[departurePlace[card]] = NONE;
+			cardByDestination[destinationPlace[card]] = NONE;
+			cards[card] = null;
+		}
+		size = 0;
+		places.clear();
+	}
+
+	/**
+	 * Recorre la cadena de tarjetas desde la tarjeta inicial y las añade ordenadas a
+	 * la lista indicada. El recorrido se limita al número de tarjetas indexadas para
+	 * no entrar en un bucle infinito si las tarjetas forman un ciclo.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param initialCard Posición de la tarjeta en la que comienza el viaje
+	 * @param sortedBoardingCards Lista a la que se añaden las tarjetas ordenadas
+	 */
+	void collectChain(int initialCard, List<BoardingCard> sortedBoardingCards) {
+		int card = initialCard;
+		int remaining = size;
+		while (card != NONE && remaining-- > 0) {
+			sortedBoardingCards.add(cards[card]);
+			card = nextCard(card);
+		}
+	}
+
+	/**
+	 * Ordena las tarjetas indexadas según el orden de las paradas del viaje
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @return Lista con las tarjetas de embarque ordenadas
+	 * @throws IllegalStateException si no se puede averiguar donde comienza el viaje
+	 */
+	List<BoardingCard> sortedCards() {
+		int initialCard = initialCard();
+		if (initialCard == NONE) {
+			throw new IllegalStateException("No se puede averiguar la tarjeta inicial del viaje");
+		}
+		List<BoardingCard> sortedBoardingCards = new ArrayList<>(size);
+		collectChain(initialCard, sortedBoardingCards);
+		return sortedBoardingCards;
+	}
+
+	/**
+	 * Ordena las tarjetas indexadas igual que {@link #sortedCards()}, y registra la
+	 * búsqueda de la tarjeta inicial y el recorrido de la cadena como un
+	 * {@link InitialCardEvent} y un {@link SortCardsEvent} de JFR
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param strategy Nombre de la estrategia que ordena las tarjetas
+	 * @return Lista con las tarjetas de embarque ordenadas
+	 * @throws IllegalStateException si no se puede averiguar donde comienza el viaje
+	 */
+	List<BoardingCard> sortedCards(String strategy) {
+		int initialCard = initialCard(strategy);
+		if (initialCard == NONE) {
+			throw new IllegalStateException("No se puede averiguar la tarjeta inicial del viaje");
+		}
+		SortCardsEvent event = new SortCardsEvent();
+		event.begin();
+		List<BoardingCard> sortedBoardingCards = new ArrayList<>(size);
+		collectChain(initialCard, sortedBoardingCards);
+		event.finish(size, strategy, TripPhaseEvent.SUCCESS);
+		return sortedBoardingCards;
+	}
+
+	/**
+	 * Ordena las tarjetas indexadas según el orden de las paradas del viaje y
+	 * completa las anomalías detectadas al indexarlas con las que se descubren al
+	 * buscar la tarjeta inicial y al recorrer la cadena: tramos que faltan, tarjetas
+	 * desconectadas y ciclos.
+	 * <p>
+	 * La búsqueda de la tarjeta inicial y el recorrido son los mismos que los de
+	 * {@link #sortedCards()}; sólo si el índice ya registró repeticiones o
+	 * bifurcaciones se marcan además las tarjetas visitadas para detectar ciclos.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param anomalies Anomalías detectadas al indexar las tarjetas con
+	 * {@link #build(List, List)}, a las que se añaden las nuevas
+	 * @return El resultado de la ordenación
+	 */
+	SortResult validatedSortedCards(List<TripAnomaly> anomalies) {
+		boolean forked = !anomalies.isEmpty();
+		int initialCard = NONE;
+		for (int card = 0; card < size; card++) {
+			int departure = departurePlace[card];
+			if (cardByDestination[departure] == NONE && cardByDeparture[departure] == card) {
+				if (initialCard == NONE) {
+					initialCard = card;
+				} else {
+					anomalies.add(new TripAnomaly(TripAnomaly.Type.GAP, cards[card], cards[card].getDeparture(),
+							"Ninguna tarjeta llega a " + cards[card].getDeparture().getIdentifier()
+									+ ", donde comienza la tarjeta " + cards[card].getIdentifier()));
+				}
+			}
+		}
+		boolean cycleFound = false;
+		if (initialCard == NONE && size > 0) {
+			anomalies.add(new TripAnomaly(TripAnomaly.Type.CYCLE, cards[0], cards[0].getDeparture(),
+					"No hay tarjeta inicial: todas las tarjetas forman parte de un ciclo"));
+			cycleFound = true;
+			initialCard = 0;
+		}
+
+		List<BoardingCard> sortedBoardingCards = new ArrayList<>(size);
+		// Sin repeticiones ni bifurcaciones el recorrido sólo puede volver a su inicio
+		boolean[] visited = forked ? new boolean[size] : null;
+		int card = initialCard;
+		while (card != NONE) {
+			if (visited != null) {
+				if (visited[card]) {
+					break;
+				}
+				visited[card] = true;
+			}
+			sortedBoardingCards.add(cards[card]);
+			card = nextCard(card);
+			if (card == initialCard) {
+				break;
+			}
+		}
+		if (card != NONE && !cycleFound) {
+			anomalies.add(new TripAnomaly(TripAnomaly.Type.CYCLE, cards[card], cards[card].getDeparture(),
+					"El viaje vuelve a " + cards[card].getDeparture().getIdentifier()
+							+ " con la tarjeta " + cards[card].getIdentifier()));
+		}
+		int unreached = size - sortedBoardingCards.size();
+		if (unreached > 0) {
+			anomalies.add(new TripAnomaly(TripAnomaly.Type.DISCONNECTED, null, null,
+					unreached + " tarjetas no se alcanzan desde el inicio del viaje"));
+		}
+		return new SortResult(sortedBoardingCards, anomalies);
+	}
+
+	/**
+	 * Amplía los arrays indexados por tarjeta si no tienen capacidad suficiente
+	 * @param additionalCards Número de tarjetas que se van a añadir
+	 */
+	private void ensureCardCapacity(int additionalCards) {
+		int required = size + additionalCards;
+		if (required > cards.length) {
+			cards = Arrays.copyOf(cards, required);
+			departurePlace = Arrays.copyOf(departurePlace, required);
+			destinationPlace = Arrays.copyOf(destinationPlace, required);
+		}
+	}
+
+	/**
+	 * Amplía los arrays indexados por lugar si no tienen capacidad suficiente
+	 * @param placeCount Número de lugares registrados
+	 */
+	private void ensurePlaceCapacity(int placeCount) {
+		if (placeCount > cardByDeparture.length) {
+			int capacity = Math.max(placeCount, cardByDeparture.length * 2);
+			cardByDeparture = growTable(cardByDeparture, capacity);
+			cardByDestination = growTable(cardByDestination, capacity);
+		}
+	}
+
+	/**
+	 * Crea un array indexado por lugar con todas sus posiciones a {@link #NONE}
+	 * @param capacity Capacidad del array
+	 * @return El array creado
+	 */
+	private static int[] newEmptyTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, NONE);
+		return table;
+	}
+
+	/**
+	 * Amplía un array indexado por lugar rellenando las nuevas posiciones con {@link #NONE}
+	 * @param table El array original
+	 * @param capacity La nueva capacidad
+	 * @return El array ampliado
+	 */
+	private static int[] growTable(int[] table, int capacity) {
+		int oldLength = table.length;
+		int[] grown = Arrays.copyOf(table, capacity);
+		Arrays.fill(grown, oldLength, capacity, NONE);
+		return grown;
+	}
+}
@@ -0,0 +1,532 @@
+package com.eduardo.boardingcards;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import com.eduardo.location.Place;
+import com.eduardo.location.PlaceRegistry;
+import com.eduardo.transport.Transport;
+import com.eduardo.transport.TransportCompany;
+
+/**
+ * Representación compacta e inmutable de una tarjeta de embarque, pensada para
+ * mantener en memoria decenas de millones de tarjetas.
+ * <p>
+ * Frente a {@link BoardingCard}, que guarda dos objetos {@link LocalDateTime}, dos
+ * {@link Boolean} y una cadena de texto por cada código, esta clase guarda:
+ * <ul>
+ * <li>Las fechas como segundos desde la época (1970-01-01T00:00:00), tomando la fecha
+ * local como si fuera UTC. Las fracciones de segundo se descartan</li>
+ * <li>Los indicadores de tarjeta denegada y válida como bits de un único byte</li>
+ * <li>Los lugares como referencias a las instancias canónicas de un
+ * {@link PlaceRegistry}, compartidas por todas las tarjetas que pasan por ellos</li>
+ * <li>El identificador, el asiento, el número de vuelo, la puerta y el mostrador de
+ * check-in empaquetados en un long cada uno, siempre que tengan como mucho
+ * {@value #MAX_PACKED_CODE_LENGTH} caracteres entre letras ASCII, dígitos, guiones y
+ * espacios. Los códigos que no caben se guardan como cadenas de texto en un array
+ * aparte, que sólo se reserva para las tarjetas que lo necesitan</li>
+ * </ul>
+ * El vehículo, la compañía de transporte y el propietario se guardan como
+ * referencias, ya que suelen ser objetos compartidos por muchas tarjetas o null.
+ * <p>
+ * La conversión desde y hacia {@link BoardingCard} conserva todos los datos salvo las
+ * fracciones de segundo de las fechas, de modo que los métodos que trabajan con
+ * BoardingCard pueden seguir usándose con {@link #toBoardingCard()}. Los métodos de
+ * consulta de códigos decodifican el código en cada llamada y devuelven una cadena
+ * nueva.
+ * <p>
+ * {@code
+ * CompactBoardingCard compactCard = CompactBoardingCard.of(bcard, PlaceRegistry.getDefault());
+ * BoardingCard copy = compactCard.toBoardingCard();
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public final class CompactBoardingCard {
+
+	/**
+	 * Número máximo de caracteres de un código empaquetado en un long
+	 */
+	public static final int MAX_PACKED_CODE_LENGTH = 10;
+
+	/**
+	 * Valor de {@link #getDepartureEpochSecond()} y {@link #getArrivalEpochSecond()}
+	 * cuando la tarjeta no tiene fecha
+	 */
+	public static final long NO_DATE = Long.MIN_VALUE;
+
+	private static final byte AEROPLANE = 0;
+	private static final byte TRAIN = 1;
+	private static final byte BUS = 2;
+
+	/**
+	 * Nombres de los tipos de tarjeta, indexados por su código, iguales a los de
+	 * {@link BoardingCardLineFormatter#type(BoardingCard)}
+	 */
+	private static final String[] TYPES = { "aeroplane", "train", "bus" };
+
+	private static final byte DENIED = 1;
+	private static final byte VALID = 2;
+
+	/**
+	 * Caracteres que pueden empaquetarse, seis bits por carácter
+	 */
+	private static final String CODE_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz- ";
+
+	/**
+	 * Posición de cada carácter ASCII en {@link #CODE_ALPHABET}, o -1 si no puede
+	 * empaquetarse
+	 */
+	private static final byte[] CODE_INDEX = new byte[128];
+
+	private static final int BITS_PER_CHAR = 6;
+	private static final int LENGTH_SHIFT = 60;
+
+	/**
+	 * Código empaquetado que representa un valor null
+	 */
+	private static final long NULL_CODE = 15L << LENGTH_SHIFT;
+
+	/**
+	 * Código empaquetado que indica que el valor está en {@link #overflow}
+	 */
+	private static final long OVERFLOW_CODE = 14L << LENGTH_SHIFT;
+
+	private static final int IDENTIFIER_SLOT = 0;
+	private static final int SEAT_SLOT = 1;
+	private static final int FLIGHT_NUMBER_SLOT = 2;
+	private static final int GATE_SLOT = 3;
+	private static final int BAGGAGE_TICKET_COUNTER_SLOT = 4;
+	private static final int CODE_SLOTS = 5;
+
+	static {
+		Arrays.fill(CODE_INDEX, (byte) -1);
+		for (int i = 0; i < CODE_ALPHABET.length(); i++) {
+			CODE_INDEX[CODE_ALPHABET.charAt(i)] = (byte) i;
+		}
+	}
+
+	/**
+	 * Tipo de tarjeta: avión, tren o autobús
+	 */
+	private final byte type;
+
+	/**
+	 * Indicadores de tarjeta denegada y válida
+	 */
+	private final byte flags;
+
+	/**
+	 * Fecha de salida en segundos desde la época, o {@link #NO_DATE}
+	 */
+	private final long departureEpochSecond;
+
+	/**
+	 * Fecha de llegada en segundos desde la época, o {@link #NO_DATE}
+	 */
+	private final long arrivalEpochSecond;
+
+	private final long identifierCode;
+	private final long seatCode;
+	private final long flightNumberCode;
+	private final long gateCode;
+	private final long baggageTicketCounterCode;
+
+	/**
+	 * Códigos que no caben en un long, indexados por su posición, o null si todos los
+	 * códigos de la tarjeta están empaquetados
+	 */
+	private final String[] overflow;
+
+	private final Place departure;
+	private final Place destination;
+	private final Transport transport;
+	private final TransportCompany transportCompany;
+	private final BoardingCardOwner owner;
+
+	private CompactBoardingCard(BoardingCard bcard, byte type, PlaceRegistry registry) {
+		this.type = type;
+		this.flags = (byte) ((Boolean.TRUE.equals(bcard.getDenied()) ? DENIED : 0)
+				| (Boolean.TRUE.equals(bcard.getValid()) ? VALID : 0));
+		this.departureEpochSecond = toEpochSecond(bcard.getDepartureDate());
+		this.arrivalEpochSecond = toEpochSecond(bcard.getArrivalDate());
+
+		String flightNumber = null;
+		String gate = null;
+		String baggageTicketCounter = null;
+		if (type == AEROPLANE) {
+			AeroplaneBoardingCard aeroplaneCard = (AeroplaneBoardingCard) bcard;
+			flightNumber = aeroplaneCard.getFlightNumber();
+			gate = aeroplaneCard.getGate();
+			baggageTicketCounter = aeroplaneCard.getBaggageTicketCounter();
+		}
+		this.identifierCode = pack(bcard.getIdentifier());
+		this.seatCode = pack(bcard.getSeat());
+		this.flightNumberCode = pack(flightNumber);
+		this.gateCode = pack(gate);
+		this.baggageTicketCounterCode = pack(baggageTicketCounter);
+		String[] spilled = spill(null, identifierCode, IDENTIFIER_SLOT, bcard.getIdentifier());
+		spilled = spill(spilled, seatCode, SEAT_SLOT, bcard.getSeat());
+		spilled = spill(spilled, flightNumberCode, FLIGHT_NUMBER_SLOT, flightNumber);
+		spilled = spill(spilled, gateCode, GATE_SLOT, gate);
+		spilled = spill(spilled, baggageTicketCounterCode, BAGGAGE_TICKET_COUNTER_SLOT, baggageTicketCounter);
+		this.overflow = spilled;
+
+		this.departure = bcard.getDeparture() == null ? null : registry.intern(bcard.getDeparture());
+		this.destination = bcard.getDestination() == null ? null : registry.intern(bcard.getDestination());
+		this.transport = bcard.getTransport();
+		this.transportCompany = bcard.getTransportCompany();
+		this.owner = bcard.getClient();
+	}
+
+	/**
+	 * Construye la representación compacta de una tarjeta de embarque, con los lugares
+	 * del registro de localizaciones por defecto
+	 * @param bcard La tarjeta de embarque
+	 * @return La tarjeta de embarque compacta
+	 * @throws IllegalArgumentException si el tipo de tarjeta no es de avión, tren o
+	 * autobús
+	 */
+	public static CompactBoardingCard of(BoardingCard bcard) {
+		return of(bcard, PlaceRegistry.getDefault());
+	}
+
+	/**
+	 * Construye la representación compacta de una tarjeta de embarque
+	 * @param bcard La tarjeta de embarque
+	 * @param registry Registro de localizaciones del que se toman las instancias
+	 * canónicas de los lugares de salida y llegada
+	 * @return La tarjeta de embarque compacta
+	 * @throws IllegalArgumentException si el tipo de tarjeta no es de avión, tren o
+	 * autobús
+	 */
+	public static CompactBoardingCard of(BoardingCard bcard, PlaceRegistry registry) {
+		return new CompactBoardingCard(bcard, typeOf(bcard), registry);
+	}
+
+	/**
+	 * Construye la representación compacta de un listado de tarjetas de embarque,
+	 * manteniendo su orden.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque
+	 * @param registry Registro de localizaciones del que se toman las instancias
+	 * canónicas de los lugares
+	 * @return El listado de tarjetas de embarque compactas
+	 * @throws IllegalArgumentException si alguna tarjeta no es de avión, tren o autobús
+	 */
+	public static List<CompactBoardingCard> of(List<BoardingCard> boardingCards, PlaceRegistry registry) {
+		List<CompactBoardingCard> compactCards = new ArrayList<>(boardingCards.size());
+		for (BoardingCard bcard : boardingCards) {
+			compactCards.add(of(bcard, registry));
+		}
+		return compactCards;
+	}
+
+	/**
+	 * Construye las tarjetas de embarque equivalentes a un listado de tarjetas
+	 * compactas, manteniendo su orden.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param compactCards Listado de tarjetas de embarque compactas
+	 * @return El listado de tarjetas de embarque
+	 */
+	public static List<BoardingCard> toBoardingCards(List<CompactBoardingCard> compactCards) {
+		List<BoardingCard> boardingCards = new ArrayList<>(compactCards.size());
+		for (CompactBoardingCard compactCard : compactCards) {
+			boardingCards.add(compactCard.toBoardingCard());
+		}
+		return boardingCards;
+	}
+
+	/**
+	 * Construye una tarjeta de embarque nueva, del mismo tipo y con los mismos datos
+	 * que la tarjeta original, salvo las fracciones de segundo de las fechas
+	 * @return La tarjeta de embarque
+	 */
+	public BoardingCard toBoardingCard() {
+		BoardingCard bcard;
+		if (type == AEROPLANE) {
+			bcard = new AeroplaneBoardingCard(getFlightNumber(), getGate(), getBaggageTicketCounter());
+		} else if (type == TRAIN) {
+			bcard = new TrainBoardingCard();
+		} else {
+			bcard = new BusBoardingCard();
+		}
+		bcard.setIdentifier(getIdentifier()).setSeat(getSeat())
+			.setDeparture(departure).setDestination(destination)
+			.setDepartureDate(getDepartureDate()).setArrivalDate(getArrivalDate())
+			.setTransport(transport).setTransportCompany(transportCompany).setClient(owner)
+			.setDenied(isDenied()).setValid(isValid());
+		return bcard;
+	}
+
+	/**
+	 * Permite obtener el tipo de la tarjeta de embarque
+	 * @return El tipo de tarjeta, con los mismos nombres que
+	 * {@link BoardingCardLineFormatter#type(BoardingCard)}: aeroplane, train o bus
+	 */
+	public String getType() {
+		return TYPES[type];
+	}
+
+	/**
+	 * Permite obtener el identificador único de la tarjeta de embarque
+	 * @return El identificador único de la tarjeta de embarque
+	 */
+	public String getIdentifier() {
+		return unpack(identifierCode, IDENTIFIER_SLOT);
+	}
+
+	/**
+	 * Permite obtener el número de asiento donde se sentará el viajero
+	 * @return El número de asiento, o null si no hay asiento asignado
+	 */
+	public String getSeat() {
+		return unpack(seatCode, SEAT_SLOT);
+	}
+
+	/**
+	 * Permite obtener el lugar de salida que figura en la tarjeta de embarque
+	 * @return La instancia canónica del lugar de salida
+	 */
+	public Place getDeparture() {
+		return departure;
+	}
+
+	/**
+	 * Permite obtener el lugar de destino que figura en la tarjeta de embarque
+	 * @return La instancia canónica del lugar de destino
+	 */
+	public Place getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Permite obtener la fecha de salida del viaje
+	 * @return La fecha de salida, o null si la tarjeta no tiene fecha de salida
+	 */
+	public LocalDateTime getDepartureDate() {
+		return toLocalDateTime(departureEpochSecond);
+	}
+
+	/**
+	 * Permite obtener la fecha de salida del viaje sin construir ningún objeto, por
+	 * ejemplo para comparar fechas
+	 * @return Los segundos desde la época de la fecha de salida, tomada como UTC, o
+	 * {@link #NO_DATE} si la tarjeta no tiene fecha de salida
+	 */
+	public long getDepartureEpochSecond() {
+		return departureEpochSecond;
+	}
+
+	/**
+	 * Permite obtener la fecha de llegada del viaje
+	 * @return La fecha de llegada, o null si no se sabe la fecha de llegada
+	 */
+	public LocalDateTime getArrivalDate() {
+		return toLocalDateTime(arrivalEpochSecond);
+	}
+
+	/**
+	 * Permite obtener la fecha de llegada del viaje sin construir ningún objeto
+	 * @return Los segundos desde la época de la fecha de llegada, tomada como UTC, o
+	 * {@link #NO_DATE} si no se sabe la fecha de llegada
+	 */
+	public long getArrivalEpochSecond() {
+		return arrivalEpochSecond;
+	}
+
+	/**
+	 * Permite saber si la tarjeta de embarque está denegada
+	 * @return true si la tarjeta de embarque está denegada, false en caso contrario
+	 */
+	public boolean isDenied() {
+		return (flags & DENIED) != 0;
+	}
+
+	/**
+	 * Permite saber si la tarjeta de embarque es válida
+	 * @return true si la tarjeta es válida, false si es inválida
+	 */
+	public boolean isValid() {
+		return (flags & VALID) != 0;
+	}
+
+	/**
+	 * Permite obtener el número de vuelo de una tarjeta de embarque de avión
+	 * @return El número de vuelo, o null si la tarjeta no es de avión
+	 */
+	public String getFlightNumber() {
+		return unpack(flightNumberCode, FLIGHT_NUMBER_SLOT);
+	}
+
+	/**
+	 * Permite obtener la puerta de embarque de una tarjeta de embarque de avión
+	 * @return La puerta de embarque, o null si la tarjeta no es de avión
+	 */
+	public String getGate() {
+		return unpack(gateCode, GATE_SLOT);
+	}
+
+	/**
+	 * Permite obtener el código del mostrador de check-in de una tarjeta de embarque
+	 * de avión
+	 * @return El código del mostrador de check-in, o null si la tarjeta no es de avión
+	 * o el equipaje se transfiere automáticamente
+	 */
+	public String getBaggageTicketCounter() {
+		return unpack(baggageTicketCounterCode, BAGGAGE_TICKET_COUNTER_SLOT);
+	}
+
+	/**
+	 * Permite obtener el vehículo correspondiente a la tarjeta de embarque
+	 * @return El vehículo correspondiente a la tarjeta de embarque
+	 */
+	public Transport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Permite obtener la compañía de transporte emisora de la tarjeta de embarque
+	 * @return La compañía de transporte emisora de la tarjeta de embarque
+	 */
+	public TransportCompany getTransportCompany() {
+		return transportCompany;
+	}
+
+	/**
+	 * Permite obtener el propietario de la tarjeta de embarque
+	 * @return El propietario de la tarjeta de embarque
+	 */
+	public BoardingCardOwner getClient() {
+		return owner;
+	}
+
+	/**
+	 * Dos tarjetas compactas son iguales si tienen el mismo tipo y los mismos datos.
+	 * El vehículo, la compañía y el propietario se comparan con su propio equals
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactBoardingCard)) {
+			return false;
+		}
+		CompactBoardingCard other = (CompactBoardingCard) obj;
+		return type == other.type && flags == other.flags
+				&& departureEpochSecond == other.departureEpochSecond
+				&& arrivalEpochSecond == other.arrivalEpochSecond
+				&& identifierCode == other.identifierCode && seatCode == other.seatCode
+				&& flightNumberCode == other.flightNumberCode && gateCode == other.gateCode
+				&& baggageTicketCounterCode == other.baggageTicketCounterCode
+				&& Arrays.equals(overflow, other.overflow)
+				&& Objects.equals(departure, other.departure) && Objects.equals(destination, other.destination)
+				&& Objects.equals(transport, other.transport)
+				&& Objects.equals(transportCompany, other.transportCompany) && Objects.equals(owner, other.owner);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = type;
+		result = 31 * result + Long.hashCode(identifierCode);
+		result = 31 * result + Arrays.hashCode(overflow);
+		result = 31 * result + Objects.hashCode(departure);
+		result = 31 * result + Objects.hashCode(destination);
+		result = 31 * result + Long.hashCode(departureEpochSecond);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return getType() + " " + getIdentifier() + " " + departure + " -> " + destination;
+	}
+
+	/**
+	 * Permite obtener el código del tipo de una tarjeta de embarque
+	 * @throws IllegalArgumentException si el tipo de tarjeta no tiene representación
+	 * compacta
+	 */
+	private static byte typeOf(BoardingCard bcard) {
+		if (bcard instanceof AeroplaneBoardingCard) {
+			return AEROPLANE;
+		} else if (bcard instanceof TrainBoardingCard) {
+			return TRAIN;
+		} else if (bcard instanceof BusBoardingCard) {
+			return BUS;
+		}
+		throw new IllegalArgumentException("Tipo de tarjeta de embarque sin representación compacta: "
+				+ bcard.getClass().getName());
+	}
+
+	private static long toEpochSecond(LocalDateTime date) {
+		return date == null ? NO_DATE : date.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	private static LocalDateTime toLocalDateTime(long epochSecond) {
+		return epochSecond == NO_DATE ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+	}
+
+	/**
+	 * Empaqueta un código en un long: la longitud en los cuatro bits más altos y seis
+	 * bits por carácter desde los bits más bajos
+	 * @return El código empaquetado, {@link #NULL_CODE} si el código es null, o
+	 * {@link #OVERFLOW_CODE} si no puede empaquetarse
+	 */
+	private static long pack(String value) {
+		if (value == null) {
+			return NULL_CODE;
+		}
+		int length = value.length();
+		if (length > MAX_PACKED_CODE_LENGTH) {
+			return OVERFLOW_CODE;
+		}
+		long code = (long) length << LENGTH_SHIFT;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= CODE_INDEX.length || CODE_INDEX[c] < 0) {
+				return OVERFLOW_CODE;
+			}
+			code |= (long) CODE_INDEX[c] << (i * BITS_PER_CHAR);
+		}
+		return code;
+	}
+
+	private String unpack(long code, int slot) {
+		if (code == NULL_CODE) {
+			return null;
+		}
+		if (code == OVERFLOW_CODE) {
+			return overflow[slot];
+		}
+		int length = (int) (code >>> LENGTH_SHIFT);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = CODE_ALPHABET.charAt((int) (code >>> (i * BITS_PER_CHAR)) & 0x3F);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Guarda en el array de desbordamiento un código que no se ha podido empaquetar,
+	 * reservando el array la primera vez
+	 * @return El array de desbordamiento, que sigue siendo null si no hace falta
+	 */
+	private static String[] spill(String[] overflow, long code, int slot, String value) {
+		if (code != OVERFLOW_CODE) {
+			return overflow;
+		}
+		if (overflow == null) {
+			overflow = new String[CODE_SLOTS];
+		}
+		overflow[slot] = value;
+		return overflow;
+	}
+}
@@ -0,0 +1,105 @@
+package com.eduardo.boardingcards;
+
+import java.util.List;
+
+import com.eduardo.metrics.Metrics;
+import com.eduardo.metrics.MetricsSink;
+import com.eduardo.metrics.TripPhaseEvent;
+import com.eduardo.metrics.TripSortEvent;
+
+/**
+ * Estrategia de ordenación que mide la duración, el número de tarjetas y los fallos de
+ * cada ordenación y los envía al destino de medidas instalado en {@link Metrics}. La
+ * ordenación se delega en otra estrategia (patrón Decorator).
+ * <p>
+ * {@link Trip#sortTrip(List)} ya mide las ordenaciones de los viajes, por lo que este
+ * decorador sólo es necesario cuando se usa una estrategia directamente, sin un
+ * {@link Trip}. Si la instrumentación está desactivada, sólo añade la consulta del
+ * destino de medidas.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos siempre que la
+ * estrategia en la que delega también lo sea.
+ *
+ * @author eduardo
+ *
+ */
+public class InstrumentedTripSorter implements TripSorterStrategy {
+
+	/**
+	 * Estrategia en la que se delega la ordenación
+	 */
+	private final TripSorterStrategy delegate;
+
+	/**
+	 * Nombre con el que se registran las ordenaciones de la estrategia
+	 */
+	private final String strategyName;
+
+	/**
+	 * Construye la estrategia, que registra las ordenaciones con el nombre de la clase
+	 * de la estrategia en la que delega
+	 * @param delegate Estrategia en la que se delega la ordenación
+	 */
+	public InstrumentedTripSorter(TripSorterStrategy delegate) {
+		this(delegate, strategyName(delegate));
+	}
+
+	/**
+	 * Construye la estrategia
+	 * @param delegate Estrategia en la que se delega la ordenación
+	 * @param strategyName Nombre con el que se registran las ordenaciones
+	 */
+	public InstrumentedTripSorter(TripSorterStrategy delegate, String strategyName) {
+		this.delegate = delegate;
+		this.strategyName = strategyName;
+	}
+
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		return sort(delegate, strategyName, boardingCards);
+	}
+
+	/**
+	 * Ordena las tarjetas con una estrategia y registra la ordenación en el destino de
+	 * medidas, si hay uno instalado, y como un {@link TripSortEvent} de JFR
+	 */
+	static List<BoardingCard> sort(TripSorterStrategy strategy, String strategyName,
+			List<BoardingCard> boardingCards) {
+		MetricsSink sink = Metrics.getSink();
+		TripSortEvent event = new TripSortEvent();
+		if (sink == null && !event.isEnabled()) {
+			return strategy.sortTrip(boardingCards);
+		}
+		long start = System.nanoTime();
+		event.begin();
+		boolean failed = true;
+		try {
+			List<BoardingCard> sortedCards = strategy.sortTrip(boardingCards);
+			failed = false;
+			return sortedCards;
+		} finally {
+			int tripLength = boardingCards == null ? 0 : boardingCards.size();
+			if (sink != null) {
+				sink.recordSort(strategyName, tripLength, System.nanoTime() - start, failed);
+			}
+			event.finish(tripLength, strategyName, failed ? TripPhaseEvent.FAILURE : TripPhaseEvent.SUCCESS);
+		}
+	}
+
+	/**
+	 * Permite obtener el nombre con el que se registran las ordenaciones
+	 * @return El nombre de la estrategia
+	 */
+	String getStrategyName() {
+		return strategyName;
+	}
+
+	/**
+	 * Obtiene el nombre con el que se registran las ordenaciones de una estrategia
+	 */
+	static String strategyName(TripSorterStrategy strategy) {
+		String name = strategy.getClass().getSimpleName();
+		// Las clases anónimas y las lambdas no tienen nombre simple
+		return name.isEmpty() ? strategy.getClass().getName() : name;
+	}
+}
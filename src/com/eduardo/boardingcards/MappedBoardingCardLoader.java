@@ -0,0 +1,588 @@
+package com.eduardo.boardingcards;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import com.eduardo.location.Place;
+import com.eduardo.location.PlaceRegistry;
+import com.eduardo.transport.Train;
+
+/**
+ * Carga masiva de tarjetas de embarque desde un fichero de texto, proyectando el
+ * fichero en memoria con {@link FileChannel#map} y leyendo los campos directamente de
+ * los bytes proyectados, sin convertir cada línea en una cadena de texto.
+ * <p>
+ * El fichero contiene una tarjeta de embarque por línea, con los campos separados por
+ * punto y coma y codificados en UTF-8:
+ * <pre>
+ * tipo;identificador;asiento;idSalida;ciudadSalida;paísSalida;idLlegada;ciudadLlegada;paísLlegada[;extra...]
+ * </pre>
+ * El tipo determina la factoría con la que se crea la tarjeta y los campos extra:
+ * <ul>
+ * <li>aeroplane: número de vuelo, puerta de embarque y mostrador de facturación</li>
+ * <li>train: número de tren</li>
+ * <li>bus: ninguno</li>
+ * </ul>
+ * Un campo vacío de asiento o de mostrador de facturación se carga como null. Las
+ * líneas vacías y las que comienzan por '#' se ignoran.
+ * <p>
+ * Los lugares se obtienen de un {@link PlaceRegistry}, a través de una tabla
+ * compartida que se consulta con los bytes del identificador, la ciudad y el país del
+ * lugar, de modo que cada lugar se decodifica una sola vez aunque aparezca en millones
+ * de tarjetas, y todas las tarjetas que lo mencionan comparten la misma instancia de
+ * {@link Place}. El registro guarda un único lugar canónico por identificador: si una
+ * tarjeta menciona un identificador ya registrado con otra ciudad u otro país, se crea
+ * para ella un lugar no canónico con sus propios datos, de modo que los datos
+ * distintos nunca se mezclan. El registro retiene todos los lugares cargados mientras
+ * siga en uso. Por eso, salvo que se indique otro registro, cada cargador usa un
+ * registro propio y no el registro compartido por defecto, que nunca descarta
+ * lugares.
+ * <p>
+ * El fichero puede dividirse en tramos que terminan en un final de línea y que se
+ * cargan en paralelo en un {@link ForkJoinPool}. Las tarjetas se devuelven siempre en
+ * el orden en el que aparecen en el fichero.
+ *
+ * @author eduardo
+ *
+ */
+public class MappedBoardingCardLoader {
+
+	/**
+	 * Tamaño máximo de cada tramo del fichero que se proyecta en memoria de una vez
+	 */
+	private static final long MAX_RANGE_SIZE = 1L << 30;
+
+	private static final byte SEPARATOR = ';';
+	private static final byte NEW_LINE = '\n';
+	private static final byte CARRIAGE_RETURN = '\r';
+	private static final byte COMMENT = '#';
+
+	/**
+	 * Número de campos comunes a todos los tipos de tarjeta de embarque
+	 */
+	private static final int COMMON_FIELDS = 9;
+
+	/**
+	 * Número máximo de campos de una línea
+	 */
+	private static final int MAX_FIELDS = COMMON_FIELDS + 3;
+
+	/**
+	 * Tipos de tarjeta de embarque registrados, codificados en UTF-8
+	 */
+	private final List<byte[]> types = new ArrayList<>();
+
+	/**
+	 * Factoría de cada tipo de tarjeta de embarque registrado, en el mismo orden que
+	 * {@link #types}
+	 */
+	private final List<BoardingCardFactory> factories = new ArrayList<>();
+
+	/**
+	 * Tabla compartida de lugares indexados por los bytes de su identificador, su ciudad
+	 * y su país, incluidos los separadores entre ellos
+	 */
+	private final ConcurrentMap<ByteSlice, Place> places = new ConcurrentHashMap<>();
+
+	/**
+	 * Registro del que se obtienen los lugares canónicos
+	 */
+	private final PlaceRegistry registry;
+
+	/**
+	 * Construye un cargador con las factorías de tarjetas de avión (aeroplane), tren
+	 * (train) y autobús (bus), que obtiene los lugares de un registro propio. Los
+	 * lugares cargados se liberan junto con el cargador
+	 */
+	public MappedBoardingCardLoader() {
+		this(new PlaceRegistry());
+	}
+
+	/**
+	 * Construye un cargador con las factorías de tarjetas de avión (aeroplane), tren
+	 * (train) y autobús (bus)
+	 * @param registry Registro del que se obtienen los lugares canónicos. Si un
+	 * identificador ya está registrado con la misma ciudad y el mismo país, las
+	 * tarjetas cargadas usan el lugar registrado, y los lugares nuevos quedan en el
+	 * registro mientras éste siga en uso
+	 */
+	public MappedBoardingCardLoader(PlaceRegistry registry) {
+		this.registry = registry;
+		registerFactory("aeroplane", new AeroplaneBoardingCardFactory());
+		registerFactory("train", new TrainBoardingCardFactory());
+		registerFactory("bus", new BusBoardingCardFactory());
+	}
+
+	/**
+	 * Registra la factoría con la que se crean las tarjetas de un tipo
+	 * @param type Valor de la columna de tipo de tarjeta
+	 * @param factory Factoría con la que se crean las tarjetas de dicho tipo
+	 */
+	public final void registerFactory(String type, BoardingCardFactory factory) {
+		types.add(type.getBytes(StandardCharsets.UTF_8));
+		factories.add(factory);
+	}
+
+	/**
+	 * Carga todas las tarjetas de embarque de un fichero en el hilo actual
+	 * @param file Fichero de tarjetas de embarque
+	 * @return Las tarjetas de embarque en el orden en el que aparecen en el fichero
+	 * @throws IOException si se produce un error al leer el fichero
+	 * @throws IllegalArgumentException si alguna línea del fichero no es válida
+	 */
+	public List<BoardingCard> load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] bounds = splitAtLines(channel, 1);
+			List<BoardingCard> boardingCards = new ArrayList<>();
+			for (int range = 0; range + 1 < bounds.length; range++) {
+				boardingCards.addAll(parseRange(channel, bounds[range], bounds[range + 1]));
+			}
+			return boardingCards;
+		}
+	}
+
+	/**
+	 * Carga todas las tarjetas de embarque contenidas en un buffer, por ejemplo el
+	 * cuerpo de una petición recibida por red, con el mismo formato que los ficheros
+	 * <p>
+	 * Coste computacional del método: O(n), siendo n el tamaño del buffer
+	 * @param buffer Buffer con las líneas de tarjetas de embarque, entre su posición y
+	 * su límite. La posición del buffer no se modifica
+	 * @return Las tarjetas de embarque en el orden en el que aparecen en el buffer
+	 * @throws IllegalArgumentException si alguna línea del buffer no es válida
+	 */
+	public List<BoardingCard> load(ByteBuffer buffer) {
+		return parseLines(buffer.slice(), 0);
+	}
+
+	/**
+	 * Carga todas las tarjetas de embarque de un fichero dividiéndolo en tramos que se
+	 * cargan en paralelo
+	 * @param file Fichero de tarjetas de embarque
+	 * @param pool Pool de hilos en el que se cargan los tramos
+	 * @param ranges Número de tramos en los que se divide el fichero
+	 * @return Las tarjetas de embarque en el orden en el que aparecen en el fichero
+	 * @throws IOException si se produce un error al leer el fichero
+	 * @throws IllegalArgumentException si alguna línea del fichero no es válida
+	 */
+	public List<BoardingCard> load(Path file, ForkJoinPool pool, int ranges) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] bounds = splitAtLines(channel, ranges);
+			List<RangeTask> tasks = new ArrayList<>();
+			for (int range = 0; range + 1 < bounds.length; range++) {
+				tasks.add(new RangeTask(channel, bounds[range], bounds[range + 1]));
+				pool.execute(tasks.get(range));
+			}
+			List<BoardingCard> boardingCards = new ArrayList<>();
+			try {
+				for (RangeTask task : tasks) {
+					boardingCards.addAll(task.join());
+				}
+			} catch (RuntimeException e) {
+				// El resto de tramos no debe seguir usando el canal una vez cerrado
+				cancelAll(tasks);
+				IOException cause = ioExceptionCause(e);
+				if (cause != null) {
+					throw cause;
+				}
+				throw e;
+			}
+			return boardingCards;
+		}
+	}
+
+	/**
+	 * Cancela las tareas que todavía no han comenzado y espera a que terminen las que
+	 * ya se están ejecutando
+	 */
+	private static void cancelAll(List<RangeTask> tasks) {
+		for (RangeTask task : tasks) {
+			task.cancel(false);
+		}
+		for (RangeTask task : tasks) {
+			task.quietlyJoin();
+		}
+	}
+
+	/**
+	 * Busca un error de lectura en la cadena de causas de una excepción. Al esperar a
+	 * una tarea desde un hilo ajeno al pool, {@link ForkJoinTask#join()} puede lanzar
+	 * una copia de la excepción de la tarea que la contiene como causa
+	 * @return El error de lectura, o null si la excepción no se debe a uno
+	 */
+	private static IOException ioExceptionCause(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof IOException) {
+				return (IOException) cause;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Permite obtener el número de lugares distintos cargados hasta el momento
+	 * @return El número de lugares distintos
+	 */
+	public int getPlaceCount() {
+		return places.size();
+	}
+
+	/**
+	 * Divide el fichero en tramos de tamaño similar cuyos límites caen justo después
+	 * de un final de línea
+	 * @param channel Canal del fichero
+	 * @param ranges Número deseado de tramos
+	 * @return Las posiciones de inicio de cada tramo, seguidas del tamaño del fichero
+	 * @throws IOException si se produce un error al leer el fichero
+	 */
+	private static long[] splitAtLines(FileChannel channel, int ranges) throws IOException {
+		long size = channel.size();
+		long rangeSize = Math.min(MAX_RANGE_SIZE, Math.max(1, (size + ranges - 1) / Math.max(1, ranges)));
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long position = rangeSize;
+		while (position < size) {
+			long lineEnd = nextLineStart(channel, position, probe);
+			if (lineEnd >= size) {
+				break;
+			}
+			bounds.add(lineEnd);
+			position = lineEnd + rangeSize;
+		}
+		bounds.add(size);
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Busca el comienzo de la siguiente línea a partir de una posición del fichero
+	 * @param channel Canal del fichero
+	 * @param position Posición a partir de la cual se busca
+	 * @param probe Buffer auxiliar para leer el fichero
+	 * @return La posición siguiente al primer final de línea encontrado, o el tamaño
+	 * del fichero si no hay más finales de línea
+	 * @throws IOException si se produce un error al leer el fichero
+	 */
+	private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+		long size = channel.size();
+		while (position < size) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == NEW_LINE) {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Proyecta en memoria un tramo del fichero y carga sus tarjetas de embarque
+	 * @param channel Canal del fichero
+	 * @param from Posición de inicio del tramo (incluida)
+	 * @param to Posición de fin del tramo (excluida)
+	 * @return Las tarjetas de embarque del tramo
+	 * @throws IOException si se produce un error al proyectar el fichero
+	 */
+	private List<BoardingCard> parseRange(FileChannel channel, long from, long to) throws IOException {
+		if (to <= from) {
+			return new ArrayList<>();
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+		return parseLines(buffer, from);
+	}
+
+	/**
+	 * Carga las tarjetas de embarque de todas las líneas de un buffer
+	 * @param buffer Buffer con las líneas, desde la posición 0 hasta su límite
+	 * @param fileOffset Posición del inicio del buffer en el fichero, para los mensajes
+	 * de error
+	 * @return Las tarjetas de embarque del buffer
+	 */
+	private List<BoardingCard> parseLines(ByteBuffer buffer, long fileOffset) {
+		List<BoardingCard> boardingCards = new ArrayList<>();
+		LineParser parser = new LineParser(buffer, fileOffset);
+		int limit = buffer.limit();
+		int lineStart = 0;
+		while (lineStart < limit) {
+			int lineEnd = lineStart;
+			while (lineEnd < limit && buffer.get(lineEnd) != NEW_LINE) {
+				lineEnd++;
+			}
+			BoardingCard bcard = parser.parse(lineStart, lineEnd);
+			if (bcard != null) {
+				boardingCards.add(bcard);
+			}
+			lineStart = lineEnd + 1;
+		}
+		return boardingCards;
+	}
+
+	/**
+	 * Busca la factoría del tipo de tarjeta indicado, comparando directamente los bytes
+	 * @param buffer Buffer con los bytes del fichero
+	 * @param start Inicio del campo de tipo (incluido)
+	 * @param end Fin del campo de tipo (excluido)
+	 * @return La factoría del tipo de tarjeta, o null si el tipo no está registrado
+	 */
+	private BoardingCardFactory factoryFor(ByteBuffer buffer, int start, int end) {
+		for (int i = 0; i < types.size(); i++) {
+			byte[] type = types.get(i);
+			if (type.length == end - start && ByteSlice.equalBytes(buffer, start, type, 0, type.length)) {
+				return factories.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Tarea que carga un tramo del fichero. Los errores de lectura se lanzan envueltos
+	 * en {@link UncheckedIOException}
+	 */
+	private final class RangeTask extends RecursiveTask<List<BoardingCard>> {
+
+		private final FileChannel channel;
+		private final long from;
+		private final long to;
+
+		RangeTask(FileChannel channel, long from, long to) {
+			this.channel = channel;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<BoardingCard> compute() {
+			try {
+				return parseRange(channel, from, to);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Analizador de las líneas de un tramo proyectado en memoria. Guarda la posición
+	 * de cada campo de la línea actual y reutiliza sus arrays auxiliares entre líneas
+	 */
+	private final class LineParser {
+
+		private final ByteBuffer buffer;
+		private final long fileOffset;
+		private final int[] fieldStart = new int[MAX_FIELDS];
+		private final int[] fieldEnd = new int[MAX_FIELDS];
+		private final ByteSlice probe = new ByteSlice();
+		private byte[] scratch = new byte[64];
+
+		LineParser(ByteBuffer buffer, long fileOffset) {
+			this.buffer = buffer;
+			this.fileOffset = fileOffset;
+		}
+
+		/**
+		 * Carga la tarjeta de embarque de una línea
+		 * @param start Inicio de la línea (incluido)
+		 * @param end Fin de la línea (excluido), sin contar el final de línea
+		 * @return La tarjeta de embarque, o null si la línea está vacía o es un comentario
+		 */
+		BoardingCard parse(int start, int end) {
+			if (end > start && buffer.get(end - 1) == CARRIAGE_RETURN) {
+				end--;
+			}
+			if (end == start || buffer.get(start) == COMMENT) {
+				return null;
+			}
+			int fields = splitFields(start, end);
+			if (fields < COMMON_FIELDS) {
+				throw malformed(start, "faltan campos");
+			}
+			BoardingCardFactory factory = factoryFor(buffer, fieldStart[0], fieldEnd[0]);
+			if (factory == null) {
+				throw malformed(start, "tipo de tarjeta desconocido");
+			}
+			BoardingCard bcard = factory.createBoardingCard()
+					.setIdentifier(text(1))
+					.setSeat(optionalText(2))
+					.setDeparture(place(3))
+					.setDestination(place(6));
+			if (bcard instanceof AeroplaneBoardingCard) {
+				((AeroplaneBoardingCard) bcard)
+						.setFlightNumber(fields > 9 ? text(9) : null)
+						.setGate(fields > 10 ? text(10) : null)
+						.setBaggageTicketCounter(fields > 11 ? optionalText(11) : null);
+			} else if (bcard instanceof TrainBoardingCard && fields > 9) {
+				bcard.setTransport(new Train(text(9)));
+			}
+			return bcard;
+		}
+
+		/**
+		 * Localiza los campos de una línea
+		 * @return El número de campos de la línea
+		 */
+		private int splitFields(int start, int end) {
+			int fields = 0;
+			int fieldBegin = start;
+			for (int i = start; i <= end && fields < MAX_FIELDS; i++) {
+				if (i == end || buffer.get(i) == SEPARATOR) {
+					fieldStart[fields] = fieldBegin;
+					fieldEnd[fields] = i;
+					fields++;
+					fieldBegin = i + 1;
+				}
+			}
+			return fields;
+		}
+
+		/**
+		 * Obtiene el lugar cuyos datos comienzan en el campo indicado, decodificándolo
+		 * sólo si es la primera vez que aparece con la misma ciudad y el mismo país
+		 */
+		private Place place(int field) {
+			probe.wrap(buffer, fieldStart[field], fieldEnd[field + 2]);
+			Place place = places.get(probe);
+			if (place == null) {
+				String identifier = text(field);
+				String city = text(field + 1);
+				String country = text(field + 2);
+				place = registry.intern(identifier, city, country);
+				if (!city.equals(place.getCity()) || !country.equals(place.getCountry())) {
+					// El identificador ya está registrado con otros datos
+					place = new Place(identifier, city, country);
+				}
+				places.putIfAbsent(probe.copy(), place);
+			}
+			return place;
+		}
+
+		private String optionalText(int field) {
+			return fieldStart[field] == fieldEnd[field] ? null : text(field);
+		}
+
+		private String text(int field) {
+			int length = fieldEnd[field] - fieldStart[field];
+			if (length > scratch.length) {
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			}
+			for (int i = 0; i < length; i++) {
+				scratch[i] = buffer.get(fieldStart[field] + i);
+			}
+			return new String(scratch, 0, length, StandardCharsets.UTF_8);
+		}
+
+		private IllegalArgumentException malformed(int lineStart, String reason) {
+			return new IllegalArgumentException(
+					"Línea no válida en la posición " + (fileOffset + lineStart) + " del fichero: " + reason);
+		}
+	}
+
+	/**
+	 * Secuencia de bytes usada como clave de la tabla de lugares. Puede apuntar a un
+	 * tramo de un buffer, para consultar la tabla sin copiar los bytes, o a un array
+	 * propio, para guardarse en la tabla
+	 */
+	private static final class ByteSlice {
+
+		private ByteBuffer buffer;
+		private byte[] bytes;
+		private int start;
+		private int length;
+		private int hash;
+
+		/**
+		 * Hace que la clave apunte a un tramo de un buffer
+		 */
+		void wrap(ByteBuffer buffer, int start, int end) {
+			this.buffer = buffer;
+			this.bytes = null;
+			this.start = start;
+			this.length = end - start;
+			int h = 1;
+			for (int i = start; i < end; i++) {
+				h = 31 * h + buffer.get(i);
+			}
+			this.hash = h;
+		}
+
+		/**
+		 * Crea una copia de la clave con sus propios bytes, independiente del buffer
+		 */
+		ByteSlice copy() {
+			ByteSlice copy = new ByteSlice();
+			copy.bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				copy.bytes[i] = byteAt(i);
+			}
+			copy.length = length;
+			copy.hash = hash;
+			return copy;
+		}
+
+		private byte byteAt(int i) {
+			return bytes != null ? bytes[start + i] : buffer.get(start + i);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ByteSlice)) {
+				return false;
+			}
+			ByteSlice other = (ByteSlice) obj;
+			if (other.hash != hash || other.length != length) {
+				return false;
+			}
+			if (bytes != null && other.bytes != null) {
+				return Arrays.equals(bytes, other.bytes);
+			}
+			for (int i = 0; i < length; i++) {
+				if (byteAt(i) != other.byteAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Compara un tramo de un buffer con un tramo de un array de bytes
+		 */
+		static boolean equalBytes(ByteBuffer buffer, int bufferStart, byte[] array, int arrayStart, int length) {
+			for (int i = 0; i < length; i++) {
+				if (buffer.get(bufferStart + i) != array[arrayStart + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
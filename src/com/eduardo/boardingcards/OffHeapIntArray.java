@@ -0,0 +1,180 @@
+package com.eduardo.boardingcards;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Array de enteros almacenado fuera del heap de Java, en buffers directos.
+ * <p>
+ * El contenido se reparte en bloques de tamaño fijo, cada uno de ellos un
+ * {@link IntBuffer} directo, de modo que el array puede tener más de
+ * {@link Integer#MAX_VALUE} posiciones y su memoria no la recorre el recolector de
+ * basura: por muy grande que sea el array, en el heap sólo hay un objeto por bloque.
+ * La memoria de los bloques se libera cuando el array deja de estar referenciado.
+ * <p>
+ * Las posiciones de un array recién creado, o recién ampliado, valen 0.
+ * <p>
+ * Esta clase no es segura para su uso concurrente desde varios hilos si alguno de
+ * ellos modifica el array.
+ *
+ * @author eduardo
+ *
+ */
+public final class OffHeapIntArray {
+
+	/**
+	 * Logaritmo en base 2 del número de enteros de cada bloque (16M enteros, 64 MB)
+	 */
+	private static final int BLOCK_SHIFT = 24;
+
+	/**
+	 * Número de enteros de cada bloque
+	 */
+	private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+	/**
+	 * Máscara para obtener la posición de un entero dentro de su bloque
+	 */
+	private static final long BLOCK_MASK = BLOCK_SIZE - 1;
+
+	/**
+	 * Bloques de memoria del array. Todos tienen {@link #BLOCK_SIZE} enteros salvo el
+	 * último, que puede ser menor
+	 */
+	private IntBuffer[] blocks;
+
+	/**
+	 * Número de posiciones del array
+	 */
+	private long length;
+
+	/**
+	 * Construye un array con todas sus posiciones a 0
+	 * @param length Número de posiciones del array
+	 */
+	public OffHeapIntArray(long length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("La longitud no puede ser negativa: " + length);
+		}
+		this.blocks = new IntBuffer[0];
+		ensureLength(length);
+	}
+
+	/**
+	 * Permite obtener el valor de una posición del array
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param index La posición
+	 * @return El valor de la posición
+	 */
+	public int get(long index) {
+		return blocks[(int) (index >>> BLOCK_SHIFT)].get((int) (index & BLOCK_MASK));
+	}
+
+	/**
+	 * Cambia el valor de una posición del array
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param index La posición
+	 * @param value El nuevo valor
+	 */
+	public void set(long index, int value) {
+		blocks[(int) (index >>> BLOCK_SHIFT)].put((int) (index & BLOCK_MASK), value);
+	}
+
+	/**
+	 * Permite obtener el número de posiciones del array
+	 * @return El número de posiciones del array
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Asigna el mismo valor a todas las posiciones del array
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param value El valor
+	 */
+	public void fill(int value) {
+		for (IntBuffer block : blocks) {
+			for (int i = 0, size = block.capacity(); i < size; i++) {
+				block.put(i, value);
+			}
+		}
+	}
+
+	/**
+	 * Copia el contenido del array a un array de enteros del heap
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @return Un array del heap con el mismo contenido
+	 * @throws IllegalStateException si el array es demasiado grande para un array
+	 * del heap
+	 */
+	public int[] toArray() {
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("El array es demasiado grande para copiarlo al heap: " + length);
+		}
+		int[] array = new int[(int) length];
+		int offset = 0;
+		for (IntBuffer block : blocks) {
+			IntBuffer view = block.duplicate();
+			view.clear();
+			int count = Math.min(view.remaining(), array.length - offset);
+			view.get(array, offset, count);
+			offset += count;
+		}
+		return array;
+	}
+
+	/**
+	 * Amplía el array, si es necesario, para que tenga al menos el número de
+	 * posiciones indicado. Las nuevas posiciones valen 0
+	 * <p>
+	 * Coste computacional del método: O(1) por cada bloque nuevo, más la copia del
+	 * último bloque si no estaba completo
+	 * @param minLength Número mínimo de posiciones
+	 */
+	void ensureLength(long minLength) {
+		if (minLength <= length) {
+			return;
+		}
+		int blockCount = (int) ((minLength + BLOCK_MASK) >>> BLOCK_SHIFT);
+		int oldBlockCount = blocks.length;
+		IntBuffer[] grown = Arrays.copyOf(blocks, blockCount);
+		// El último bloque anterior puede estar incompleto: se sustituye por uno mayor
+		int firstNewBlock = oldBlockCount > 0 && blocks[oldBlockCount - 1].capacity() < BLOCK_SIZE
+				? oldBlockCount - 1
+				: oldBlockCount;
+		for (int block = firstNewBlock; block < blockCount; block++) {
+			long blockStart = (long) block << BLOCK_SHIFT;
+			int blockLength = (int) Math.min(BLOCK_SIZE, minLength - blockStart);
+			IntBuffer buffer = ByteBuffer.allocateDirect(blockLength * Integer.BYTES)
+					.order(ByteOrder.nativeOrder())
+					.asIntBuffer();
+			if (block < oldBlockCount) {
+				IntBuffer previous = blocks[block].duplicate();
+				previous.clear();
+				buffer.put(previous);
+				buffer.clear();
+			}
+			grown[block] = buffer;
+		}
+		blocks = grown;
+		length = minLength;
+	}
+
+	/**
+	 * Reduce el número de posiciones visibles del array, sin liberar memoria
+	 * @param newLength Nuevo número de posiciones, que no puede ser mayor que el actual
+	 */
+	void truncate(long newLength) {
+		if (newLength < 0 || newLength > length) {
+			throw new IllegalArgumentException("Longitud no válida: " + newLength);
+		}
+		length = newLength;
+	}
+}
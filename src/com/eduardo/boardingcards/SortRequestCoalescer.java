@@ -0,0 +1,330 @@
+package com.eduardo.boardingcards;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.eduardo.location.PlaceRegistry;
+
+/**
+ * Agrupa en lotes las peticiones de ordenación de viajes que llegan de forma
+ * concurrente, por ejemplo desde un servicio que recibe muchos viajes cortos, de
+ * modo que el coste fijo de cada petición se reparte entre todas las del lote.
+ * <p>
+ * Cada petición devuelve inmediatamente un {@link CompletableFuture}. Un hilo
+ * recolector espera a la primera petición y reúne las que llegan después hasta
+ * completar el tamaño máximo de lote o hasta que pasa el retardo máximo desde la
+ * primera, y entrega el lote al ejecutor. El lote se procesa en una única tarea:
+ * <ul>
+ * <li>Todas las ordenaciones del lote usan la misma estrategia en el mismo hilo, de
+ * modo que con {@link StrategySharedChain} comparten sus arrays auxiliares</li>
+ * <li>Las peticiones que llegan como líneas de texto sin cargar se cargan con un
+ * único {@link MappedBoardingCardLoader} y un único {@link PlaceRegistry} por lote,
+ * por lo que cada lugar se decodifica una sola vez aunque aparezca en muchas
+ * peticiones del lote. El cargador identifica cada lugar por su identificador, su
+ * ciudad y su país, de modo que si dos clientes usan el mismo identificador con
+ * datos distintos, cada petición conserva los suyos</li>
+ * </ul>
+ * Cuando llegan pocas peticiones, cada una espera como mucho el retardo máximo; con
+ * mucha carga, los lotes se llenan antes y la espera es menor.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos. Al cerrarla se
+ * procesan las peticiones ya recibidas y se rechazan las nuevas; las que llegan a la
+ * vez que el cierre pueden procesarse o rechazarse.
+ * <p>
+ * {@code
+ * SortRequestCoalescer coalescer = new SortRequestCoalescer(new StrategySharedChain(), 64, 200, TimeUnit.MICROSECONDS);
+ * List<BoardingCard> sortedCards = coalescer.submit(boardingCards).join();
+ * coalescer.close();
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class SortRequestCoalescer implements AutoCloseable {
+
+	/**
+	 * Tamaño máximo por defecto de cada lote
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+	/**
+	 * Retardo máximo por defecto de cada petición antes de procesar su lote, en
+	 * microsegundos
+	 */
+	public static final long DEFAULT_MAX_DELAY_MICROS = 200;
+
+	/**
+	 * Estrategia con la que se ordenan los viajes, compartida por todos los lotes
+	 */
+	private final TripSorterStrategy strategy;
+
+	/**
+	 * Nombre con el que se registran las ordenaciones en las medidas
+	 */
+	private final String strategyName;
+
+	/**
+	 * Número máximo de peticiones de cada lote
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * Tiempo máximo que se espera desde la primera petición de un lote hasta procesarlo,
+	 * en nanosegundos
+	 */
+	private final long maxDelayNanos;
+
+	/**
+	 * Ejecutor en el que se procesan los lotes
+	 */
+	private final Executor executor;
+
+	/**
+	 * Peticiones recibidas que todavía no forman parte de un lote
+	 */
+	private final BlockingQueue<Request> pending = new LinkedBlockingQueue<>();
+
+	/**
+	 * Hilo que reúne las peticiones en lotes
+	 */
+	private final Thread collector;
+
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder requests = new LongAdder();
+
+	private volatile boolean closed;
+
+	/**
+	 * Construye el agrupador con la estrategia {@link StrategySharedChain}, los límites
+	 * por defecto ({@link #DEFAULT_MAX_BATCH_SIZE} y {@link #DEFAULT_MAX_DELAY_MICROS})
+	 * y el pool común de la JVM
+	 */
+	public SortRequestCoalescer() {
+		this(new StrategySharedChain(), DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Construye el agrupador, que procesa los lotes en el pool común de la JVM
+	 * @param strategy Estrategia de ordenación, que debe poder usarse de forma
+	 * concurrente desde varios hilos
+	 * @param maxBatchSize Número máximo de peticiones de cada lote
+	 * @param maxDelay Tiempo máximo que se espera desde la primera petición de un lote
+	 * hasta procesarlo
+	 * @param unit Unidad del tiempo máximo de espera
+	 */
+	public SortRequestCoalescer(TripSorterStrategy strategy, int maxBatchSize, long maxDelay, TimeUnit unit) {
+		this(strategy, maxBatchSize, maxDelay, unit, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construye el agrupador
+	 * @param strategy Estrategia de ordenación, que debe poder usarse de forma
+	 * concurrente desde varios hilos
+	 * @param maxBatchSize Número máximo de peticiones de cada lote
+	 * @param maxDelay Tiempo máximo que se espera desde la primera petición de un lote
+	 * hasta procesarlo
+	 * @param unit Unidad del tiempo máximo de espera
+	 * @param executor Ejecutor en el que se procesan los lotes
+	 */
+	public SortRequestCoalescer(TripSorterStrategy strategy, int maxBatchSize, long maxDelay, TimeUnit unit,
+			Executor executor) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("El tamaño máximo del lote debe ser positivo: " + maxBatchSize);
+		}
+		if (maxDelay < 0) {
+			throw new IllegalArgumentException("El retardo máximo no puede ser negativo: " + maxDelay);
+		}
+		this.strategy = strategy;
+		this.strategyName = InstrumentedTripSorter.strategyName(strategy);
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		this.executor = executor;
+		this.collector = new Thread(this::collect, "sort-request-coalescer");
+		this.collector.setDaemon(true);
+		this.collector.start();
+	}
+
+	/**
+	 * Solicita la ordenación de las tarjetas de embarque de un viaje
+	 * @param boardingCards Listado de tarjetas de embarque desordenadas
+	 * @return Un futuro que se completa con las tarjetas ordenadas, o con la excepción
+	 * lanzada por la estrategia de ordenación
+	 */
+	public CompletableFuture<List<BoardingCard>> submit(List<BoardingCard> boardingCards) {
+		return enqueue(new Request(boardingCards, null));
+	}
+
+	/**
+	 * Solicita la ordenación de las tarjetas de embarque de un viaje que todavía no se
+	 * han cargado, por ejemplo el cuerpo de una petición recibida por red. Las tarjetas
+	 * se cargan en el lote con el mismo cargador que las del resto de peticiones sin
+	 * cargar del lote. Como quien envía la petición no ve las tarjetas cargadas, se
+	 * comprueba con {@link StrategySharedChain#checkSingleTrip(List, List)} que la
+	 * ordenación las ha recorrido todas
+	 * @param lines Buffer con las tarjetas de embarque, una por línea, con el formato
+	 * de {@link MappedBoardingCardLoader}. El buffer no debe modificarse hasta que se
+	 * complete el futuro
+	 * @return Un futuro que se completa con las tarjetas ordenadas, o con la excepción
+	 * lanzada al cargar o al ordenar las tarjetas. Si las tarjetas no forman un único
+	 * viaje, la excepción es {@link IllegalArgumentException}
+	 */
+	public CompletableFuture<List<BoardingCard>> submit(ByteBuffer lines) {
+		return enqueue(new Request(null, lines));
+	}
+
+	/**
+	 * Permite obtener el número de lotes procesados
+	 * @return El número de lotes procesados
+	 */
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * Permite obtener el número de peticiones procesadas, que dividido entre el número
+	 * de lotes da el tamaño medio de lote
+	 * @return El número de peticiones procesadas
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * Deja de aceptar peticiones y espera a que se entreguen al ejecutor los lotes de
+	 * las peticiones ya recibidas. Las peticiones posteriores se completan con
+	 * {@link IllegalStateException}
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		collector.interrupt();
+		try {
+			collector.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private CompletableFuture<List<BoardingCard>> enqueue(Request request) {
+		if (closed) {
+			request.future.completeExceptionally(closedException());
+			return request.future;
+		}
+		pending.add(request);
+		// Si se cerró mientras se añadía la petición, puede que el recolector ya no la vea
+		if (closed && pending.remove(request)) {
+			request.future.completeExceptionally(closedException());
+		}
+		return request.future;
+	}
+
+	/**
+	 * Bucle del hilo recolector: reúne las peticiones en lotes hasta que se cierra el
+	 * agrupador y no quedan peticiones pendientes
+	 */
+	private void collect() {
+		List<Request> batch = new ArrayList<>(maxBatchSize);
+		while (!closed || !pending.isEmpty()) {
+			try {
+				fill(batch);
+			} catch (InterruptedException e) {
+				// close() interrumpe la espera; las peticiones pendientes se siguen procesando
+			}
+			if (!batch.isEmpty()) {
+				dispatch(batch);
+				batch = new ArrayList<>(maxBatchSize);
+			}
+		}
+	}
+
+	/**
+	 * Espera a la primera petición de un lote y añade las que llegan hasta completar el
+	 * lote o hasta que pasa el retardo máximo
+	 */
+	private void fill(List<Request> batch) throws InterruptedException {
+		Request first = closed ? pending.poll() : pending.take();
+		if (first == null) {
+			return;
+		}
+		batch.add(first);
+		long deadline = System.nanoTime() + maxDelayNanos;
+		while (batch.size() < maxBatchSize) {
+			pending.drainTo(batch, maxBatchSize - batch.size());
+			long remaining = deadline - System.nanoTime();
+			if (batch.size() == maxBatchSize || remaining <= 0) {
+				return;
+			}
+			Request next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void dispatch(List<Request> batch) {
+		try {
+			executor.execute(() -> process(batch));
+		} catch (RejectedExecutionException e) {
+			for (Request request : batch) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Carga y ordena las peticiones de un lote en el hilo actual, compartiendo el
+	 * cargador y el registro de lugares entre todas ellas
+	 */
+	private void process(List<Request> batch) {
+		batches.increment();
+		requests.add(batch.size());
+		MappedBoardingCardLoader loader = null;
+		for (Request request : batch) {
+			try {
+				if (request.boardingCards != null) {
+					request.future.complete(InstrumentedTripSorter.sort(strategy, strategyName, request.boardingCards));
+					continue;
+				}
+				if (loader == null) {
+					loader = new MappedBoardingCardLoader(new PlaceRegistry());
+				}
+				List<BoardingCard> boardingCards = loader.load(request.lines);
+				List<BoardingCard> sortedCards = InstrumentedTripSorter.sort(strategy, strategyName, boardingCards);
+				StrategySharedChain.checkSingleTrip(boardingCards, sortedCards);
+				request.future.complete(sortedCards);
+			} catch (RuntimeException e) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private static IllegalStateException closedException() {
+		return new IllegalStateException("El agrupador de peticiones de ordenación está cerrado");
+	}
+
+	/**
+	 * Petición de ordenación pendiente: las tarjetas ya cargadas o las líneas sin
+	 * cargar, y el futuro que se completa al ordenarlas
+	 */
+	private static final class Request {
+
+		private final List<BoardingCard> boardingCards;
+		private final ByteBuffer lines;
+		private final CompletableFuture<List<BoardingCard>> future = new CompletableFuture<>();
+
+		Request(List<BoardingCard> boardingCards, ByteBuffer lines) {
+			this.boardingCards = boardingCards;
+			this.lines = lines;
+		}
+	}
+}
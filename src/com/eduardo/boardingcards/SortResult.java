@@ -0,0 +1,61 @@
+package com.eduardo.boardingcards;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una ordenación validada de tarjetas de embarque: las tarjetas ordenadas
+ * desde el inicio del viaje y las anomalías detectadas durante la propia ordenación.
+ * <p>
+ * Si no hay anomalías, las tarjetas ordenadas forman el viaje completo. En caso
+ * contrario contienen el tramo del viaje que pudo recorrerse desde su inicio.
+ *
+ * @author eduardo
+ *
+ */
+public final class SortResult {
+
+	/**
+	 * Tarjetas de embarque ordenadas
+	 */
+	private final List<BoardingCard> sortedCards;
+
+	/**
+	 * Anomalías detectadas durante la ordenación
+	 */
+	private final List<TripAnomaly> anomalies;
+
+	/**
+	 * Construye el resultado de una ordenación
+	 * @param sortedCards Tarjetas de embarque ordenadas
+	 * @param anomalies Anomalías detectadas durante la ordenación
+	 */
+	SortResult(List<BoardingCard> sortedCards, List<TripAnomaly> anomalies) {
+		this.sortedCards = Collections.unmodifiableList(sortedCards);
+		this.anomalies = Collections.unmodifiableList(anomalies);
+	}
+
+	/**
+	 * Permite obtener las tarjetas de embarque ordenadas
+	 * @return Vista no modificable de las tarjetas ordenadas
+	 */
+	public List<BoardingCard> getSortedCards() {
+		return sortedCards;
+	}
+
+	/**
+	 * Permite obtener las anomalías detectadas durante la ordenación
+	 * @return Vista no modificable de las anomalías, vacía si el viaje es válido
+	 */
+	public List<TripAnomaly> getAnomalies() {
+		return anomalies;
+	}
+
+	/**
+	 * Permite saber si las tarjetas forman un único viaje válido
+	 * @return true si no se detectó ninguna anomalía
+	 */
+	public boolean isValid() {
+		return anomalies.isEmpty();
+	}
+}
@@ -0,0 +1,155 @@
+package com.eduardo.boardingcards;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Estrategia de ordenación que elige, para cada viaje, la estrategia más adecuada
+ * según su número de tarjetas de embarque, de modo que no hay que elegirla a mano
+ * con {@link Trip#setOrderingTravelStrategy(TripSorterStrategy)}:
+ * <ul>
+ * <li>Hasta {@link #getLinearScanMaxCards()} tarjetas, {@link StrategyLinearScan},
+ * que no reserva ninguna tabla hash. Es el caso de los viajes habituales de pocos
+ * tramos</li>
+ * <li>Desde ahí hasta {@link #getParallelThreshold()} tarjetas,
+ * {@link StrategySharedChain}, que ordena sobre arrays de enteros reutilizados por
+ * cada hilo</li>
+ * <li>A partir de {@link #getParallelThreshold()} tarjetas,
+ * {@link StrategyParallelListRanking}, que reparte la ordenación entre los hilos del
+ * pool</li>
+ * </ul>
+ * Los umbrales por defecto son valores orientativos, no ajustados: 8 tarjetas como
+ * límite del recorrido lineal, cuyo coste cuadrático crece rápido, y como umbral de
+ * paralelismo el mismo valor por defecto de {@link StrategyParallelListRanking}. El
+ * punto en el que cada estrategia pasa a ser más rápida depende de la máquina y del
+ * número de núcleos, por lo que conviene medirlo con el benchmark
+ * AdaptiveSortBenchmark y ajustar los umbrales con el constructor
+ * {@link #StrategyAdaptive(int, int)}.
+ * <p>
+ * Para un mismo listado de tarjetas que forme un único viaje, el resultado es el
+ * mismo sea cual sea la estrategia elegida. Esta clase no guarda estado entre
+ * ordenaciones y puede compartirse entre hilos.
+ * <p>
+ * {@code
+ * TripSorterStrategy strategy = new StrategyAdaptive();
+ * trip.setOrderingTravelStrategy(strategy);
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyAdaptive implements TripSorterStrategy {
+
+	/**
+	 * Número máximo de tarjetas por defecto que se ordenan con {@link StrategyLinearScan}
+	 */
+	public static final int DEFAULT_LINEAR_SCAN_MAX_CARDS = 8;
+
+	/**
+	 * Número de tarjetas por defecto a partir del cual se ordena en paralelo
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = StrategyParallelListRanking.DEFAULT_PARALLEL_THRESHOLD;
+
+	/**
+	 * Número máximo de tarjetas que se ordenan con {@link StrategyLinearScan}
+	 */
+	private final int linearScanMaxCards;
+
+	/**
+	 * Número de tarjetas a partir del cual se ordena en paralelo
+	 */
+	private final int parallelThreshold;
+
+	private final TripSorterStrategy linearScan = new StrategyLinearScan();
+	private final TripSorterStrategy sharedChain = new StrategySharedChain();
+	private final TripSorterStrategy parallelRanking;
+
+	/**
+	 * Construye la estrategia con los umbrales por defecto
+	 * ({@link #DEFAULT_LINEAR_SCAN_MAX_CARDS} y {@link #DEFAULT_PARALLEL_THRESHOLD})
+	 */
+	public StrategyAdaptive() {
+		this(DEFAULT_LINEAR_SCAN_MAX_CARDS, DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Construye la estrategia con los umbrales indicados, usando el pool común de la
+	 * JVM para la ordenación paralela
+	 * @param linearScanMaxCards Número máximo de tarjetas que se ordenan con
+	 * {@link StrategyLinearScan}
+	 * @param parallelThreshold Número de tarjetas a partir del cual se ordena en
+	 * paralelo
+	 */
+	public StrategyAdaptive(int linearScanMaxCards, int parallelThreshold) {
+		this(linearScanMaxCards, parallelThreshold, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construye la estrategia con los umbrales y el pool de hilos indicados
+	 * @param linearScanMaxCards Número máximo de tarjetas que se ordenan con
+	 * {@link StrategyLinearScan}
+	 * @param parallelThreshold Número de tarjetas a partir del cual se ordena en
+	 * paralelo
+	 * @param pool Pool de hilos en el que se realiza la ordenación paralela
+	 */
+	public StrategyAdaptive(int linearScanMaxCards, int parallelThreshold, ForkJoinPool pool) {
+		if (linearScanMaxCards < 0) {
+			throw new IllegalArgumentException("El umbral del recorrido lineal no puede ser negativo: "
+					+ linearScanMaxCards);
+		}
+		if (parallelThreshold <= linearScanMaxCards) {
+			throw new IllegalArgumentException("El umbral de paralelismo debe ser mayor que el del recorrido lineal: "
+					+ parallelThreshold);
+		}
+		this.linearScanMaxCards = linearScanMaxCards;
+		this.parallelThreshold = parallelThreshold;
+		this.parallelRanking = new StrategyParallelListRanking(parallelThreshold, pool);
+	}
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje, con la
+	 * estrategia que corresponde a su número de tarjetas.
+	 * <p>
+	 * Coste computacional del método: O(n), salvo para los viajes que se ordenan con
+	 * {@link StrategyLinearScan}, cuyo coste cuadrático está acotado por el umbral
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		return strategyFor(boardingCards.size()).sortTrip(boardingCards);
+	}
+
+	/**
+	 * Permite obtener la estrategia con la que se ordena un viaje
+	 * @param cardCount Número de tarjetas de embarque del viaje
+	 * @return La estrategia elegida para dicho número de tarjetas
+	 */
+	public TripSorterStrategy strategyFor(int cardCount) {
+		if (cardCount <= linearScanMaxCards) {
+			return linearScan;
+		}
+		if (cardCount < parallelThreshold) {
+			return sharedChain;
+		}
+		return parallelRanking;
+	}
+
+	/**
+	 * Permite obtener el número máximo de tarjetas que se ordenan con
+	 * {@link StrategyLinearScan}
+	 * @return El umbral del recorrido lineal
+	 */
+	public int getLinearScanMaxCards() {
+		return linearScanMaxCards;
+	}
+
+	/**
+	 * Permite obtener el número de tarjetas a partir del cual se ordena en paralelo
+	 * @return El umbral de paralelismo
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+}
@@ -0,0 +1,185 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.eduardo.location.PlaceDictionary;
+
+/**
+ * Estrategia de ordenación para un conjunto de tarjetas de embarque que mezcla los
+ * viajes de varios pasajeros, sin que se pueda confiar en el propietario de cada
+ * tarjeta para separarlos.
+ * <p>
+ * Las tarjetas se separan primero en viajes independientes: dos tarjetas pertenecen
+ * al mismo viaje si están conectadas a través de sus lugares de salida y de llegada.
+ * Para ello cada lugar se traduce a un número entero denso mediante un
+ * {@link PlaceDictionary} y los lugares de cada tarjeta se unen en una estructura
+ * union-find (con compresión de caminos y unión por tamaño), de modo que la
+ * separación tiene un coste prácticamente lineal. Después, los viajes obtenidos se
+ * ordenan en paralelo con un {@link BatchTripSorter}.
+ * <p>
+ * Cada viaje independiente debe cumplir los requisitos de la estrategia de
+ * ordenación del {@link BatchTripSorter} utilizado ({@link StrategySharedChain} por
+ * defecto).
+ * <p>
+ * {@code
+ * StrategyDisjointChains strategy = new StrategyDisjointChains();
+ * List<List<BoardingCard>> itineraries = strategy.sortTrips(mixedCards);
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyDisjointChains implements TripSorterStrategy {
+
+	/**
+	 * Ordenador por lotes con el que se ordenan los viajes independientes
+	 */
+	private final BatchTripSorter batchSorter;
+
+	/**
+	 * Construye la estrategia ordenando los viajes con {@link StrategySharedChain}
+	 * sobre el pool común de la JVM
+	 */
+	public StrategyDisjointChains() {
+		this(new BatchTripSorter());
+	}
+
+	/**
+	 * Construye la estrategia ordenando los viajes con el ordenador por lotes indicado.
+	 * La estrategia no cierra el ordenador
+	 * @param batchSorter Ordenador por lotes con el que se ordenan los viajes
+	 */
+	public StrategyDisjointChains(BatchTripSorter batchSorter) {
+		this.batchSorter = batchSorter;
+	}
+
+	/**
+	 * Ordena todas las tarjetas de embarque y devuelve los viajes independientes uno
+	 * detrás de otro, en el orden en el que aparece su primera tarjeta en el listado.
+	 * Para obtener cada viaje por separado puede usarse {@link #sortTrips(List)}.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		List<BoardingCard> sortedCards = new ArrayList<>(boardingCards.size());
+		for (List<BoardingCard> trip : sortTrips(boardingCards)) {
+			sortedCards.addAll(trip);
+		}
+		return sortedCards;
+	}
+
+	/**
+	 * Separa un listado de tarjetas de embarque de varios viajes en los viajes
+	 * independientes que lo forman y ordena cada uno de ellos en paralelo
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque de varios viajes
+	 * @return Un listado de tarjetas ordenadas por cada viaje independiente, en el
+	 * orden en el que aparece su primera tarjeta en el listado recibido
+	 */
+	public List<List<BoardingCard>> sortTrips(List<BoardingCard> boardingCards) {
+		return batchSorter.sortTrips(splitTrips(boardingCards));
+	}
+
+	/**
+	 * Separa un listado de tarjetas de embarque en los viajes independientes que lo
+	 * forman, sin ordenarlos. Las tarjetas de cada viaje conservan el orden en el que
+	 * se recibieron
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque de varios viajes
+	 * @return Un listado de tarjetas por cada viaje independiente, en el orden en el
+	 * que aparece su primera tarjeta en el listado recibido
+	 */
+	public List<List<BoardingCard>> splitTrips(List<BoardingCard> boardingCards) {
+		int cardCount = boardingCards.size();
+		PlaceDictionary dictionary = new PlaceDictionary(cardCount + 1);
+		int[] departures = new int[cardCount];
+		int[] destinations = new int[cardCount];
+		for (int card = 0; card < cardCount; card++) {
+			BoardingCard boardingCard = boardingCards.get(card);
+			departures[card] = dictionary.intern(boardingCard.getDeparture());
+			destinations[card] = dictionary.intern(boardingCard.getDestination());
+		}
+
+		// Unión de los lugares de salida y de llegada de cada tarjeta
+		int placeCount = dictionary.size();
+		int[] parent = new int[placeCount];
+		int[] componentSize = new int[placeCount];
+		for (int place = 0; place < placeCount; place++) {
+			parent[place] = place;
+			componentSize[place] = 1;
+		}
+		for (int card = 0; card < cardCount; card++) {
+			union(parent, componentSize, departures[card], destinations[card]);
+		}
+
+		/*
+		 * Número de viaje de cada tarjeta, asignado por orden de aparición. Los arrays
+		 * de tamaños y de lugares de llegada ya no se necesitan y se reutilizan
+		 */
+		int[] tripByRoot = componentSize;
+		Arrays.fill(tripByRoot, ChainIndex.NONE);
+		int[] tripByCard = destinations;
+		int[] tripSizes = new int[placeCount];
+		int tripCount = 0;
+		for (int card = 0; card < cardCount; card++) {
+			int root = find(parent, departures[card]);
+			if (tripByRoot[root] == ChainIndex.NONE) {
+				tripByRoot[root] = tripCount++;
+			}
+			tripByCard[card] = tripByRoot[root];
+			tripSizes[tripByCard[card]]++;
+		}
+
+		List<List<BoardingCard>> trips = new ArrayList<>(tripCount);
+		for (int trip = 0; trip < tripCount; trip++) {
+			trips.add(new ArrayList<>(tripSizes[trip]));
+		}
+		for (int card = 0; card < cardCount; card++) {
+			trips.get(tripByCard[card]).add(boardingCards.get(card));
+		}
+		return trips;
+	}
+
+	/**
+	 * Busca el representante del conjunto al que pertenece un lugar, acortando por el
+	 * camino los enlaces recorridos (división a la mitad del camino)
+	 * @param parent Enlace de cada lugar hacia el representante de su conjunto
+	 * @param place El lugar
+	 * @return El representante del conjunto del lugar
+	 */
+	private static int find(int[] parent, int place) {
+		while (parent[place] != place) {
+			parent[place] = parent[parent[place]];
+			place = parent[place];
+		}
+		return place;
+	}
+
+	/**
+	 * Une los conjuntos a los que pertenecen dos lugares, colgando el conjunto menor
+	 * del mayor
+	 * @param parent Enlace de cada lugar hacia el representante de su conjunto
+	 * @param componentSize Tamaño de cada conjunto, válido para sus representantes
+	 * @param first Un lugar
+	 * @param second Otro lugar
+	 */
+	private static void union(int[] parent, int[] componentSize, int first, int second) {
+		int firstRoot = find(parent, first);
+		int secondRoot = find(parent, second);
+		if (firstRoot == secondRoot) {
+			return;
+		}
+		if (componentSize[firstRoot] < componentSize[secondRoot]) {
+			int root = firstRoot;
+			firstRoot = secondRoot;
+			secondRoot = root;
+		}
+		parent[secondRoot] = firstRoot;
+		componentSize[firstRoot] += componentSize[secondRoot];
+	}
+}
@@ -0,0 +1,147 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eduardo.location.PlaceDictionary;
+
+/**
+ * Estrategia de ordenación que, a diferencia de {@link StrategyNoStartNoEnd}, admite
+ * viajes de ida y vuelta (el viaje acaba en el mismo lugar en el que empieza) y viajes
+ * que pasan varias veces por el mismo lugar.
+ * <p>
+ * Las tarjetas de embarque se ven como las aristas de un grafo dirigido cuyos vértices
+ * son los lugares, y ordenar el viaje consiste en encontrar un camino (o un circuito,
+ * si el viaje es de ida y vuelta) que use cada arista exactamente una vez, es decir,
+ * un camino euleriano. El camino se construye con el algoritmo de Hierholzer sobre
+ * arrays de enteros: cada lugar se traduce a un número entero denso mediante un
+ * {@link PlaceDictionary} y las tarjetas que salen de cada lugar se agrupan en un
+ * único array de adyacencia (formato CSR), sin crear ningún objeto por tarjeta.
+ * <p>
+ * El viaje comienza en el único lugar del que salen más tarjetas de las que llegan.
+ * Si no existe tal lugar, el viaje es circular y comienza en el lugar de partida de la
+ * primera tarjeta de la lista. Cuando hay varios órdenes válidos (por ejemplo, si se
+ * pasa dos veces por el mismo lugar), se devuelve uno cualquiera de ellos.
+ * <p>
+ * Esta clase no guarda estado entre ordenaciones y es segura para su uso concurrente
+ * desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyEulerianPath implements TripSorterStrategy {
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje, aunque
+	 * el viaje vuelva al lugar de inicio o pase varias veces por el mismo lugar.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @throws IllegalArgumentException si las tarjetas no forman un único viaje, es
+	 * decir, si no existe un camino que use cada tarjeta exactamente una vez
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		int cardCount = boardingCards.size();
+		List<BoardingCard> sortedCards = new ArrayList<>(cardCount);
+		if (cardCount == 0) {
+			return sortedCards;
+		}
+
+		// Traducción de los lugares de cada tarjeta a números enteros densos
+		PlaceDictionary dictionary = new PlaceDictionary(cardCount + 1);
+		int[] departures = new int[cardCount];
+		int[] destinations = new int[cardCount];
+		for (int card = 0; card < cardCount; card++) {
+			BoardingCard boardingCard = boardingCards.get(card);
+			departures[card] = dictionary.intern(boardingCard.getDeparture());
+			destinations[card] = dictionary.intern(boardingCard.getDestination());
+		}
+		int placeCount = dictionary.size();
+
+		// Tarjetas agrupadas por lugar de partida: las que salen del lugar p están en
+		// adjacency[firstCard[p]] ... adjacency[firstCard[p + 1] - 1]
+		int[] firstCard = new int[placeCount + 1];
+		int[] balance = new int[placeCount];
+		for (int card = 0; card < cardCount; card++) {
+			firstCard[departures[card] + 1]++;
+			balance[departures[card]]++;
+			balance[destinations[card]]--;
+		}
+		for (int place = 0; place < placeCount; place++) {
+			firstCard[place + 1] += firstCard[place];
+		}
+		int[] nextCard = new int[placeCount];
+		System.arraycopy(firstCard, 0, nextCard, 0, placeCount);
+		int[] adjacency = new int[cardCount];
+		for (int card = 0; card < cardCount; card++) {
+			adjacency[nextCard[departures[card]]++] = card;
+		}
+		System.arraycopy(firstCard, 0, nextCard, 0, placeCount);
+
+		int start = findStart(balance, departures[0]);
+
+		/*
+		 * Algoritmo de Hierholzer iterativo: se avanza por tarjetas no usadas hasta
+		 * quedarse sin salida, y al retroceder cada tarjeta se coloca en el viaje
+		 * desde el final hacia el principio
+		 */
+		int[] stack = new int[cardCount];
+		int stackSize = 0;
+		int[] path = new int[cardCount];
+		int pathStart = cardCount;
+		int place = start;
+		while (true) {
+			if (nextCard[place] < firstCard[place + 1]) {
+				int card = adjacency[nextCard[place]++];
+				stack[stackSize++] = card;
+				place = destinations[card];
+			} else if (stackSize > 0) {
+				int card = stack[--stackSize];
+				path[--pathStart] = card;
+				place = departures[card];
+			} else {
+				break;
+			}
+		}
+		if (pathStart != 0) {
+			throw new IllegalArgumentException("Las tarjetas de embarque no forman un único viaje: "
+					+ pathStart + " tarjetas no están conectadas con el resto");
+		}
+
+		for (int card : path) {
+			sortedCards.add(boardingCards.get(card));
+		}
+		return sortedCards;
+	}
+
+	/**
+	 * Comprueba que el número de tarjetas que salen y llegan a cada lugar permite
+	 * un camino euleriano, y devuelve el lugar en el que comienza
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param balance Para cada lugar, tarjetas que salen de él menos tarjetas que llegan
+	 * @param firstDeparture Lugar de partida de la primera tarjeta, que se usa como
+	 * inicio si el viaje es circular
+	 * @return El lugar en el que comienza el viaje
+	 * @throws IllegalArgumentException si las tarjetas no pueden formar un único viaje
+	 */
+	private static int findStart(int[] balance, int firstDeparture) {
+		int start = -1;
+		int end = -1;
+		for (int place = 0; place < balance.length; place++) {
+			if (balance[place] == 0) {
+				continue;
+			}
+			if (balance[place] == 1 && start < 0) {
+				start = place;
+			} else if (balance[place] == -1 && end < 0) {
+				end = place;
+			} else {
+				throw new IllegalArgumentException(
+						"Las tarjetas de embarque no forman un único viaje: hay más de un inicio o fin posible");
+			}
+		}
+		return start >= 0 ? start : firstDeparture;
+	}
+}
@@ -0,0 +1,791 @@
+package com.eduardo.boardingcards;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Estrategia de ordenación para conjuntos de tarjetas de embarque que no caben en
+ * memoria, que trabaja sobre ficheros en el formato de {@link MappedBoardingCardLoader}
+ * y usa el disco local como memoria auxiliar.
+ * <p>
+ * La memoria que usa la ordenación en el heap está limitada por el presupuesto
+ * indicado al construir la estrategia. La ordenación de un fichero se hace en varias
+ * pasadas secuenciales:
+ * <ol>
+ * <li>Particionado: se lee el fichero de entrada y, por cada tarjeta, se escribe su
+ * lugar de salida en la partición que corresponde al hash de dicho lugar, y su lugar
+ * de llegada en la partición que corresponde al hash de éste. Así, las dos apariciones
+ * de un mismo lugar (como llegada de una tarjeta y como salida de la siguiente) quedan
+ * siempre en la misma partición. Las particiones que, por el límite de ficheros
+ * abiertos a la vez, no caben en el presupuesto de memoria se vuelven a repartir
+ * con otra función hash en particiones más pequeñas, hasta que caben.</li>
+ * <li>Enlace: en cada partición se ordenan por lugar las salidas y las llegadas, y se
+ * mezclan ambas secuencias ordenadas. Cada lugar que aparece en las dos enlaza una
+ * tarjeta con su siguiente, y la salida que no aparece como llegada es el inicio del
+ * viaje.</li>
+ * <li>Recorrido: se recorre el viaje desde su inicio siguiendo los enlaces, asignando
+ * a cada tarjeta su posición en el viaje. Los enlaces y las posiciones se guardan en
+ * ficheros proyectados en memoria (8 bytes por tarjeta cada uno), fuera del heap, de
+ * modo que el sistema operativo decide qué parte se mantiene en memoria.</li>
+ * <li>Distribución: se vuelve a leer el fichero de entrada y cada línea se escribe en
+ * el tramo del resultado que le corresponde según su posición. Los tramos que no
+ * caben en el presupuesto de memoria se vuelven a repartir por posición en tramos más
+ * pequeños, y al recorrer los tramos en orden se escribe el fichero de resultado de
+ * forma secuencial.</li>
+ * </ol>
+ * Si un fichero auxiliar sigue sin caber en el presupuesto tras tres repartos, la
+ * ordenación falla con {@link IllegalStateException} en lugar de superar el
+ * presupuesto.
+ * Los ficheros auxiliares se crean en un directorio temporal dentro del directorio
+ * indicado, y se borran al terminar cada ordenación.
+ * <p>
+ * Esta clase no guarda estado entre ordenaciones y es segura para su uso concurrente
+ * desde varios hilos.
+ * <p>
+ * {@code
+ * StrategyExternalMemory strategy = new StrategyExternalMemory(spillDirectory, 256L << 20);
+ * strategy.sortFile(unsortedCardsFile, sortedCardsFile);
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyExternalMemory implements TripSorterStrategy {
+
+	/**
+	 * Presupuesto de memoria por defecto, en bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+	/**
+	 * Presupuesto de memoria mínimo, en bytes
+	 */
+	private static final long MIN_MEMORY_BUDGET = 1L << 20;
+
+	/**
+	 * Número máximo de ficheros de partición o de tramos abiertos a la vez
+	 */
+	private static final int MAX_SPILL_FILES = 4096;
+
+	/**
+	 * Número máximo de veces que se vuelve a repartir un fichero auxiliar que no cabe
+	 * en el presupuesto de memoria
+	 */
+	private static final int MAX_SPILL_LEVELS = 3;
+
+	/**
+	 * Memoria estimada por cada lugar cargado en una partición, sin contar los
+	 * caracteres de su identificador: la cadena de texto y su registro
+	 */
+	private static final int PLACE_OVERHEAD = 96;
+
+	/**
+	 * Memoria estimada por cada línea cargada en un tramo del resultado, sin contar
+	 * sus caracteres
+	 */
+	private static final int LINE_OVERHEAD = 64;
+
+	private static final char SEPARATOR = ';';
+	private static final char COMMENT = '#';
+
+	/**
+	 * Posición del campo del identificador del lugar de salida en cada línea
+	 */
+	private static final int DEPARTURE_FIELD = 3;
+
+	/**
+	 * Posición del campo del identificador del lugar de llegada en cada línea
+	 */
+	private static final int DESTINATION_FIELD = 6;
+
+	/**
+	 * Directorio en el que se crean los ficheros auxiliares
+	 */
+	private final Path spillDirectory;
+
+	/**
+	 * Memoria máxima en el heap que usa cada fase de la ordenación, en bytes
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * Construye la estrategia con el presupuesto de memoria por defecto
+	 * ({@link #DEFAULT_MEMORY_BUDGET}), creando los ficheros auxiliares en el
+	 * directorio temporal del sistema
+	 */
+	public StrategyExternalMemory() {
+		this(Path.of(System.getProperty("java.io.tmpdir")), DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Construye la estrategia
+	 * @param spillDirectory Directorio en el que se crean los ficheros auxiliares
+	 * @param memoryBudget Memoria máxima en el heap que usa cada fase de la
+	 * ordenación, en bytes
+	 */
+	public StrategyExternalMemory(Path spillDirectory, long memoryBudget) {
+		if (memoryBudget < MIN_MEMORY_BUDGET) {
+			throw new IllegalArgumentException("El presupuesto de memoria debe ser de al menos "
+					+ MIN_MEMORY_BUDGET + " bytes: " + memoryBudget);
+		}
+		this.spillDirectory = spillDirectory;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje.
+	 * <p>
+	 * Las tarjetas se escriben en un fichero auxiliar con
+	 * {@link BoardingCardLineFormatter} y se enlazan y recorren en disco igual que en
+	 * {@link #sortFile(Path, Path)}. Este método tiene sentido cuando las tarjetas
+	 * caben en memoria pero las tablas de las demás estrategias no; para conjuntos
+	 * que no caben en memoria debe usarse {@link #sortFile(Path, Path)}.
+	 * <p>
+	 * Coste computacional del método: O(n log n)
+	 * @throws UncheckedIOException si se produce un error en los ficheros auxiliares
+	 * @throws IllegalArgumentException si las tarjetas no forman un único viaje
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje, o los datos no pueden repartirse en el presupuesto de memoria
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		try {
+			Path workDirectory = Files.createTempDirectory(spillDirectory, "trip-sort");
+			try {
+				Path input = workDirectory.resolve("cards.txt");
+				BoardingCardLineFormatter.write(boardingCards, input);
+				try (MappedLongArray positions = rank(input, workDirectory)) {
+					BoardingCard[] sortedCards = new BoardingCard[boardingCards.size()];
+					for (int card = 0; card < sortedCards.length; card++) {
+						sortedCards[(int) positions.get(card)] = boardingCards.get(card);
+					}
+					return new ArrayList<>(Arrays.asList(sortedCards));
+				}
+			} finally {
+				deleteRecursively(workDirectory);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Ordena las tarjetas de embarque de un fichero y escribe el viaje ordenado en otro
+	 * fichero, con el mismo formato y una tarjeta por línea. Las líneas vacías y los
+	 * comentarios del fichero de entrada no se copian.
+	 * <p>
+	 * Coste computacional del método: O(n log n), con un número constante de lecturas
+	 * secuenciales del fichero de entrada
+	 * @param input Fichero de tarjetas de embarque desordenadas
+	 * @param output Fichero en el que se escribe el viaje ordenado, que se crea o se
+	 * sobrescribe
+	 * @throws IOException si se produce un error al leer o escribir los ficheros
+	 * @throws IllegalArgumentException si alguna línea no es válida o las tarjetas no
+	 * forman un único viaje
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje, o los datos no pueden repartirse en el presupuesto de memoria
+	 */
+	public void sortFile(Path input, Path output) throws IOException {
+		Path workDirectory = Files.createTempDirectory(spillDirectory, "trip-sort");
+		try (MappedLongArray positions = rank(input, workDirectory)) {
+			distribute(input, output, positions, workDirectory);
+		} finally {
+			deleteRecursively(workDirectory);
+		}
+	}
+
+	/**
+	 * Permite obtener el presupuesto de memoria de la estrategia
+	 * @return La memoria máxima en el heap que usa cada fase de la ordenación, en bytes
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Calcula la posición en el viaje de cada tarjeta de un fichero: particiona los
+	 * lugares, enlaza cada tarjeta con su siguiente y recorre el viaje
+	 * @param input Fichero de tarjetas de embarque
+	 * @param workDirectory Directorio de los ficheros auxiliares
+	 * @return Para cada tarjeta, en el orden del fichero, su posición en el viaje
+	 * @throws IOException si se produce un error al leer o escribir los ficheros
+	 */
+	private MappedLongArray rank(Path input, Path workDirectory) throws IOException {
+		// Cada línea genera dos lugares, que en memoria ocupan más que en el fichero
+		long inputSize = Files.size(input);
+		Path[] partitions = spillFiles(workDirectory, "places-", spillFileCount(inputSize * 2 + inputSize / 16 * PLACE_OVERHEAD));
+		long[] partitionSizes = new long[partitions.length];
+		long cardCount = partition(input, partitions, partitionSizes);
+
+		try (MappedLongArray successors = new MappedLongArray(workDirectory.resolve("successors.bin"), cardCount)) {
+			long initialCard = -1;
+			for (int partition = 0; partition < partitions.length; partition++) {
+				initialCard = initialCard(initialCard,
+						link(partitions[partition], partitionSizes[partition], successors, workDirectory, 0));
+			}
+			if (initialCard < 0 && cardCount > 0) {
+				throw new IllegalStateException("No se puede averiguar la tarjeta inicial del viaje");
+			}
+
+			MappedLongArray positions = new MappedLongArray(workDirectory.resolve("positions.bin"), cardCount);
+			long position = 0;
+			long card = initialCard;
+			while (card >= 0 && position < cardCount) {
+				positions.set(card, position++);
+				card = successors.get(card) - 1;
+			}
+			if (position != cardCount) {
+				positions.close();
+				throw new IllegalArgumentException("Las tarjetas de embarque no forman un único viaje: "
+						+ (cardCount - position) + " tarjetas no están conectadas con el resto");
+			}
+			return positions;
+		}
+	}
+
+	/**
+	 * Combina la tarjeta inicial encontrada hasta el momento con la de otra partición
+	 * @return La tarjeta inicial, o -1 si todavía no se ha encontrado
+	 * @throws IllegalArgumentException si ambas particiones tienen tarjeta inicial
+	 */
+	private static long initialCard(long initialCard, long start) {
+		if (start < 0) {
+			return initialCard;
+		}
+		if (initialCard >= 0) {
+			throw new IllegalArgumentException("Las tarjetas de embarque no forman un único viaje: "
+					+ "hay más de una tarjeta inicial posible");
+		}
+		return start;
+	}
+
+	/**
+	 * Primera pasada: escribe cada lugar de salida y de llegada en la partición que le
+	 * corresponde según su hash
+	 * @param input Fichero de tarjetas de embarque
+	 * @param partitions Ficheros de las particiones
+	 * @param partitionSizes Array en el que se acumula la memoria estimada que ocupa
+	 * cada partición al cargarla
+	 * @return El número de tarjetas del fichero
+	 * @throws IOException si se produce un error al leer o escribir los ficheros
+	 */
+	private long partition(Path input, Path[] partitions, long[] partitionSizes) throws IOException {
+		DataOutputStream[] outputs = new DataOutputStream[partitions.length];
+		int bufferSize = spillBufferSize(partitions.length);
+		long cardCount = 0;
+		try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+			for (int partition = 0; partition < partitions.length; partition++) {
+				outputs[partition] = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(partitions[partition]), bufferSize));
+			}
+			int[] bounds = new int[DESTINATION_FIELD + 2];
+			long lineNumber = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (isIgnored(line)) {
+					continue;
+				}
+				if (!splitFields(line, bounds)) {
+					throw new IllegalArgumentException("Línea no válida " + lineNumber + " del fichero: faltan campos");
+				}
+				String departure = line.substring(bounds[DEPARTURE_FIELD], bounds[DEPARTURE_FIELD + 1] - 1);
+				String destination = line.substring(bounds[DESTINATION_FIELD], bounds[DESTINATION_FIELD + 1] - 1);
+				int departurePartition = partitionOf(departure, partitions.length, 0);
+				int destinationPartition = partitionOf(destination, partitions.length, 0);
+				writePlace(outputs[departurePartition], true, cardCount, departure);
+				writePlace(outputs[destinationPartition], false, cardCount, destination);
+				partitionSizes[departurePartition] += placeSize(departure);
+				partitionSizes[destinationPartition] += placeSize(destination);
+				cardCount++;
+			}
+		} finally {
+			closeAll(outputs);
+		}
+		return cardCount;
+	}
+
+	/**
+	 * Segunda pasada, para una partición: si cabe en el presupuesto de memoria la
+	 * enlaza, y si no la vuelve a repartir con otra función hash y enlaza cada una de
+	 * las particiones resultantes. El fichero de la partición se borra al terminar
+	 * @param partition Fichero de la partición
+	 * @param partitionSize Memoria estimada que ocupa la partición al cargarla
+	 * @param successors Tabla de enlaces
+	 * @param workDirectory Directorio de los ficheros auxiliares
+	 * @param level Número de veces que se han repartido ya los lugares de la partición
+	 * @return La tarjeta inicial del viaje si su lugar de salida está en esta
+	 * partición, o -1 en caso contrario
+	 * @throws IOException si se produce un error al leer o escribir las particiones
+	 */
+	private long link(Path partition, long partitionSize, MappedLongArray successors, Path workDirectory, int level)
+			throws IOException {
+		if (partitionSize <= memoryBudget) {
+			long initialCard = linkInMemory(partition, successors);
+			Files.delete(partition);
+			return initialCard;
+		}
+		checkSpillLevel(level, partition, partitionSize);
+		String name = partition.getFileName().toString();
+		Path[] partitions = spillFiles(workDirectory, name.substring(0, name.length() - ".bin".length()) + "-",
+				spillFileCount(partitionSize));
+		long[] partitionSizes = new long[partitions.length];
+		repartition(partition, partitions, partitionSizes, level + 1);
+		Files.delete(partition);
+		long initialCard = -1;
+		for (int i = 0; i < partitions.length; i++) {
+			initialCard = initialCard(initialCard, link(partitions[i], partitionSizes[i], successors, workDirectory,
+					level + 1));
+		}
+		return initialCard;
+	}
+
+	/**
+	 * Vuelve a repartir los lugares de una partición con la función hash del nivel
+	 * indicado
+	 * @param partition Fichero de la partición
+	 * @param partitions Ficheros de las nuevas particiones
+	 * @param partitionSizes Array en el que se acumula la memoria estimada que ocupa
+	 * cada nueva partición al cargarla
+	 * @param level Nivel de la función hash
+	 * @throws IOException si se produce un error al leer o escribir las particiones
+	 */
+	private void repartition(Path partition, Path[] partitions, long[] partitionSizes, int level) throws IOException {
+		DataOutputStream[] outputs = new DataOutputStream[partitions.length];
+		int bufferSize = spillBufferSize(partitions.length);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition)))) {
+			for (int i = 0; i < partitions.length; i++) {
+				outputs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partitions[i]), bufferSize));
+			}
+			while (true) {
+				boolean departure;
+				try {
+					departure = in.readBoolean();
+				} catch (EOFException e) {
+					break;
+				}
+				long card = in.readLong();
+				String place = in.readUTF();
+				int target = partitionOf(place, partitions.length, level);
+				writePlace(outputs[target], departure, card, place);
+				partitionSizes[target] += placeSize(place);
+			}
+		} finally {
+			closeAll(outputs);
+		}
+	}
+
+	/**
+	 * Enlaza una partición que cabe en memoria: ordena las salidas y las llegadas por
+	 * lugar y las mezcla para enlazar cada tarjeta con la que sale del lugar al que
+	 * llega
+	 * @param partition Fichero de la partición
+	 * @param successors Tabla de enlaces: para cada tarjeta, la posición de su
+	 * siguiente más uno, o 0 si es la última
+	 * @return La tarjeta inicial del viaje si su lugar de salida está en esta
+	 * partición, o -1 en caso contrario
+	 * @throws IOException si se produce un error al leer la partición
+	 */
+	private static long linkInMemory(Path partition, MappedLongArray successors) throws IOException {
+		List<PlaceOccurrence> departures = new ArrayList<>();
+		List<PlaceOccurrence> destinations = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition)))) {
+			while (true) {
+				boolean departure;
+				try {
+					departure = in.readBoolean();
+				} catch (EOFException e) {
+					break;
+				}
+				long card = in.readLong();
+				String place = in.readUTF();
+				(departure ? departures : destinations).add(new PlaceOccurrence(place, card));
+			}
+		}
+		departures.sort(PlaceOccurrence.BY_PLACE);
+		destinations.sort(PlaceOccurrence.BY_PLACE);
+		checkUnique(departures, "salen");
+		checkUnique(destinations, "llegan");
+
+		long initialCard = -1;
+		int arrival = 0;
+		for (PlaceOccurrence departure : departures) {
+			int comparison = -1;
+			while (arrival < destinations.size()
+					&& (comparison = destinations.get(arrival).place.compareTo(departure.place)) < 0) {
+				arrival++;
+			}
+			if (arrival < destinations.size() && comparison == 0) {
+				successors.set(destinations.get(arrival).card, departure.card + 1);
+				arrival++;
+			} else if (initialCard < 0) {
+				initialCard = departure.card;
+			} else {
+				throw new IllegalArgumentException("Las tarjetas de embarque no forman un único viaje: "
+						+ "hay más de una tarjeta inicial posible");
+			}
+		}
+		return initialCard;
+	}
+
+	/**
+	 * Comprueba que en una secuencia de apariciones ordenada por lugar no hay dos
+	 * tarjetas con el mismo lugar, lo que supondría una bifurcación del viaje
+	 */
+	private static void checkUnique(List<PlaceOccurrence> occurrences, String direction) {
+		for (int i = 1; i < occurrences.size(); i++) {
+			if (occurrences.get(i).place.equals(occurrences.get(i - 1).place)) {
+				throw new IllegalArgumentException("Las tarjetas de embarque no forman un único viaje: "
+						+ "varias tarjetas " + direction + " de " + occurrences.get(i).place);
+			}
+		}
+	}
+
+	/**
+	 * Última pasada: reparte las líneas del fichero de entrada en tramos según su
+	 * posición en el viaje, y escribe los tramos en orden en el fichero de resultado
+	 * @param input Fichero de tarjetas de embarque
+	 * @param output Fichero de resultado
+	 * @param positions Posición en el viaje de cada tarjeta
+	 * @param workDirectory Directorio de los ficheros auxiliares
+	 * @throws IOException si se produce un error al leer o escribir los ficheros
+	 */
+	private void distribute(Path input, Path output, MappedLongArray positions, Path workDirectory)
+			throws IOException {
+		long cardCount = positions.length();
+		if (cardCount == 0) {
+			Files.write(output, new byte[0]);
+			return;
+		}
+		long lineSize = Files.size(input) / cardCount + 1;
+		long cardsPerRun = Math.max(1, memoryBudget / (2 * lineSize + LINE_OVERHEAD));
+		int runCount = (int) ((cardCount + cardsPerRun - 1) / cardsPerRun);
+		if (runCount > MAX_SPILL_FILES) {
+			cardsPerRun = (cardCount + MAX_SPILL_FILES - 1) / MAX_SPILL_FILES;
+			runCount = (int) ((cardCount + cardsPerRun - 1) / cardsPerRun);
+		}
+		Path[] runs = new Path[runCount];
+		DataOutputStream[] outputs = new DataOutputStream[runCount];
+		int bufferSize = spillBufferSize(runCount);
+		try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+			for (int run = 0; run < runCount; run++) {
+				runs[run] = workDirectory.resolve("run-" + run + ".bin");
+				outputs[run] = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(runs[run]), bufferSize));
+			}
+			long card = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (isIgnored(line)) {
+					continue;
+				}
+				long position = positions.get(card++);
+				DataOutputStream out = outputs[(int) (position / cardsPerRun)];
+				out.writeInt((int) (position % cardsPerRun));
+				writeString(out, line);
+			}
+		} finally {
+			closeAll(outputs);
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			for (int run = 0; run < runCount; run++) {
+				long runLength = Math.min(cardsPerRun, cardCount - run * cardsPerRun);
+				writeRun(runs[run], runLength, lineSize, writer, workDirectory, 0);
+			}
+		}
+	}
+
+	/**
+	 * Escribe en orden las líneas de un tramo en el fichero de resultado. Si el tramo
+	 * no cabe en el presupuesto de memoria, se vuelve a repartir por posición en tramos
+	 * más pequeños que se escriben uno detrás de otro. El fichero del tramo se borra al
+	 * terminar
+	 * @param run Fichero del tramo, con la posición de cada línea dentro del tramo
+	 * @param runLength Número de líneas del tramo
+	 * @param lineSize Tamaño medio de cada línea en el fichero de entrada
+	 * @param writer Fichero de resultado
+	 * @param workDirectory Directorio de los ficheros auxiliares
+	 * @param level Número de veces que se han repartido ya las líneas del tramo
+	 * @throws IOException si se produce un error al leer o escribir los ficheros
+	 */
+	private void writeRun(Path run, long runLength, long lineSize, BufferedWriter writer, Path workDirectory,
+			int level) throws IOException {
+		long cardsPerRun = Math.max(1, memoryBudget / (2 * lineSize + LINE_OVERHEAD));
+		if (runLength <= cardsPerRun) {
+			String[] lines = new String[(int) runLength];
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)))) {
+				for (int i = 0; i < lines.length; i++) {
+					lines[in.readInt()] = readString(in);
+				}
+			}
+			Files.delete(run);
+			for (String line : lines) {
+				writer.write(line);
+				writer.newLine();
+			}
+			return;
+		}
+		checkSpillLevel(level, run, runLength * (2 * lineSize + LINE_OVERHEAD));
+		if ((runLength + cardsPerRun - 1) / cardsPerRun > MAX_SPILL_FILES) {
+			cardsPerRun = (runLength + MAX_SPILL_FILES - 1) / MAX_SPILL_FILES;
+		}
+		String name = run.getFileName().toString();
+		Path[] runs = spillFiles(workDirectory, name.substring(0, name.length() - ".bin".length()) + "-",
+				(int) ((runLength + cardsPerRun - 1) / cardsPerRun));
+		DataOutputStream[] outputs = new DataOutputStream[runs.length];
+		int bufferSize = spillBufferSize(runs.length);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)))) {
+			for (int i = 0; i < runs.length; i++) {
+				outputs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runs[i]), bufferSize));
+			}
+			for (long i = 0; i < runLength; i++) {
+				int position = in.readInt();
+				DataOutputStream out = outputs[(int) (position / cardsPerRun)];
+				out.writeInt((int) (position % cardsPerRun));
+				writeString(out, readString(in));
+			}
+		} finally {
+			closeAll(outputs);
+		}
+		Files.delete(run);
+		for (int i = 0; i < runs.length; i++) {
+			writeRun(runs[i], Math.min(cardsPerRun, runLength - i * cardsPerRun), lineSize, writer, workDirectory,
+					level + 1);
+		}
+	}
+
+	/**
+	 * Calcula el número de ficheros en los que hay que repartir los datos para que
+	 * cada uno quepa en el presupuesto de memoria, sin superar el número máximo de
+	 * ficheros abiertos a la vez
+	 * @param estimatedBytes Memoria estimada que ocupan los datos al cargarlos
+	 */
+	private int spillFileCount(long estimatedBytes) {
+		long count = (estimatedBytes + memoryBudget - 1) / memoryBudget;
+		return (int) Math.max(1, Math.min(MAX_SPILL_FILES, count));
+	}
+
+	/**
+	 * Comprueba que un fichero auxiliar que no cabe en el presupuesto de memoria puede
+	 * volver a repartirse
+	 * @throws IllegalStateException si ya se ha repartido el número máximo de veces
+	 */
+	private void checkSpillLevel(int level, Path file, long estimatedBytes) {
+		if (level >= MAX_SPILL_LEVELS) {
+			throw new IllegalStateException("El fichero auxiliar " + file.getFileName() + " ocupa unos "
+					+ estimatedBytes + " bytes en memoria y no cabe en el presupuesto de " + memoryBudget
+					+ " bytes tras repartirlo " + MAX_SPILL_LEVELS + " veces");
+		}
+	}
+
+	private static Path[] spillFiles(Path workDirectory, String prefix, int count) {
+		Path[] files = new Path[count];
+		for (int i = 0; i < count; i++) {
+			files[i] = workDirectory.resolve(prefix + i + ".bin");
+		}
+		return files;
+	}
+
+	/**
+	 * Memoria estimada que ocupa la aparición de un lugar al cargar una partición
+	 */
+	private static long placeSize(String place) {
+		return PLACE_OVERHEAD + 2L * place.length();
+	}
+
+	/**
+	 * Calcula el tamaño del buffer de escritura de cada fichero auxiliar cuando hay
+	 * varios abiertos a la vez, para que entre todos no superen el presupuesto
+	 */
+	private int spillBufferSize(int files) {
+		return (int) Math.max(512, Math.min(64 * 1024, memoryBudget / 4 / files));
+	}
+
+	private static boolean isIgnored(String line) {
+		return line.isEmpty() || line.charAt(0) == COMMENT;
+	}
+
+	/**
+	 * Localiza el inicio de los campos de una línea hasta el del lugar de llegada,
+	 * más el inicio del campo siguiente
+	 * @param line La línea
+	 * @param bounds Array en el que se guarda el inicio de cada campo
+	 * @return false si la línea no tiene suficientes campos
+	 */
+	private static boolean splitFields(String line, int[] bounds) {
+		bounds[0] = 0;
+		int field = 1;
+		for (int i = 0; i < line.length() && field < bounds.length; i++) {
+			if (line.charAt(i) == SEPARATOR) {
+				bounds[field++] = i + 1;
+			}
+		}
+		if (field == bounds.length - 1) {
+			// El lugar de llegada es el último campo que se necesita: acaba con la línea
+			bounds[field++] = line.length() + 1;
+		}
+		return field == bounds.length;
+	}
+
+	/**
+	 * Permite obtener la partición de un lugar con la función hash de un nivel de
+	 * reparto. Cada nivel mezcla el hash del lugar con una semilla distinta, de modo
+	 * que los lugares de una partición se repartan entre las particiones del nivel
+	 * siguiente
+	 */
+	private static int partitionOf(String place, int partitionCount, int level) {
+		int h = (place.hashCode() ^ level * 0x61C88647) * 0x9E3779B9;
+		h ^= h >>> 15;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return (h & Integer.MAX_VALUE) % partitionCount;
+	}
+
+	private static void writePlace(DataOutputStream out, boolean departure, long card, String place)
+			throws IOException {
+		out.writeBoolean(departure);
+		out.writeLong(card);
+		out.writeUTF(place);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void closeAll(DataOutputStream[] outputs) throws IOException {
+		IOException failure = null;
+		for (DataOutputStream out : outputs) {
+			if (out == null) {
+				continue;
+			}
+			try {
+				out.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Borra el directorio de ficheros auxiliares. Los ficheros proyectados en memoria
+	 * pueden no poder borrarse en algunos sistemas hasta que se libera su proyección,
+	 * en cuyo caso se borran al terminar la máquina virtual
+	 */
+	private static void deleteRecursively(Path directory) {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					file.toFile().deleteOnExit();
+				}
+			});
+		} catch (IOException e) {
+			directory.toFile().deleteOnExit();
+		}
+	}
+
+	/**
+	 * Aparición de un lugar como salida o llegada de una tarjeta
+	 */
+	private static final class PlaceOccurrence {
+
+		static final Comparator<PlaceOccurrence> BY_PLACE = Comparator.comparing(occurrence -> occurrence.place);
+
+		final String place;
+		final long card;
+
+		PlaceOccurrence(String place, long card) {
+			this.place = place;
+			this.card = card;
+		}
+	}
+
+	/**
+	 * Array de enteros largos guardado en un fichero proyectado en memoria, en bloques
+	 * de tamaño fijo
+	 */
+	private static final class MappedLongArray implements AutoCloseable {
+
+		/**
+		 * Logaritmo en base 2 del número de enteros de cada bloque (16M enteros, 128 MB)
+		 */
+		private static final int BLOCK_SHIFT = 24;
+
+		private static final long BLOCK_MASK = (1L << BLOCK_SHIFT) - 1;
+
+		private LongBuffer[] blocks;
+		private final long length;
+
+		MappedLongArray(Path file, long length) throws IOException {
+			this.length = length;
+			int blockCount = (int) ((length + BLOCK_MASK) >>> BLOCK_SHIFT);
+			blocks = new LongBuffer[blockCount];
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				for (int block = 0; block < blockCount; block++) {
+					long blockStart = (long) block << BLOCK_SHIFT;
+					long blockLength = Math.min(1L << BLOCK_SHIFT, length - blockStart);
+					blocks[block] = channel.map(FileChannel.MapMode.READ_WRITE, blockStart * Long.BYTES,
+							blockLength * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+				}
+			}
+		}
+
+		long get(long index) {
+			return blocks[(int) (index >>> BLOCK_SHIFT)].get((int) (index & BLOCK_MASK));
+		}
+
+		void set(long index, long value) {
+			blocks[(int) (index >>> BLOCK_SHIFT)].put((int) (index & BLOCK_MASK), value);
+		}
+
+		long length() {
+			return length;
+		}
+
+		/**
+		 * Suelta las referencias a los bloques para que su proyección pueda liberarse
+		 */
+		@Override
+		public void close() {
+			blocks = new LongBuffer[0];
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.eduardo.boardingcards;
+
+import java.util.List;
+
+import com.eduardo.location.PlaceDictionary;
+
+/**
+ * Estrategia de ordenación equivalente a {@link StrategyNoStartNoEnd}, pero que
+ * resuelve la tarjeta inicial y el orden del viaje sobre arrays de enteros en lugar
+ * de sobre tablas hash indexadas por el identificador de cada lugar.
+ * <p>
+ * Cada identificador de lugar se traduce una única vez a un número entero denso
+ * mediante un {@link PlaceDictionary}. A partir de ahí, las tablas de sucesores y
+ * predecesores son arrays de tipo int indexados por dicho número, de modo que no se
+ * crea ningún objeto por cada tarjeta de embarque y el recorrido de la cadena no
+ * tiene que calcular el hash de ninguna cadena de texto.
+ * <p>
+ * Para un mismo listado de tarjetas que forme un único viaje, el resultado es el
+ * mismo que el de {@link StrategyNoStartNoEnd}.
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyIndexedChain implements TripSorterStrategy {
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje.
+	 * <p>
+	 * IMPORTANTE: al igual que {@link StrategyNoStartNoEnd}, este método funciona
+	 * siempre y cuando el viaje acabe en un lugar diferente al de inicio.
+	 * <p>
+	 * Las fases de la ordenación se registran como eventos de JDK Flight Recorder:
+	 * {@link com.eduardo.metrics.BuildTablesEvent},
+	 * {@link com.eduardo.metrics.InitialCardEvent} y
+	 * {@link com.eduardo.metrics.SortCardsEvent}.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		String strategy = InstrumentedTripSorter.strategyName(this);
+		ChainIndex index = new ChainIndex(boardingCards.size());
+		index.buildTables(boardingCards, strategy);
+		return index.sortedCards(strategy);
+	}
+}
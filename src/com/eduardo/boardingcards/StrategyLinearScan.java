@@ -0,0 +1,140 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eduardo.metrics.InitialCardEvent;
+import com.eduardo.metrics.SortCardsEvent;
+import com.eduardo.metrics.TripPhaseEvent;
+
+/**
+ * Estrategia de ordenación para viajes de muy pocas tarjetas de embarque, como los
+ * habituales de 2 a 6 tramos, que no construye ninguna tabla hash ni ningún índice.
+ * <p>
+ * Las tarjetas se copian a un array y se ordenan dentro de él: primero se busca la
+ * tarjeta cuyo lugar de salida no es el lugar de llegada de ninguna otra, y después,
+ * para cada posición, se busca entre las tarjetas que quedan la que sale del lugar
+ * de llegada de la anterior y se intercambia a su posición. Cada búsqueda compara
+ * directamente los identificadores de los lugares, por lo que el coste es
+ * cuadrático, pero para viajes cortos es menor que el de calcular el hash de cada
+ * identificador y reservar las tablas. La única memoria que se reserva es la del
+ * array y la de la lista resultado.
+ * <p>
+ * Para un mismo listado de tarjetas que forme un único viaje, el resultado es el
+ * mismo que el de {@link StrategyNoStartNoEnd}. Si varias tarjetas salen del mismo
+ * lugar, se sigue la última de ellas en el orden del listado, igual que en las
+ * estrategias que indexan las tarjetas por su lugar de salida
+ * ({@link StrategyNoStartNoEnd}, {@link StrategySharedChain} o
+ * {@link StrategyParallelListRanking}), de modo que el resultado no cambia cuando
+ * {@link StrategyAdaptive} pasa de una estrategia a otra. Para viajes más largos debe usarse
+ * {@link StrategySharedChain} o {@link StrategyAdaptive}, que elige la estrategia
+ * según el número de tarjetas.
+ * <p>
+ * Esta clase no guarda estado entre ordenaciones y puede compartirse entre hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyLinearScan implements TripSorterStrategy {
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje. Si falta
+	 * algún tramo, el viaje ordenado termina en la última tarjeta que se puede
+	 * encadenar desde la tarjeta inicial. Si hay una bifurcación, se sigue la última
+	 * tarjeta del listado que sale del lugar.
+	 * <p>
+	 * La búsqueda de la tarjeta inicial y el encadenamiento de las tarjetas se
+	 * registran como eventos de JDK Flight Recorder: {@link InitialCardEvent} y
+	 * {@link SortCardsEvent}. Al no construir ninguna tabla, esta estrategia no
+	 * registra ningún {@link com.eduardo.metrics.BuildTablesEvent}.
+	 * <p>
+	 * Coste computacional del método: O(n^2)
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		String strategy = InstrumentedTripSorter.strategyName(this);
+		BoardingCard[] cards = boardingCards.toArray(new BoardingCard[0]);
+		InitialCardEvent initialCardEvent = new InitialCardEvent();
+		initialCardEvent.begin();
+		int initialCard = initialCard(cards);
+		initialCardEvent.finish(cards.length, strategy,
+				initialCard < 0 ? TripPhaseEvent.NOT_FOUND : TripPhaseEvent.SUCCESS);
+		if (initialCard < 0) {
+			throw new IllegalStateException("No se puede averiguar la tarjeta inicial del viaje");
+		}
+		SortCardsEvent sortCardsEvent = new SortCardsEvent();
+		sortCardsEvent.begin();
+		// Posición de cada tarjeta en el listado original, que los intercambios desordenan
+		int[] inputOrder = new int[cards.length];
+		for (int card = 0; card < inputOrder.length; card++) {
+			inputOrder[card] = card;
+		}
+		swap(cards, inputOrder, 0, initialCard);
+		int sortedCount = 1;
+		while (sortedCount < cards.length) {
+			String nextDeparture = cards[sortedCount - 1].getDestination().getIdentifier();
+			int nextCard = -1;
+			for (int card = sortedCount; card < cards.length; card++) {
+				if (sameIdentifier(cards[card].getDeparture().getIdentifier(), nextDeparture)
+						&& (nextCard < 0 || inputOrder[card] > inputOrder[nextCard])) {
+					nextCard = card;
+				}
+			}
+			if (nextCard < 0) {
+				break;
+			}
+			swap(cards, inputOrder, sortedCount++, nextCard);
+		}
+		List<BoardingCard> sortedBoardingCards = new ArrayList<>(sortedCount);
+		for (int card = 0; card < sortedCount; card++) {
+			sortedBoardingCards.add(cards[card]);
+		}
+		sortCardsEvent.finish(cards.length, strategy, TripPhaseEvent.SUCCESS);
+		return sortedBoardingCards;
+	}
+
+	/**
+	 * Busca la tarjeta cuyo lugar de salida no es el lugar de llegada de ninguna
+	 * tarjeta. Si varias tarjetas salen de dicho lugar, la última de ellas
+	 * <p>
+	 * Coste computacional del método: O(n^2)
+	 * @return La posición de la tarjeta inicial, o -1 si no se puede averiguar
+	 */
+	private static int initialCard(BoardingCard[] cards) {
+		for (int card = 0; card < cards.length; card++) {
+			String departure = cards[card].getDeparture().getIdentifier();
+			int other = 0;
+			while (other < cards.length
+					&& !sameIdentifier(cards[other].getDestination().getIdentifier(), departure)) {
+				other++;
+			}
+			if (other == cards.length) {
+				int lastCard = card;
+				for (other = card + 1; other < cards.length; other++) {
+					if (sameIdentifier(cards[other].getDeparture().getIdentifier(), departure)) {
+						lastCard = other;
+					}
+				}
+				return lastCard;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean sameIdentifier(String first, String second) {
+		// Los identificadores de lugar suelen estar compartidos por el registro de lugares
+		return first == second || first.equals(second);
+	}
+
+	private static void swap(BoardingCard[] cards, int[] inputOrder, int first, int second) {
+		BoardingCard card = cards[first];
+		cards[first] = cards[second];
+		cards[second] = card;
+		int order = inputOrder[first];
+		inputOrder[first] = inputOrder[second];
+		inputOrder[second] = order;
+	}
+}
@@ -5,6 +5,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
 
+import com.eduardo.metrics.BuildTablesEvent;
+import com.eduardo.metrics.InitialCardEvent;
+import com.eduardo.metrics.SortCardsEvent;
+import com.eduardo.metrics.TripPhaseEvent;
+
 /**
  * Siguiendo el patrón Strategy para la ordenación de un conjunto de tarjetas de
  * embarque, esta clase representa una estrategia de ordenación concreta. 
@@ -52,6 +57,17 @@ public class StrategyNoStartNoEnd implements TripSorterStrategy {
 	 * IMPORTANTE: este método funciona siempre y cuando el viaje acabe en un lugar
 	 * diferente al de inicio, es decir, el lugar de origen de la tarjeta de embarque donde
 	 * comienza el viaje no puede figurar como origen o destino en otra tarjeta de embarque
+	 * (para viajes de ida y vuelta puede usarse {@link StrategyEulerianPath})
+	 * <p>
+	 * Las tablas de tarjetas se vacían al comenzar cada ordenación, por lo que una
+	 * misma instancia puede reutilizarse para ordenar varios viajes de forma
+	 * secuencial. Esta clase no es segura para su uso concurrente desde varios hilos;
+	 * para ello puede usarse {@link StrategySharedChain}.
+	 * <p>
+	 * Las fases de la ordenación (construcción de las tablas, búsqueda de la tarjeta
+	 * inicial y recorrido de las tarjetas) se registran como eventos de JDK Flight
+	 * Recorder: {@link BuildTablesEvent}, {@link InitialCardEvent} y
+	 * {@link SortCardsEvent}.
 	 * <p>
 	 * Coste computacional del m�todo: O(n)
 	 */
@@ -79,14 +95,39 @@ public class StrategyNoStartNoEnd implements TripSorterStrategy {
 		
 		// Construimos los diccionarios o tablas necesarias para realizar las operaciones
 		// necesarias para este algoritmo de ordenaci�n
-		buildDeparturesDestinationsTables(boardingCards);
+		// Cada fase se registra como un evento de JFR independiente
+		String strategy = InstrumentedTripSorter.strategyName(this);
+		int tripLength = boardingCards == null ? 0 : boardingCards.size();
+		
+		departuresCards.clear();
+		destinationsCards.clear();
+		BuildTablesEvent buildTablesEvent = new BuildTablesEvent();
+		buildTablesEvent.begin();
+		String outcome = TripPhaseEvent.FAILURE;
+		try {
+			buildDeparturesDestinationsTables(boardingCards);
+			outcome = TripPhaseEvent.SUCCESS;
+		} finally {
+			buildTablesEvent.finish(tripLength, strategy, outcome);
+		}
 		
 		// Obtenemos la tarjeta de embarque en la que comienza el viaje
+		InitialCardEvent initialCardEvent = new InitialCardEvent();
+		initialCardEvent.begin();
 		BoardingCard initialBoardingCard = initialBoardingCard();
+		initialCardEvent.finish(tripLength, strategy,
+				initialBoardingCard == null ? TripPhaseEvent.NOT_FOUND : TripPhaseEvent.SUCCESS);
 		
-		List<BoardingCard> sortedBoardingCards = sortBoardingCards(initialBoardingCard);
-
-		return sortedBoardingCards;
+		SortCardsEvent sortCardsEvent = new SortCardsEvent();
+		sortCardsEvent.begin();
+		outcome = TripPhaseEvent.FAILURE;
+		try {
+			List<BoardingCard> sortedBoardingCards = sortBoardingCards(initialBoardingCard);
+			outcome = TripPhaseEvent.SUCCESS;
+			return sortedBoardingCards;
+		} finally {
+			sortCardsEvent.finish(tripLength, strategy, outcome);
+		}
 	}
 
 	/**
@@ -0,0 +1,261 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estrategia de ordenación para viajes con un número muy grande de tarjetas de
+ * embarque (cientos de millones), en la que todas las tablas auxiliares se guardan
+ * fuera del heap de Java.
+ * <p>
+ * El algoritmo es el mismo que el de {@link StrategyIndexedChain}: cada lugar se
+ * traduce a un número entero denso y la tarjeta inicial y el orden del viaje se
+ * resuelven con tablas de sucesores y predecesores indexadas por dicho número. La
+ * diferencia es que el diccionario de lugares y todas las tablas son
+ * {@link OffHeapIntArray}, de modo que ordenar un viaje no crea objetos en el heap
+ * por cada tarjeta ni por cada lugar, y la presión sobre el recolector de basura no
+ * crece con el tamaño del viaje.
+ * <p>
+ * El diccionario de lugares no copia los identificadores: para cada lugar guarda el
+ * hash de su identificador y la tarjeta en la que apareció por primera vez, y
+ * compara con el identificador de dicha tarjeta cuando dos hashes coinciden.
+ * <p>
+ * El resultado puede obtenerse como un array de posiciones fuera del heap con
+ * {@link #sortTripIndexes(List)}, sin crear una lista con todas las tarjetas. El
+ * listado de tarjetas recibido debe permitir acceso aleatorio eficiente.
+ * <p>
+ * Esta clase no guarda estado entre ordenaciones y es segura para su uso concurrente
+ * desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyOffHeapChain implements TripSorterStrategy {
+
+	/**
+	 * Valor de las tablas de tarjetas que indica que no hay tarjeta. Las tablas guardan
+	 * la posición de la tarjeta más uno, de modo que las posiciones recién reservadas,
+	 * que valen 0, no necesitan inicializarse
+	 */
+	private static final int NO_CARD = 0;
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje.
+	 * <p>
+	 * IMPORTANTE: al igual que {@link StrategyNoStartNoEnd}, este método funciona
+	 * siempre y cuando el viaje acabe en un lugar diferente al de inicio.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		OffHeapIntArray order = sortTripIndexes(boardingCards);
+		List<BoardingCard> sortedBoardingCards = new ArrayList<>((int) order.length());
+		for (long position = 0; position < order.length(); position++) {
+			sortedBoardingCards.add(boardingCards.get(order.get(position)));
+		}
+		return sortedBoardingCards;
+	}
+
+	/**
+	 * Ordena un listado de tarjetas de embarque y devuelve el orden del viaje como un
+	 * array fuera del heap con las posiciones de las tarjetas en el listado recibido:
+	 * la posición 0 del resultado contiene la posición de la tarjeta inicial, y así
+	 * sucesivamente.
+	 * <p>
+	 * Si las tarjetas no forman un único viaje, el resultado sólo contiene las
+	 * tarjetas que se alcanzan desde la tarjeta inicial.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque desordenadas
+	 * @return Las posiciones de las tarjetas en el orden del viaje
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	public OffHeapIntArray sortTripIndexes(List<BoardingCard> boardingCards) {
+		int cardCount = boardingCards.size();
+		OffHeapIntArray order = new OffHeapIntArray(cardCount);
+		if (cardCount == 0) {
+			return order;
+		}
+
+		// Un viaje lineal de n tarjetas pasa por n + 1 lugares
+		long expectedPlaces = cardCount + 1L;
+		OffHeapPlaceTable places = new OffHeapPlaceTable(boardingCards, expectedPlaces);
+		OffHeapIntArray departurePlace = new OffHeapIntArray(cardCount);
+		OffHeapIntArray destinationPlace = new OffHeapIntArray(cardCount);
+		OffHeapIntArray cardByDeparture = new OffHeapIntArray(expectedPlaces);
+		OffHeapIntArray cardByDestination = new OffHeapIntArray(expectedPlaces);
+		for (int card = 0; card < cardCount; card++) {
+			int departure = places.intern(card, true);
+			int destination = places.intern(card, false);
+			if (places.size() > cardByDeparture.length()) {
+				long length = Math.max(places.size(), cardByDeparture.length() * 2);
+				cardByDeparture.ensureLength(length);
+				cardByDestination.ensureLength(length);
+			}
+			departurePlace.set(card, departure);
+			destinationPlace.set(card, destination);
+			cardByDeparture.set(departure, card + 1);
+			cardByDestination.set(destination, card + 1);
+		}
+
+		int initialCard = -1;
+		for (int card = 0; card < cardCount && initialCard < 0; card++) {
+			int departure = departurePlace.get(card);
+			if (cardByDestination.get(departure) == NO_CARD && cardByDeparture.get(departure) == card + 1) {
+				initialCard = card;
+			}
+		}
+		if (initialCard < 0) {
+			throw new IllegalStateException("No se puede averiguar la tarjeta inicial del viaje");
+		}
+
+		// El recorrido se limita al número de tarjetas por si forman un ciclo
+		long position = 0;
+		int card = initialCard;
+		while (position < cardCount) {
+			order.set(position++, card);
+			int next = cardByDeparture.get(destinationPlace.get(card));
+			if (next == NO_CARD) {
+				break;
+			}
+			card = next - 1;
+		}
+		order.truncate(position);
+		return order;
+	}
+
+	/**
+	 * Diccionario de lugares guardado fuera del heap, que asigna a cada identificador
+	 * de lugar un número entero denso (0, 1, 2, ...) mediante direccionamiento abierto
+	 * con sondeo lineal
+	 */
+	private static final class OffHeapPlaceTable {
+
+		/**
+		 * Tarjetas de embarque de las que se obtienen los identificadores
+		 */
+		private final List<BoardingCard> boardingCards;
+
+		/**
+		 * Tabla hash: número de lugar más uno de cada posición, o 0 si está libre
+		 */
+		private OffHeapIntArray slots;
+
+		/**
+		 * Máscara para obtener una posición de la tabla hash a partir de un hash
+		 */
+		private long mask;
+
+		/**
+		 * Hash del identificador de cada lugar
+		 */
+		private final OffHeapIntArray placeHash;
+
+		/**
+		 * Tarjeta en la que aparece cada lugar por primera vez: su posición si es el
+		 * lugar de salida, o el complemento a uno de su posición si es el de llegada
+		 */
+		private final OffHeapIntArray placeCard;
+
+		/**
+		 * Número de lugares registrados
+		 */
+		private long size;
+
+		OffHeapPlaceTable(List<BoardingCard> boardingCards, long expectedPlaces) {
+			this.boardingCards = boardingCards;
+			long capacity = Long.highestOneBit(Math.max(expectedPlaces * 2 - 1, 1)) << 1;
+			this.slots = new OffHeapIntArray(capacity);
+			this.mask = capacity - 1;
+			this.placeHash = new OffHeapIntArray(expectedPlaces);
+			this.placeCard = new OffHeapIntArray(expectedPlaces);
+		}
+
+		/**
+		 * Permite obtener el número de un lugar de una tarjeta, registrándolo si no
+		 * estaba registrado
+		 * @param card Posición de la tarjeta
+		 * @param departure true para el lugar de salida, false para el de llegada
+		 * @return El número del lugar
+		 */
+		int intern(int card, boolean departure) {
+			String identifier = identifier(card, departure);
+			int hash = mix(identifier.hashCode());
+			long slot = hash & mask;
+			while (true) {
+				int entry = slots.get(slot);
+				if (entry == 0) {
+					break;
+				}
+				int place = entry - 1;
+				if (placeHash.get(place) == hash && identifier.equals(identifier(place))) {
+					return place;
+				}
+				slot = (slot + 1) & mask;
+			}
+			int place = (int) size++;
+			if (size > placeHash.length()) {
+				placeHash.ensureLength(placeHash.length() * 2);
+				placeCard.ensureLength(placeCard.length() * 2);
+			}
+			placeHash.set(place, hash);
+			placeCard.set(place, departure ? card : ~card);
+			slots.set(slot, place + 1);
+			if (size * 2 > slots.length()) {
+				rehash();
+			}
+			return place;
+		}
+
+		/**
+		 * Permite obtener el número de lugares registrados
+		 * @return El número de lugares registrados
+		 */
+		long size() {
+			return size;
+		}
+
+		/**
+		 * Duplica el tamaño de la tabla hash, recolocando los lugares a partir de su
+		 * hash guardado sin volver a consultar sus identificadores
+		 */
+		private void rehash() {
+			long capacity = slots.length() * 2;
+			OffHeapIntArray grown = new OffHeapIntArray(capacity);
+			long grownMask = capacity - 1;
+			for (long place = 0; place < size; place++) {
+				long slot = placeHash.get(place) & grownMask;
+				while (grown.get(slot) != 0) {
+					slot = (slot + 1) & grownMask;
+				}
+				grown.set(slot, (int) place + 1);
+			}
+			slots = grown;
+			mask = grownMask;
+		}
+
+		private String identifier(int place) {
+			int card = placeCard.get(place);
+			return card >= 0 ? identifier(card, true) : identifier(~card, false);
+		}
+
+		private String identifier(int card, boolean departure) {
+			BoardingCard boardingCard = boardingCards.get(card);
+			return (departure ? boardingCard.getDeparture() : boardingCard.getDestination()).getIdentifier();
+		}
+
+		/**
+		 * Mezcla los bits del hash de un identificador para repartir mejor las claves
+		 * en la tabla y devuelve un valor no negativo
+		 */
+		private static int mix(int hash) {
+			int h = hash * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & Integer.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+import com.eduardo.metrics.BuildTablesEvent;
+import com.eduardo.metrics.InitialCardEvent;
+import com.eduardo.metrics.SortCardsEvent;
+import com.eduardo.metrics.TripPhaseEvent;
+
+/**
+ * Estrategia de ordenación para viajes con un número muy elevado de tarjetas de
+ * embarque, que calcula en paralelo la posición de cada tarjeta dentro del viaje.
+ * <p>
+ * Recorrer la cadena de tarjetas de una en una sólo puede hacerlo un hilo, y cada
+ * salto es un acceso a memoria que no se puede predecir. Esta estrategia aplica el
+ * algoritmo de ordenación de listas por sublistas (<i>sublist ranking</i>):
+ * <ol>
+ * <li>Se construye el índice de sucesores de las tarjetas ({@link ChainIndex})</li>
+ * <li>Se eligen tarjetas separadoras repartidas por todo el viaje, incluida la
+ * tarjeta inicial. Cada separadora comienza una sublista que termina justo antes de
+ * la siguiente separadora</li>
+ * <li>En paralelo, cada sublista se recorre anotando en cada tarjeta a qué sublista
+ * pertenece y su posición dentro de ella</li>
+ * <li>Se recorre la cadena de sublistas, mucho más corta que la de tarjetas, para
+ * calcular la posición inicial de cada sublista en el viaje</li>
+ * <li>En paralelo, cada tarjeta se copia directamente a su posición final en el
+ * array resultado</li>
+ * </ol>
+ * El trabajo total es O(n), como el de la estrategia secuencial, pero los recorridos
+ * se reparten entre todos los hilos del pool. Por debajo del umbral indicado el
+ * coste de coordinar los hilos no compensa, y se usa el recorrido secuencial.
+ * <p>
+ * El recorrido por sublistas necesita que cada tarjeta tenga como mucho una tarjeta
+ * anterior. Si dos tarjetas llegan al lugar del que sale otra, por ejemplo en un
+ * viaje con un ramal, una tarjeta repetida o un ciclo, dos sublistas podrían
+ * recorrer las mismas tarjetas a la vez. En ese caso, que se detecta al calcular los
+ * sucesores, también se usa el recorrido secuencial, de modo que el resultado es el
+ * mismo que el de {@link StrategySharedChain}.
+ * <p>
+ * Esta clase no guarda estado entre ordenaciones y puede compartirse entre hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class StrategyParallelListRanking implements TripSorterStrategy {
+
+	/**
+	 * Número de tarjetas por defecto a partir del cual se ordena en paralelo
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+	/**
+	 * Longitud media deseada de cada sublista
+	 */
+	private static final int SUBLIST_LENGTH = 1 << 12;
+
+	/**
+	 * Número mínimo de tarjetas que procesa cada tarea en los recorridos paralelos
+	 * sobre todas las tarjetas
+	 */
+	private static final int GRAIN = 1 << 13;
+
+	/**
+	 * Número de tarjetas a partir del cual se ordena en paralelo
+	 */
+	private final int parallelThreshold;
+
+	/**
+	 * Pool de hilos en el que se realizan los recorridos paralelos
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Construye la estrategia con el umbral por defecto
+	 * ({@link #DEFAULT_PARALLEL_THRESHOLD}) sobre el pool común de la JVM
+	 */
+	public StrategyParallelListRanking() {
+		this(DEFAULT_PARALLEL_THRESHOLD, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Construye la estrategia con el umbral y el pool de hilos indicados
+	 * @param parallelThreshold Número de tarjetas a partir del cual se ordena en
+	 * paralelo. Por debajo se usa el recorrido secuencial
+	 * @param pool Pool de hilos en el que se realizan los recorridos paralelos
+	 */
+	public StrategyParallelListRanking(int parallelThreshold, ForkJoinPool pool) {
+		if (parallelThreshold < 0) {
+			throw new IllegalArgumentException("El umbral de paralelismo no puede ser negativo: " + parallelThreshold);
+		}
+		this.parallelThreshold = parallelThreshold;
+		this.pool = pool;
+	}
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje.
+	 * <p>
+	 * Las fases de la ordenación se registran como eventos de JDK Flight Recorder:
+	 * {@link BuildTablesEvent}, {@link InitialCardEvent} y {@link SortCardsEvent}.
+	 * <p>
+	 * Coste computacional del método: O(n), repartido entre los hilos del pool a
+	 * partir del umbral de paralelismo
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		String strategy = InstrumentedTripSorter.strategyName(this);
+		ChainIndex index = new ChainIndex(boardingCards.size());
+		index.buildTables(boardingCards, strategy);
+		if (index.size() < parallelThreshold) {
+			return index.sortedCards(strategy);
+		}
+		int initialCard = index.initialCard(strategy);
+		if (initialCard == ChainIndex.NONE) {
+			throw new IllegalStateException("No se puede averiguar la tarjeta inicial del viaje");
+		}
+		SortCardsEvent event = new SortCardsEvent();
+		event.begin();
+		String outcome = TripPhaseEvent.FAILURE;
+		try {
+			List<BoardingCard> sortedBoardingCards = rankAndScatter(index, initialCard);
+			outcome = TripPhaseEvent.SUCCESS;
+			return sortedBoardingCards;
+		} finally {
+			event.finish(index.size(), strategy, outcome);
+		}
+	}
+
+	/**
+	 * Calcula en paralelo la posición de cada tarjeta en el viaje y las copia a su
+	 * posición final. Si alguna tarjeta tiene más de una tarjeta anterior, ordena las
+	 * tarjetas con el recorrido secuencial
+	 * @param index Índice de sucesores de las tarjetas
+	 * @param initialCard Posición de la tarjeta en la que comienza el viaje
+	 * @return Lista con las tarjetas de embarque ordenadas
+	 */
+	private List<BoardingCard> rankAndScatter(ChainIndex index, int initialCard) {
+		final int n = index.size();
+
+		/*
+		 * Sucesor de cada tarjeta, para no pasar por la tabla de lugares en cada salto.
+		 * El índice guarda una única tarjeta anterior por lugar, por lo que si el
+		 * sucesor de una tarjeta tiene otra tarjeta anterior, hay dos tarjetas que
+		 * llegan al mismo lugar
+		 */
+		final int[] successor = new int[n];
+		final AtomicBoolean merged = new AtomicBoolean();
+		parallelFor(0, n, card -> {
+			int next = index.nextCard(card);
+			successor[card] = next;
+			if (next != ChainIndex.NONE && index.previousCard(next) != card) {
+				merged.set(true);
+			}
+		});
+		if (merged.get()) {
+			return index.sortedCards();
+		}
+
+		/*
+		 * Separadoras: la tarjeta inicial es la primera, y el resto se eligen a
+		 * intervalos regulares de las posiciones del listado recibido. En
+		 * sublistOfSplitter y ownerSublist se guarda el número de sublista más uno,
+		 * de modo que el cero significa "ninguna" sin tener que rellenar los arrays
+		 */
+		int sublistCount = Math.max(1, n / SUBLIST_LENGTH);
+		int stride = Math.max(1, n / sublistCount);
+		final int[] splitters = new int[sublistCount + 1];
+		final int[] sublistOfSplitter = new int[n];
+		splitters[0] = initialCard;
+		sublistOfSplitter[initialCard] = 1;
+		int splitterCount = 1;
+		for (int card = 0; card < n && splitterCount < splitters.length; card += stride) {
+			if (sublistOfSplitter[card] == 0) {
+				splitters[splitterCount] = card;
+				sublistOfSplitter[card] = ++splitterCount;
+			}
+		}
+		final int sublists = splitterCount;
+
+		// Recorrido paralelo de cada sublista
+		final int[] ownerSublist = new int[n];
+		final int[] localRank = new int[n];
+		final int[] sublistLength = new int[sublists];
+		final int[] nextSublist = new int[sublists];
+		parallelFor(0, sublists, 1, sublist -> {
+			int card = splitters[sublist];
+			int rank = 0;
+			do {
+				ownerSublist[card] = sublist + 1;
+				localRank[card] = rank++;
+				card = successor[card];
+			} while (card != ChainIndex.NONE && sublistOfSplitter[card] == 0 && rank < n);
+			sublistLength[sublist] = rank;
+			nextSublist[sublist] = card == ChainIndex.NONE ? 0 : sublistOfSplitter[card];
+		});
+
+		/*
+		 * Posición inicial de cada sublista, siguiendo la cadena de sublistas desde la
+		 * que comienza en la tarjeta inicial. Las sublistas que no se alcanzan desde
+		 * ella quedan con posición -1 y sus tarjetas no forman parte del viaje
+		 */
+		final int[] sublistOffset = new int[sublists];
+		Arrays.fill(sublistOffset, -1);
+		int offset = 0;
+		for (int sublist = 1; sublist != 0 && sublistOffset[sublist - 1] < 0 && offset < n;
+				sublist = nextSublist[sublist - 1]) {
+			sublistOffset[sublist - 1] = offset;
+			offset += sublistLength[sublist - 1];
+		}
+		final int sortedSize = Math.min(offset, n);
+
+		// Copia paralela de cada tarjeta a su posición final
+		final BoardingCard[] sortedBoardingCards = new BoardingCard[sortedSize];
+		parallelFor(0, n, card -> {
+			int sublist = ownerSublist[card];
+			if (sublist != 0 && sublistOffset[sublist - 1] >= 0) {
+				int position = sublistOffset[sublist - 1] + localRank[card];
+				if (position < sortedSize) {
+					sortedBoardingCards[position] = index.card(card);
+				}
+			}
+		});
+		return new ArrayList<>(Arrays.asList(sortedBoardingCards));
+	}
+
+	/**
+	 * Ejecuta una acción para cada posición de un rango, repartiendo el rango entre
+	 * los hilos del pool
+	 * @param from Primera posición del rango (incluida)
+	 * @param to Última posición del rango (excluida)
+	 * @param action Acción a ejecutar para cada posición
+	 */
+	private void parallelFor(int from, int to, IntConsumer action) {
+		parallelFor(from, to, GRAIN, action);
+	}
+
+	/**
+	 * Ejecuta una acción para cada posición de un rango, repartiendo el rango entre
+	 * los hilos del pool en tramos de al menos el tamaño indicado
+	 * @param from Primera posición del rango (incluida)
+	 * @param to Última posición del rango (excluida)
+	 * @param grain Tamaño mínimo de cada tramo
+	 * @param action Acción a ejecutar para cada posición
+	 */
+	private void parallelFor(int from, int to, int grain, IntConsumer action) {
+		pool.invoke(new RangeAction(from, to, grain, action));
+	}
+
+	/**
+	 * Tarea que ejecuta una acción sobre un rango de posiciones, dividiéndolo en dos
+	 * mitades mientras su tamaño supere el tamaño mínimo del tramo
+	 */
+	private static final class RangeAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final IntConsumer action;
+
+		RangeAction(int from, int to, int grain, IntConsumer action) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				for (int i = from; i < to; i++) {
+					action.accept(i);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeAction(from, middle, grain, action), new RangeAction(middle, to, grain, action));
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Estrategia de ordenación sin estado que puede compartirse entre varios hilos y
+ * reutilizarse para ordenar cualquier número de viajes.
+ * <p>
+ * A diferencia de {@link StrategyNoStartNoEnd}, esta clase no guarda las tablas de
+ * tarjetas como atributos. Cada hilo dispone de su propio {@link ChainIndex}, que se
+ * vacía al terminar cada ordenación conservando sus arrays, de modo que una vez
+ * que el índice de un hilo alcanza el tamaño de los viajes habituales, ordenar un
+ * viaje sólo reserva memoria para la lista resultado.
+ * <p>
+ * Para no retener indefinidamente la memoria de un viaje excepcionalmente largo, el
+ * índice de un hilo se descarta si supera la capacidad máxima indicada.
+ * <p>
+ * {@code
+ * TripSorterStrategy strategy = new StrategySharedChain();
+ * // La misma instancia puede usarse desde todos los hilos
+ * trip.setOrderingTravelStrategy(strategy);
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class StrategySharedChain implements TripSorterStrategy {
+
+	/**
+	 * Capacidad inicial del índice de cada hilo (número de tarjetas)
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Capacidad máxima por defecto del índice que conserva cada hilo entre ordenaciones
+	 */
+	public static final int DEFAULT_MAX_RETAINED_CARDS = 1 << 16;
+
+	/**
+	 * Número máximo de tarjetas para el que se conserva el índice de un hilo
+	 */
+	private final int maxRetainedCards;
+
+	/**
+	 * Índice reutilizable de cada hilo
+	 */
+	private final ThreadLocal<ChainIndex> indexes = ThreadLocal.withInitial(() -> new ChainIndex(INITIAL_CAPACITY));
+
+	/**
+	 * Construye la estrategia con la capacidad máxima retenida por defecto
+	 * ({@link #DEFAULT_MAX_RETAINED_CARDS})
+	 */
+	public StrategySharedChain() {
+		this(DEFAULT_MAX_RETAINED_CARDS);
+	}
+
+	/**
+	 * Construye la estrategia indicando la capacidad máxima del índice que conserva
+	 * cada hilo entre ordenaciones
+	 * @param maxRetainedCards Número máximo de tarjetas para el que se conserva el
+	 * índice de un hilo
+	 */
+	public StrategySharedChain(int maxRetainedCards) {
+		if (maxRetainedCards < 0) {
+			throw new IllegalArgumentException("La capacidad máxima no puede ser negativa: " + maxRetainedCards);
+		}
+		this.maxRetainedCards = maxRetainedCards;
+	}
+
+	/**
+	 * A partir de una lista de tarjetas de embarque desordenadas, ordena dichas
+	 * tarjetas de modo que sepamos en qué orden debemos hacer nuestro viaje.
+	 * <p>
+	 * Este método puede invocarse de forma concurrente desde varios hilos.
+	 * <p>
+	 * Las fases de la ordenación se registran como eventos de JDK Flight Recorder:
+	 * {@link com.eduardo.metrics.BuildTablesEvent},
+	 * {@link com.eduardo.metrics.InitialCardEvent} y
+	 * {@link com.eduardo.metrics.SortCardsEvent}.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @throws IllegalStateException si no se puede averiguar la tarjeta en la que
+	 * comienza el viaje
+	 */
+	@Override
+	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
+		String strategy = InstrumentedTripSorter.strategyName(this);
+		ChainIndex index = indexes.get();
+		try {
+			index.buildTables(boardingCards, strategy);
+			return index.sortedCards(strategy);
+		} finally {
+			release(index);
+		}
+	}
+
+	/**
+	 * Ordena un listado de tarjetas de embarque igual que {@link #sortTrip(List)}, pero
+	 * en lugar de fallar o devolver un viaje incompleto cuando las tarjetas no forman
+	 * un único viaje, devuelve también las anomalías encontradas: tarjetas repetidas,
+	 * bifurcaciones, tramos que faltan, tarjetas desconectadas y ciclos.
+	 * <p>
+	 * Las anomalías se detectan al rellenar las tablas del índice y al recorrer la
+	 * cadena, sin una pasada adicional de verificación sobre el viaje ordenado.
+	 * <p>
+	 * Este método puede invocarse de forma concurrente desde varios hilos.
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque desordenadas
+	 * @return Las tarjetas ordenadas y las anomalías detectadas
+	 */
+	public SortResult sortTripValidated(List<BoardingCard> boardingCards) {
+		ChainIndex index = indexes.get();
+		try {
+			List<TripAnomaly> anomalies = new ArrayList<>();
+			index.build(boardingCards, anomalies);
+			return index.validatedSortedCards(anomalies);
+		} finally {
+			release(index);
+		}
+	}
+
+	/**
+	 * Comprueba que una ordenación ha recorrido todas las tarjetas de embarque. Las
+	 * estrategias de ordenación siguen la cadena desde el inicio del viaje y, si falta
+	 * un tramo o el viaje se bifurca, devuelven sólo las tarjetas alcanzadas. En ese
+	 * caso las tarjetas se vuelven a ordenar con {@link #sortTripValidated(List)} para
+	 * describir las anomalías en la excepción.
+	 * <p>
+	 * Coste computacional del método: O(1) si el viaje está completo, O(n) en otro caso
+	 * @param boardingCards Listado de tarjetas de embarque desordenadas
+	 * @param sortedCards Las tarjetas devueltas por la estrategia de ordenación
+	 * @throws IllegalArgumentException si las tarjetas no forman un único viaje
+	 */
+	public static void checkSingleTrip(List<BoardingCard> boardingCards, List<BoardingCard> sortedCards) {
+		if (sortedCards.size() == boardingCards.size()) {
+			return;
+		}
+		SortResult result = new StrategySharedChain().sortTripValidated(boardingCards);
+		StringJoiner anomalies = new StringJoiner("\n");
+		for (TripAnomaly anomaly : result.getAnomalies()) {
+			anomalies.add(anomaly.toString());
+		}
+		throw new IllegalArgumentException("Las tarjetas no forman un único viaje: se han ordenado "
+				+ sortedCards.size() + " de " + boardingCards.size() + " tarjetas\n" + anomalies);
+	}
+
+	/**
+	 * Vacía el índice del hilo actual tras una ordenación, o lo descarta si ha
+	 * crecido por encima de la capacidad máxima retenida
+	 * @param index El índice del hilo actual
+	 */
+	private void release(ChainIndex index) {
+		if (index.capacity() > maxRetainedCards) {
+			indexes.remove();
+		} else {
+			index.reset();
+		}
+	}
+}
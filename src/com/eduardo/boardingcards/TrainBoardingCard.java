@@ -1,17 +1,22 @@
 package com.eduardo.boardingcards;
 
+import java.io.IOException;
+
 import com.eduardo.transport.Train;
 
 public class TrainBoardingCard extends BoardingCard {
 
 	@Override
 	public String showInfo() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("Take train ").append( ((Train)getTransport()).getTrainNumber() )
+		return writeInfoToString();
+	}
+
+	@Override
+	public void writeInfo(Appendable out) throws IOException {
+		out.append("Take train ").append( ((Train)getTransport()).getTrainNumber() )
 			.append(" from ").append(getDeparture().getCity()).append(" to ")
 			.append(getDestination().getCity()).append(". Sit in seat ").append(getSeat())
 			.append("\n");
-		return sb.toString();
 	}
 
 }
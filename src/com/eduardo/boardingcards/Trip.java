@@ -1,20 +1,82 @@
 package com.eduardo.boardingcards;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.eduardo.location.Place;
+import com.eduardo.metrics.Metrics;
+import com.eduardo.metrics.MetricsSink;
+import com.eduardo.metrics.RenderEvent;
+import com.eduardo.metrics.TripPhaseEvent;
+import com.eduardo.metrics.TripSortEvent;
 
 /**
  * Representa un viaje realizado con una serie de tarjetas de embarque o de viaje
+ * <p>
+ * Una vez ordenado, el viaje permite añadir, quitar o sustituir tramos sueltos (por
+ * ejemplo, al cambiar un vuelo) sin volver a ordenarlo: la primera modificación
+ * construye un índice del encadenamiento de los tramos ({@link TripChain}), y cada
+ * modificación posterior sólo reenlaza los tramos vecinos con un coste constante. La
+ * lista ordenada de tarjetas se reconstruye a partir del índice cuando se vuelve a
+ * consultar.
+ * <p>
+ * El viaje puede recorrerse tramo a tramo ({@link #iterator()}, {@link #stream()},
+ * {@link #firstLeg()} y {@link #nextLeg(Place)}) sin construir la lista ordenada de
+ * tarjetas: si el viaje no está ordenado, el recorrido sigue el índice de tramos a
+ * medida que se piden las tarjetas.
+ * <p>
+ * Si la instrumentación de {@link Metrics} está activada, cada ordenación y cada
+ * generación del texto del viaje se registran en el destino de medidas instalado.
+ * Además, se registran como eventos de JDK Flight Recorder ({@link TripSortEvent} y
+ * {@link RenderEvent}) cuando JFR está grabando.
  * @author eduardo
  *
  */
-public class Trip {
+public class Trip implements Iterable<BoardingCard> {
+	
+	/**
+	 * Texto que se muestra al final de la información del viaje
+	 */
+	private static final String ARRIVAL_MESSAGE = "You have arrived at your final destination.";
+	
+	/**
+	 * Estrategia de ordenación que se usa si no se indica ninguna, compartida por
+	 * todos los viajes
+	 */
+	private static final TripSorterStrategy DEFAULT_ORDERING_STRATEGY = new StrategyAdaptive();
 	
 	/**
-	 * Tarjetas de embarque o de viaje para usar durante el viaje y llegar de un punto a otro
+	 * Tarjetas de embarque o de viaje para usar durante el viaje y llegar de un punto a otro,
+	 * o null si el viaje se ha modificado y la lista debe reconstruirse a partir de
+	 * {@link #chain}
 	 */
 	private List<BoardingCard> boardingCards;
 	
-	private TripSorterStrategy orderingStrategy;
+	/**
+	 * Indica si {@link #boardingCards} está en el orden del viaje, porque se ha
+	 * ordenado o se ha reconstruido a partir de {@link #chain}
+	 */
+	private boolean sorted;
+	
+	/**
+	 * Índice del encadenamiento de los tramos del viaje, o null si todavía no se ha
+	 * modificado ningún tramo desde la última ordenación
+	 */
+	private TripChain chain;
+	
+	private TripSorterStrategy orderingStrategy = DEFAULT_ORDERING_STRATEGY;
 		
 	/**
 	 * Construye un objeto de tipo viaje
@@ -25,27 +87,287 @@ public class Trip {
 		this.boardingCards = boardingCards;
 	}
 	
+	/**
+	 * Indica la estrategia con la que se ordena el viaje. Si no se indica ninguna se
+	 * usa {@link StrategyAdaptive}, que elige la estrategia según el número de tarjetas
+	 * @param orderingStrategy La estrategia de ordenación
+	 */
 	public void setOrderingTravelStrategy(TripSorterStrategy orderingStrategy) {
 		this.orderingStrategy = orderingStrategy;
 	}
 	
+	/**
+	 * Permite obtener las tarjetas de embarque o de viaje del viaje, ordenadas si ya se
+	 * ha llamado a {@link #sortTrip(List)}
+	 * @return Una vista no modificable de las tarjetas de embarque del viaje
+	 */
+	public List<BoardingCard> getBoardingCards() {
+		return Collections.unmodifiableList(legs());
+	}
+	
+	/**
+	 * Ordena las tarjetas de embarque indicadas con la estrategia de ordenación del
+	 * viaje, y las guarda como las tarjetas del viaje
+	 * @param boardingCards Las tarjetas de embarque desordenadas
+	 * @return Las tarjetas de embarque indicadas como parámetro. Las tarjetas ordenadas
+	 * se obtienen con {@link #getBoardingCards()}
+	 */
 	public List<BoardingCard> sortTrip(List<BoardingCard> boardingCards) {
-		this.boardingCards = orderingStrategy.sortTrip(boardingCards);
+		if (orderingStrategy instanceof InstrumentedTripSorter) {
+			this.boardingCards = orderingStrategy.sortTrip(boardingCards);
+		} else {
+			this.boardingCards = InstrumentedTripSorter.sort(orderingStrategy, strategyName(), boardingCards);
+		}
+		this.sorted = true;
+		this.chain = null;
 		return boardingCards;
 	}
 	
 	/**
-	 * Permite obtener una cadena de texto que indica la informaci�n contenida en cada una
+	 * Añade un tramo al viaje, enlazándolo con el tramo que llega a su lugar de salida
+	 * y con el que sale de su lugar de llegada. Si el tramo crea una bifurcación (otro
+	 * tramo ya sale del mismo lugar y continúa el viaje), queda como un fragmento
+	 * aparte y {@link #isContinuous()} devuelve false
+	 * <p>
+	 * Coste computacional del método: O(1), salvo la primera modificación tras una
+	 * ordenación, que construye el índice de tramos en O(n)
+	 * @param bcard La tarjeta de embarque del nuevo tramo
+	 */
+	public void addLeg(BoardingCard bcard) {
+		chain().insert(bcard);
+		boardingCards = null;
+	}
+	
+	/**
+	 * Quita un tramo del viaje. Si no es el primero ni el último, el viaje queda
+	 * dividido hasta que se añade un tramo que lo vuelva a unir
+	 * <p>
+	 * Coste computacional del método: O(1), salvo la primera modificación tras una
+	 * ordenación, que construye el índice de tramos en O(n)
+	 * @param bcard La tarjeta de embarque del tramo, o una con el mismo identificador y
+	 * lugar de salida
+	 * @return true si el tramo formaba parte del viaje
+	 */
+	public boolean removeLeg(BoardingCard bcard) {
+		boolean removed = chain().remove(bcard);
+		if (removed) {
+			boardingCards = null;
+		}
+		return removed;
+	}
+	
+	/**
+	 * Sustituye un tramo del viaje por otro, por ejemplo al cambiar un vuelo
+	 * <p>
+	 * Coste computacional del método: O(1), salvo la primera modificación tras una
+	 * ordenación, que construye el índice de tramos en O(n)
+	 * @param oldCard La tarjeta de embarque del tramo a sustituir, o una con el mismo
+	 * identificador y lugar de salida
+	 * @param newCard La tarjeta de embarque del nuevo tramo
+	 * @return true si el tramo a sustituir formaba parte del viaje
+	 */
+	public boolean replaceLeg(BoardingCard oldCard, BoardingCard newCard) {
+		boolean replaced = chain().replace(oldCard, newCard);
+		if (replaced) {
+			boardingCards = null;
+		}
+		return replaced;
+	}
+	
+	/**
+	 * Permite saber si los tramos del viaje forman un único recorrido sin huecos, por
+	 * ejemplo tras quitar un tramo intermedio. Los viajes que pasan varias veces por el
+	 * mismo lugar, como los de ida y vuelta, son continuos si se han ordenado
+	 * @return true si el viaje no está dividido en varios fragmentos
+	 */
+	public boolean isContinuous() {
+		return chain().fragmentCount() <= 1;
+	}
+	
+	/**
+	 * Permite obtener el primer tramo del viaje
+	 * <p>
+	 * Coste computacional del método: O(1) si el viaje está ordenado, y O(n) en otro
+	 * caso
+	 * @return La tarjeta de embarque del primer tramo, o null si el viaje no tiene
+	 * tramos
+	 */
+	public BoardingCard firstLeg() {
+		if (isInTravelOrder()) {
+			return boardingCards.isEmpty() ? null : boardingCards.get(0);
+		}
+		return chain().firstCard();
+	}
+	
+	/**
+	 * Permite obtener el tramo que sale de un lugar, es decir, el siguiente tramo del
+	 * viaje tras llegar a dicho lugar
+	 * <p>
+	 * Coste computacional del método: O(1), salvo la primera consulta tras una
+	 * ordenación, que construye el índice de tramos en O(n)
+	 * @param place El lugar
+	 * @return La tarjeta de embarque del tramo que sale del lugar, o null si es el
+	 * final del viaje o el lugar no forma parte del viaje. Si el viaje sale varias veces
+	 * del lugar, el primero de dichos tramos en el orden del viaje
+	 */
+	public BoardingCard nextLeg(Place place) {
+		return chain().cardDepartingFrom(place.getIdentifier());
+	}
+	
+	/**
+	 * Crea un iterador que recorre las tarjetas de embarque en el orden del viaje. Si el
+	 * viaje no está ordenado, el iterador sigue el índice de tramos a medida que se
+	 * piden las tarjetas, sin construir la lista ordenada. El iterador no permite
+	 * quitar tarjetas.
+	 * <p>
+	 * Coste computacional del método: O(1) si el viaje está ordenado o ya tiene el
+	 * índice de tramos, y O(n) en otro caso
+	 */
+	@Override
+	public Iterator<BoardingCard> iterator() {
+		if (isInTravelOrder()) {
+			return Collections.unmodifiableList(boardingCards).iterator();
+		}
+		return chain().iterator();
+	}
+	
+	/**
+	 * Crea un {@link Spliterator} que recorre las tarjetas de embarque en el orden del
+	 * viaje. Si el viaje está ordenado se divide sobre la lista de tarjetas; si no, se
+	 * divide en lotes de tarjetas tomadas del iterador del índice de tramos, de modo
+	 * que también permite procesar el viaje en paralelo.
+	 */
+	@Override
+	public Spliterator<BoardingCard> spliterator() {
+		if (isInTravelOrder()) {
+			return Collections.unmodifiableList(boardingCards).spliterator();
+		}
+		TripChain tripChain = chain();
+		return Spliterators.spliterator(tripChain.iterator(), tripChain.size(),
+				Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+	
+	/**
+	 * Crea un {@link Stream} secuencial de las tarjetas de embarque en el orden del
+	 * viaje, que puede convertirse en paralelo con {@link Stream#parallel()}
+	 * @return El stream de las tarjetas de embarque
+	 * @see #spliterator()
+	 */
+	public Stream<BoardingCard> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	/**
+	 * Permite obtener una cadena de texto que indica la información contenida en cada una
 	 * de las tarjetas de embarque o de viaje a usar durante el viaje
-	 * @return Una cadena de texto que indica la informaci�n contenida en cada una
+	 * @return Una cadena de texto que indica la información contenida en cada una
 	 * de las tarjetas de embarque o de viaje a usar durante el viaje
 	 */
 	public String showInfoTravel() {
-		StringBuffer sb = new StringBuffer();
-		for (BoardingCard bcard : boardingCards) {
-			sb.append(bcard.showInfo());
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeInfoTravel(sb);
+		} catch (IOException e) {
+			// StringBuilder nunca lanza IOException
+			throw new UncheckedIOException(e);
 		}
-		sb.append("You have arrived at your final destination.");
 		return sb.toString();
 	}
+	
+	/**
+	 * Escribe la información contenida en cada una de las tarjetas de embarque o de
+	 * viaje directamente en el destino indicado, tarjeta a tarjeta, sin construir
+	 * ninguna cadena de texto intermedia. El texto escrito es el mismo que devuelve
+	 * {@link #showInfoTravel()}.
+	 * @param out Destino en el que se escribe la información del viaje, por ejemplo un
+	 * {@link Writer} o un {@link StringBuilder}
+	 * @throws IOException si se produce un error al escribir en el destino
+	 */
+	public void writeInfoTravel(Appendable out) throws IOException {
+		MetricsSink sink = Metrics.getSink();
+		RenderEvent event = new RenderEvent();
+		if (sink == null && !event.isEnabled()) {
+			writeLegs(out);
+			return;
+		}
+		long start = System.nanoTime();
+		event.begin();
+		boolean failed = true;
+		try {
+			writeLegs(out);
+			failed = false;
+		} finally {
+			int tripLength = legs().size();
+			if (sink != null) {
+				sink.recordRender(tripLength, System.nanoTime() - start, failed);
+			}
+			event.finish(tripLength, strategyName(), failed ? TripPhaseEvent.FAILURE : TripPhaseEvent.SUCCESS);
+		}
+	}
+
+	/**
+	 * Obtiene el nombre con el que se registran las medidas de la estrategia de
+	 * ordenación del viaje
+	 * @return El nombre de la estrategia, o null si el viaje no tiene estrategia
+	 */
+	private String strategyName() {
+		if (orderingStrategy == null) {
+			return null;
+		}
+		if (orderingStrategy instanceof InstrumentedTripSorter) {
+			return ((InstrumentedTripSorter) orderingStrategy).getStrategyName();
+		}
+		return InstrumentedTripSorter.strategyName(orderingStrategy);
+	}
+	
+	private void writeLegs(Appendable out) throws IOException {
+		for (BoardingCard bcard : legs()) {
+			bcard.writeInfo(out);
+		}
+		out.append(ARRIVAL_MESSAGE);
+	}
+	
+	/**
+	 * Escribe la información del viaje codificada en UTF-8 en el flujo de salida
+	 * indicado. El flujo de salida no se cierra, pero sí se vacía al terminar.
+	 * @param out Flujo de salida en el que se escribe la información del viaje
+	 * @throws IOException si se produce un error al escribir en el flujo de salida
+	 * @see #writeInfoTravel(Appendable)
+	 */
+	public void writeInfoTravel(OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writeInfoTravel(writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Permite obtener las tarjetas del viaje, reconstruyendo la lista ordenada a partir
+	 * del índice de tramos si el viaje se ha modificado
+	 */
+	private List<BoardingCard> legs() {
+		if (boardingCards == null) {
+			boardingCards = chain.sortedCards();
+			sorted = true;
+		}
+		return boardingCards;
+	}
+	
+	/**
+	 * Indica si la lista de tarjetas está disponible y en el orden del viaje
+	 */
+	private boolean isInTravelOrder() {
+		return boardingCards != null && sorted;
+	}
+	
+	/**
+	 * Permite obtener el índice de tramos del viaje, construyéndolo a partir de las
+	 * tarjetas actuales si todavía no existe. Si el viaje está ordenado, el índice
+	 * conserva su orden aunque pase varias veces por el mismo lugar
+	 */
+	private TripChain chain() {
+		if (chain == null) {
+			chain = new TripChain(legs(), sorted);
+		}
+		return chain;
+	}
 }
@@ -0,0 +1,116 @@
+package com.eduardo.boardingcards;
+
+import com.eduardo.location.Place;
+
+/**
+ * Representa una anomalía detectada al ordenar un listado de tarjetas de embarque que
+ * no forma un único viaje válido: tarjetas repetidas, bifurcaciones, tramos que faltan,
+ * tarjetas desconectadas del viaje o ciclos.
+ * <p>
+ * Las anomalías se obtienen junto con las tarjetas ordenadas en un {@link SortResult}.
+ *
+ * @author eduardo
+ *
+ */
+public final class TripAnomaly {
+
+	/**
+	 * Tipos de anomalía que pueden detectarse al ordenar un viaje
+	 */
+	public enum Type {
+		/**
+		 * Dos tarjetas salen del mismo lugar o llegan al mismo lugar con otro origen o
+		 * destino, de modo que el viaje se bifurca
+		 */
+		FORK,
+		/**
+		 * Dos tarjetas cubren el mismo tramo, con el mismo lugar de salida y de llegada
+		 */
+		DUPLICATE,
+		/**
+		 * Falta un tramo: a un lugar de salida no llega ninguna tarjeta y no es el
+		 * inicio del viaje
+		 */
+		GAP,
+		/**
+		 * Hay tarjetas que no se alcanzan recorriendo el viaje desde su inicio
+		 */
+		DISCONNECTED,
+		/**
+		 * El recorrido de las tarjetas vuelve a un lugar ya visitado
+		 */
+		CYCLE
+	}
+
+	/**
+	 * Tipo de anomalía
+	 */
+	private final Type type;
+
+	/**
+	 * Tarjeta de embarque en la que se detectó la anomalía, o null si no afecta a una
+	 * tarjeta concreta
+	 */
+	private final BoardingCard boardingCard;
+
+	/**
+	 * Lugar en el que se detectó la anomalía, o null si no afecta a un lugar concreto
+	 */
+	private final Place place;
+
+	/**
+	 * Descripción de la anomalía
+	 */
+	private final String message;
+
+	/**
+	 * Construye una anomalía
+	 * @param type Tipo de anomalía
+	 * @param boardingCard Tarjeta de embarque afectada, o null
+	 * @param place Lugar afectado, o null
+	 * @param message Descripción de la anomalía
+	 */
+	TripAnomaly(Type type, BoardingCard boardingCard, Place place, String message) {
+		this.type = type;
+		this.boardingCard = boardingCard;
+		this.place = place;
+		this.message = message;
+	}
+
+	/**
+	 * Permite obtener el tipo de anomalía
+	 * @return El tipo de anomalía
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Permite obtener la tarjeta de embarque en la que se detectó la anomalía
+	 * @return La tarjeta afectada, o null si la anomalía no afecta a una tarjeta concreta
+	 */
+	public BoardingCard getBoardingCard() {
+		return boardingCard;
+	}
+
+	/**
+	 * Permite obtener el lugar en el que se detectó la anomalía
+	 * @return El lugar afectado, o null si la anomalía no afecta a un lugar concreto
+	 */
+	public Place getPlace() {
+		return place;
+	}
+
+	/**
+	 * Permite obtener la descripción de la anomalía
+	 * @return La descripción de la anomalía
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return type + ": " + message;
+	}
+}
@@ -0,0 +1,233 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Ensambla un viaje de forma incremental a medida que van llegando sus tarjetas de
+ * embarque, en lugar de esperar a tenerlas todas para ordenarlas.
+ * <p>
+ * Las tarjetas recibidas se agrupan en fragmentos de viaje ya encadenados. Cada
+ * fragmento se registra por sus dos extremos abiertos: el lugar de salida de su
+ * primera tarjeta y el lugar de llegada de su última tarjeta. Al recibir una tarjeta
+ * sólo hay que consultar si algún fragmento termina en su lugar de salida o comienza
+ * en su lugar de llegada, y unir los fragmentos encontrados, lo que tiene un coste
+ * O(1) por tarjeta. En cuanto un fragmento contiene todas las tarjetas esperadas, el
+ * viaje ordenado se entrega sin necesidad de volver a ordenar nada.
+ * <p>
+ * Sólo se comprueban los extremos abiertos de los fragmentos, por lo que una tarjeta
+ * que sale de un lugar intermedio de un fragmento no se detecta como bifurcación.
+ * <p>
+ * Esta clase no es segura para su uso concurrente desde varios hilos.
+ * <p>
+ * {@code
+ * TripAssembler assembler = new TripAssembler(4, trip -> System.out.println(trip.showInfoTravel()));
+ * assembler.add(card); // por cada tarjeta que llega
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class TripAssembler {
+
+	/**
+	 * Número de tarjetas de embarque que forman el viaje completo
+	 */
+	private final int expectedLegs;
+
+	/**
+	 * Acción a ejecutar cuando el viaje se completa
+	 */
+	private final Consumer<Trip> completionListener;
+
+	/**
+	 * Fragmentos de viaje indexados por el identificador del lugar de salida de su
+	 * primera tarjeta
+	 */
+	private final Map<String, Fragment> fragmentsByDeparture = new HashMap<>();
+
+	/**
+	 * Fragmentos de viaje indexados por el identificador del lugar de llegada de su
+	 * última tarjeta
+	 */
+	private final Map<String, Fragment> fragmentsByDestination = new HashMap<>();
+
+	/**
+	 * Número de tarjetas recibidas
+	 */
+	private int receivedLegs;
+
+	/**
+	 * Viaje completo, o null si todavía faltan tarjetas
+	 */
+	private Trip completedTrip;
+
+	/**
+	 * Construye un ensamblador para un viaje del número de tarjetas indicado
+	 * @param expectedLegs Número de tarjetas de embarque que forman el viaje completo
+	 */
+	public TripAssembler(int expectedLegs) {
+		this(expectedLegs, trip -> { });
+	}
+
+	/**
+	 * Construye un ensamblador para un viaje del número de tarjetas indicado
+	 * @param expectedLegs Número de tarjetas de embarque que forman el viaje completo
+	 * @param completionListener Acción a ejecutar con el viaje ordenado en cuanto se
+	 * recibe su última tarjeta
+	 */
+	public TripAssembler(int expectedLegs, Consumer<Trip> completionListener) {
+		if (expectedLegs <= 0) {
+			throw new IllegalArgumentException("El número de tarjetas del viaje debe ser positivo: " + expectedLegs);
+		}
+		this.expectedLegs = expectedLegs;
+		this.completionListener = completionListener;
+	}
+
+	/**
+	 * Añade una tarjeta de embarque al viaje, uniéndola a los fragmentos que terminan
+	 * en su lugar de salida o comienzan en su lugar de llegada.
+	 * <p>
+	 * Coste computacional del método: O(1), salvo al completarse el viaje, en cuyo
+	 * caso se construye la lista ordenada de tarjetas en O(n)
+	 * @param bcard La tarjeta de embarque recibida
+	 * @return El viaje ordenado si esta tarjeta lo completa, o null en caso contrario
+	 * @throws IllegalStateException si el viaje ya estaba completo
+	 * @throws IllegalArgumentException si otra tarjeta ya sale del mismo lugar o llega
+	 * al mismo lugar que la tarjeta recibida
+	 */
+	public Trip add(BoardingCard bcard) {
+		if (completedTrip != null) {
+			throw new IllegalStateException("El viaje ya está completo");
+		}
+		String departure = bcard.getDeparture().getIdentifier();
+		String destination = bcard.getDestination().getIdentifier();
+		if (fragmentsByDeparture.containsKey(departure)) {
+			throw new IllegalArgumentException("Ya existe una tarjeta que sale de " + departure);
+		}
+		if (fragmentsByDestination.containsKey(destination)) {
+			throw new IllegalArgumentException("Ya existe una tarjeta que llega a " + destination);
+		}
+
+		// Fragmentos que quedan unidos por la nueva tarjeta, antes y después de ella
+		Fragment before = fragmentsByDestination.remove(departure);
+		Fragment after = fragmentsByDeparture.remove(destination);
+
+		Node node = new Node(bcard);
+		Fragment fragment;
+		if (before != null) {
+			before.append(node);
+			fragment = before;
+		} else {
+			fragment = new Fragment(node);
+		}
+		/*
+		 * Si el fragmento posterior es el mismo que el anterior, la tarjeta cierra un
+		 * viaje de ida y vuelta y no hay nada que concatenar
+		 */
+		if (after != null && after != fragment) {
+			fragment.concat(after);
+		}
+		fragmentsByDeparture.put(fragment.head.bcard.getDeparture().getIdentifier(), fragment);
+		fragmentsByDestination.put(fragment.tail.bcard.getDestination().getIdentifier(), fragment);
+		receivedLegs++;
+
+		if (fragment.size == expectedLegs) {
+			complete(fragment);
+		}
+		return completedTrip;
+	}
+
+	/**
+	 * Permite saber si ya se han recibido y encadenado todas las tarjetas del viaje
+	 * @return true si el viaje está completo, false en caso contrario
+	 */
+	public boolean isComplete() {
+		return completedTrip != null;
+	}
+
+	/**
+	 * Permite obtener el viaje ordenado
+	 * @return El viaje ordenado, o null si todavía faltan tarjetas
+	 */
+	public Trip getCompletedTrip() {
+		return completedTrip;
+	}
+
+	/**
+	 * Permite obtener el número de tarjetas recibidas
+	 * @return El número de tarjetas recibidas
+	 */
+	public int getReceivedLegs() {
+		return receivedLegs;
+	}
+
+	/**
+	 * Permite obtener el número de fragmentos de viaje que todavía no se han podido unir
+	 * @return El número de fragmentos de viaje
+	 */
+	public int getFragmentCount() {
+		return fragmentsByDestination.size();
+	}
+
+	/**
+	 * Construye el viaje ordenado a partir del fragmento que contiene todas las
+	 * tarjetas y lo entrega a la acción de finalización
+	 * @param fragment El fragmento con todas las tarjetas del viaje
+	 */
+	private void complete(Fragment fragment) {
+		List<BoardingCard> sortedBoardingCards = new ArrayList<>(fragment.size);
+		for (Node node = fragment.head; node != null; node = node.next) {
+			sortedBoardingCards.add(node.bcard);
+		}
+		fragmentsByDeparture.clear();
+		fragmentsByDestination.clear();
+		completedTrip = new Trip(sortedBoardingCards);
+		completionListener.accept(completedTrip);
+	}
+
+	/**
+	 * Nodo de la lista enlazada de tarjetas de un fragmento de viaje
+	 */
+	private static final class Node {
+
+		private final BoardingCard bcard;
+		private Node next;
+
+		Node(BoardingCard bcard) {
+			this.bcard = bcard;
+		}
+	}
+
+	/**
+	 * Fragmento de viaje formado por tarjetas ya encadenadas. Guarda su primer y
+	 * último nodo para poder unirlo con otros fragmentos en O(1)
+	 */
+	private static final class Fragment {
+
+		private Node head;
+		private Node tail;
+		private int size;
+
+		Fragment(Node node) {
+			head = node;
+			tail = node;
+			size = 1;
+		}
+
+		void append(Node node) {
+			tail.next = node;
+			tail = node;
+			size++;
+		}
+
+		void concat(Fragment other) {
+			tail.next = other.head;
+			tail = other.tail;
+			size += other.size;
+		}
+	}
+}
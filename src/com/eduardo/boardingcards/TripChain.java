@@ -0,0 +1,524 @@
+package com.eduardo.boardingcards;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Índice del encadenamiento de las tarjetas de embarque de un viaje que permite
+ * añadir, quitar y sustituir tramos con un coste constante, sin volver a ordenar
+ * el viaje.
+ * <p>
+ * Cada tarjeta se guarda en un nodo de una lista doblemente enlazada, y los nodos se
+ * indexan por el identificador de su lugar de salida y por el de su lugar de llegada.
+ * Dos nodos sólo se enlazan si el lugar de llegada de uno es el de salida del otro,
+ * de modo que al añadir o quitar un tramo sólo hay que consultar las tablas y
+ * reenlazar los tramos vecinos. Si se quita un tramo intermedio el viaje queda
+ * dividido en fragmentos hasta que se añade el tramo que los une.
+ * <p>
+ * Varios tramos pueden salir del mismo lugar o llegar al mismo lugar, como en los
+ * viajes de ida y vuelta que ordena {@link StrategyEulerianPath}. Si el índice se
+ * construye a partir de un viaje ya ordenado, cada tramo se enlaza con el siguiente
+ * del listado, de modo que se conserva el orden del viaje. En otro caso, y al añadir
+ * tramos, cada tramo se enlaza con uno cualquiera de los tramos que llegan a su lugar
+ * de salida y que todavía no tienen siguiente, y con uno cualquiera de los que salen
+ * de su lugar de llegada y todavía no tienen anterior, por lo que en estos viajes el
+ * orden puede no ser el de un recorrido completo.
+ * <p>
+ * El índice también permite recorrer el viaje bajo demanda con {@link #iterator()},
+ * siguiendo los enlaces entre nodos sin construir la lista ordenada, y consultar el
+ * tramo que sale de un lugar con un coste constante.
+ * <p>
+ * Esta clase no es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+final class TripChain {
+
+	/**
+	 * Todos los nodos, en el orden en el que se añadieron
+	 */
+	private final Set<Node> nodes;
+
+	/**
+	 * Primer nodo que sale de cada lugar, indexado por el identificador del lugar. Los
+	 * demás nodos que salen del mismo lugar se encadenan a partir de él
+	 */
+	private final Map<String, Node> nodesByDeparture;
+
+	/**
+	 * Primer nodo que llega a cada lugar, indexado por el identificador del lugar. Los
+	 * demás nodos que llegan al mismo lugar se encadenan a partir de él
+	 */
+	private final Map<String, Node> nodesByDestination;
+
+	/**
+	 * Número de pares de tramos consecutivos enlazados
+	 */
+	private int links;
+
+	/**
+	 * Marca del último recorrido de {@link #sortedCards()}, para reconocer los nodos
+	 * ya visitados
+	 */
+	private int visitMark;
+
+	/**
+	 * Número de modificaciones del índice, para que los iteradores detecten las
+	 * modificaciones concurrentes
+	 */
+	private int modCount;
+
+	/**
+	 * Construye el índice de un listado de tarjetas de embarque
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @param boardingCards Listado de tarjetas de embarque
+	 * @param inTravelOrder true si el listado está en el orden del viaje, en cuyo caso
+	 * cada tarjeta se enlaza con la siguiente del listado cuando ésta sale del lugar al
+	 * que llega aquélla; false si el listado no está ordenado
+	 */
+	TripChain(List<BoardingCard> boardingCards, boolean inTravelOrder) {
+		int capacity = Math.max(16, (int) (boardingCards.size() / 0.75f) + 1);
+		nodes = new LinkedHashSet<>(capacity);
+		nodesByDeparture = new HashMap<>(capacity);
+		nodesByDestination = new HashMap<>(capacity);
+		if (!inTravelOrder) {
+			for (BoardingCard bcard : boardingCards) {
+				insert(bcard);
+			}
+			return;
+		}
+		Node previous = null;
+		for (BoardingCard bcard : boardingCards) {
+			Node node = new Node(bcard);
+			if (previous != null && sameIdentifier(destinationOf(previous), departureOf(node))) {
+				previous.next = node;
+				node.previous = previous;
+				links++;
+			}
+			index(node);
+			previous = node;
+		}
+	}
+
+	/**
+	 * Añade un tramo, enlazándolo con un tramo que llega a su lugar de salida y con uno
+	 * que sale de su lugar de llegada, si existen y todavía no están enlazados por ese
+	 * lado
+	 * <p>
+	 * Si varios tramos libres salen de su lugar de llegada, se evita el que cerraría un
+	 * ciclo con el fragmento al que se une el tramo, de modo que al volver a añadir un
+	 * tramo quitado de un viaje de ida y vuelta se recupera el viaje original.
+	 * <p>
+	 * Coste computacional del método: O(1). Si varios tramos salen de su lugar de
+	 * llegada o llegan a su lugar de salida, es proporcional a su número y a la
+	 * longitud del fragmento al que se une el tramo
+	 * @param bcard La tarjeta de embarque del tramo
+	 */
+	void insert(BoardingCard bcard) {
+		Node node = new Node(bcard);
+		for (Node candidate = nodesByDestination.get(departureOf(node)); candidate != null;
+				candidate = candidate.nextByDestination) {
+			if (candidate.next == null) {
+				node.previous = candidate;
+				candidate.next = node;
+				links++;
+				break;
+			}
+		}
+		Node successor = null;
+		for (Node candidate = nodesByDeparture.get(destinationOf(node)); candidate != null;
+				candidate = candidate.nextByDeparture) {
+			if (candidate.previous == null) {
+				if (successor == null) {
+					successor = candidate;
+				} else if (isHeadOf(successor, node.previous)) {
+					// Hay otro tramo libre: se prefiere no cerrar un ciclo con el propio fragmento
+					successor = candidate;
+					break;
+				} else {
+					break;
+				}
+			}
+		}
+		if (successor != null) {
+			node.next = successor;
+			successor.previous = node;
+			links++;
+		}
+		index(node);
+	}
+
+	/**
+	 * Indica si un nodo es el primero del fragmento que termina en otro nodo
+	 * <p>
+	 * Coste computacional del método: O(n), siendo n la longitud del fragmento
+	 * @param head El nodo
+	 * @param last Último nodo del fragmento, o null
+	 */
+	private static boolean isHeadOf(Node head, Node last) {
+		for (Node node = last; node != null; node = node.previous) {
+			if (node == head) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Quita un tramo, desenlazándolo de sus tramos vecinos
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param bcard La tarjeta de embarque del tramo
+	 * @return true si el tramo formaba parte del viaje
+	 */
+	boolean remove(BoardingCard bcard) {
+		Node node = find(bcard);
+		if (node == null) {
+			return false;
+		}
+		unlink(node);
+		return true;
+	}
+
+	/**
+	 * Sustituye un tramo por otro. Si ambos tienen los mismos lugares de salida y de
+	 * llegada, como al cambiar un vuelo por otro, sólo se cambia la tarjeta del nodo y
+	 * se conservan sus enlaces
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param oldCard La tarjeta de embarque del tramo a sustituir
+	 * @param newCard La tarjeta de embarque del nuevo tramo
+	 * @return true si el tramo a sustituir formaba parte del viaje
+	 */
+	boolean replace(BoardingCard oldCard, BoardingCard newCard) {
+		Node node = find(oldCard);
+		if (node == null) {
+			return false;
+		}
+		if (sameIdentifier(departureOf(node), newCard.getDeparture().getIdentifier())
+				&& sameIdentifier(destinationOf(node), newCard.getDestination().getIdentifier())) {
+			node.card = newCard;
+			modCount++;
+			return true;
+		}
+		unlink(node);
+		insert(newCard);
+		return true;
+	}
+
+	/**
+	 * Permite obtener el número de tramos del viaje
+	 * @return El número de tramos
+	 */
+	int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Permite obtener el número de fragmentos en los que está dividido el viaje
+	 * @return El número de fragmentos: 1 si el viaje es continuo, o 0 si no tiene tramos
+	 * o es un viaje de ida y vuelta cerrado
+	 */
+	int fragmentCount() {
+		return size() - links;
+	}
+
+	/**
+	 * Obtiene las tarjetas de embarque en el orden del viaje. Si el viaje está dividido
+	 * en fragmentos, éstos se devuelven uno detrás de otro, en el orden en el que se
+	 * añadió su primer tramo. Los viajes de ida y vuelta, que no tienen un primer tramo,
+	 * se recorren desde el primer tramo que se añadió
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @return Lista con las tarjetas de embarque ordenadas
+	 */
+	List<BoardingCard> sortedCards() {
+		List<BoardingCard> sortedCards = new ArrayList<>(size());
+		int mark = ++visitMark;
+		for (Node head : nodes) {
+			if (head.previous == null) {
+				collect(head, mark, sortedCards);
+			}
+		}
+		if (sortedCards.size() < size()) {
+			// Los tramos que quedan forman ciclos cerrados
+			for (Node node : nodes) {
+				if (node.mark != mark) {
+					collect(node, mark, sortedCards);
+				}
+			}
+		}
+		return sortedCards;
+	}
+
+	/**
+	 * Permite obtener el primer tramo del viaje, en el mismo orden que
+	 * {@link #sortedCards()}
+	 * <p>
+	 * Coste computacional del método: O(n)
+	 * @return La tarjeta de embarque del primer tramo, o null si el viaje no tiene
+	 * tramos
+	 */
+	BoardingCard firstCard() {
+		Node first = null;
+		for (Node node : nodes) {
+			if (node.previous == null) {
+				return node.card;
+			}
+			if (first == null) {
+				first = node;
+			}
+		}
+		// El viaje sólo tiene ciclos cerrados, que se recorren desde el primer tramo
+		return first == null ? null : first.card;
+	}
+
+	/**
+	 * Permite obtener el tramo que sale de un lugar. Si varios tramos salen del lugar,
+	 * devuelve el primero que se añadió al índice, que en un índice construido a partir
+	 * de un viaje ordenado es el primero en el orden del viaje
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param placeIdentifier El identificador del lugar de salida
+	 * @return La tarjeta de embarque del tramo, o null si ningún tramo sale de dicho
+	 * lugar
+	 */
+	BoardingCard cardDepartingFrom(String placeIdentifier) {
+		Node node = nodesByDeparture.get(placeIdentifier);
+		return node == null ? null : node.card;
+	}
+
+	/**
+	 * Crea un iterador que recorre las tarjetas de embarque en el mismo orden que
+	 * {@link #sortedCards()}, siguiendo los enlaces entre nodos a medida que se piden
+	 * las tarjetas. Sólo si el viaje tiene ciclos cerrados, éstos se obtienen con
+	 * {@link #sortedCards()} tras recorrer todos los fragmentos.
+	 * <p>
+	 * El iterador lanza {@link ConcurrentModificationException} si el índice se
+	 * modifica durante el recorrido.
+	 * <p>
+	 * Coste computacional del método: O(1), y O(1) amortizado por cada tarjeta
+	 * recorrida
+	 * @return El iterador de las tarjetas de embarque
+	 */
+	Iterator<BoardingCard> iterator() {
+		return new ChainIterator();
+	}
+
+	/**
+	 * Recorre los tramos enlazados desde un nodo hasta el final del fragmento o hasta
+	 * volver a un nodo ya visitado
+	 */
+	private static void collect(Node first, int mark, List<BoardingCard> sortedCards) {
+		for (Node node = first; node != null && node.mark != mark; node = node.next) {
+			node.mark = mark;
+			sortedCards.add(node.card);
+		}
+	}
+
+	/**
+	 * Busca el nodo de un tramo entre los que salen de su lugar de salida: el de la
+	 * misma tarjeta de embarque o, si no está, el de una con el mismo identificador
+	 */
+	private Node find(BoardingCard bcard) {
+		Node sameIdentifier = null;
+		for (Node node = nodesByDeparture.get(bcard.getDeparture().getIdentifier()); node != null;
+				node = node.nextByDeparture) {
+			if (node.card == bcard) {
+				return node;
+			}
+			if (sameIdentifier == null && sameIdentifier(node.card.getIdentifier(), bcard.getIdentifier())) {
+				sameIdentifier = node;
+			}
+		}
+		return sameIdentifier;
+	}
+
+	/**
+	 * Añade un nodo a las tablas de lugares, detrás de los nodos que ya salen de su
+	 * lugar de salida o llegan a su lugar de llegada
+	 */
+	private void index(Node node) {
+		Node last = nodesByDeparture.putIfAbsent(departureOf(node), node);
+		if (last != null) {
+			while (last.nextByDeparture != null) {
+				last = last.nextByDeparture;
+			}
+			last.nextByDeparture = node;
+		}
+		last = nodesByDestination.putIfAbsent(destinationOf(node), node);
+		if (last != null) {
+			while (last.nextByDestination != null) {
+				last = last.nextByDestination;
+			}
+			last.nextByDestination = node;
+		}
+		nodes.add(node);
+		modCount++;
+	}
+
+	/**
+	 * Quita un nodo de las tablas de lugares
+	 */
+	private void unindex(Node node) {
+		String departure = departureOf(node);
+		Node head = nodesByDeparture.get(departure);
+		if (head == node) {
+			if (node.nextByDeparture == null) {
+				nodesByDeparture.remove(departure);
+			} else {
+				nodesByDeparture.put(departure, node.nextByDeparture);
+			}
+		} else {
+			while (head.nextByDeparture != node) {
+				head = head.nextByDeparture;
+			}
+			head.nextByDeparture = node.nextByDeparture;
+		}
+		node.nextByDeparture = null;
+
+		String destination = destinationOf(node);
+		head = nodesByDestination.get(destination);
+		if (head == node) {
+			if (node.nextByDestination == null) {
+				nodesByDestination.remove(destination);
+			} else {
+				nodesByDestination.put(destination, node.nextByDestination);
+			}
+		} else {
+			while (head.nextByDestination != node) {
+				head = head.nextByDestination;
+			}
+			head.nextByDestination = node.nextByDestination;
+		}
+		node.nextByDestination = null;
+		nodes.remove(node);
+		modCount++;
+	}
+
+	private void unlink(Node node) {
+		if (node.previous != null) {
+			node.previous.next = null;
+			node.previous = null;
+			links--;
+		}
+		if (node.next != null) {
+			node.next.previous = null;
+			node.next = null;
+			links--;
+		}
+		unindex(node);
+	}
+
+	private static String departureOf(Node node) {
+		return node.card.getDeparture().getIdentifier();
+	}
+
+	private static String destinationOf(Node node) {
+		return node.card.getDestination().getIdentifier();
+	}
+
+	private static boolean sameIdentifier(String first, String second) {
+		return Objects.equals(first, second);
+	}
+
+	/**
+	 * Iterador que recorre los fragmentos del viaje desde su primer nodo, en el orden
+	 * en el que se añadió dicho nodo, y después los ciclos cerrados
+	 */
+	private final class ChainIterator implements Iterator<BoardingCard> {
+
+		private final Iterator<Node> nodes = TripChain.this.nodes.iterator();
+		private final int expectedModCount = modCount;
+
+		/**
+		 * Siguiente nodo del fragmento que se está recorriendo, o null si hay que buscar
+		 * el siguiente fragmento
+		 */
+		private Node next;
+
+		/**
+		 * Tarjetas de los ciclos cerrados, o null si todavía no se han recorrido todos
+		 * los fragmentos
+		 */
+		private Iterator<BoardingCard> cycles;
+
+		/**
+		 * Número de tarjetas devueltas
+		 */
+		private int returned;
+
+		@Override
+		public boolean hasNext() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next != null) {
+				return true;
+			}
+			if (cycles == null) {
+				while (nodes.hasNext()) {
+					Node node = nodes.next();
+					if (node.previous == null) {
+						next = node;
+						return true;
+					}
+				}
+				cycles = returned < size()
+						? sortedCards().subList(returned, size()).iterator()
+						: Collections.<BoardingCard>emptyIterator();
+			}
+			return cycles.hasNext();
+		}
+
+		@Override
+		public BoardingCard next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			returned++;
+			if (next != null) {
+				Node node = next;
+				next = node.next;
+				return node.card;
+			}
+			return cycles.next();
+		}
+	}
+
+	/**
+	 * Nodo de la lista doblemente enlazada de tramos
+	 */
+	private static final class Node {
+
+		private BoardingCard card;
+		private Node previous;
+		private Node next;
+		private int mark;
+
+		/**
+		 * Siguiente nodo que sale del mismo lugar, en el orden en el que se añadieron
+		 */
+		private Node nextByDeparture;
+
+		/**
+		 * Siguiente nodo que llega al mismo lugar, en el orden en el que se añadieron
+		 */
+		private Node nextByDestination;
+
+		Node(BoardingCard card) {
+			this.card = card;
+		}
+	}
+}
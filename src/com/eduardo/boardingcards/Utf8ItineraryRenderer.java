@@ -0,0 +1,308 @@
+package com.eduardo.boardingcards;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.eduardo.transport.Train;
+
+/**
+ * Escribe la información de un viaje directamente como bytes UTF-8 en un
+ * {@link ByteBuffer}, listo para escribirse en un canal, por ejemplo una conexión de
+ * red.
+ * <p>
+ * Los fragmentos fijos del texto de cada tipo de tarjeta de embarque ("From ",
+ * " Airport, take flight ", "Take train ", etc.) se codifican a UTF-8 una única vez,
+ * y los datos variables de cada tarjeta (ciudades, número de vuelo, asiento, etc.) se
+ * codifican carácter a carácter directamente en el buffer. De este modo no se crea
+ * ninguna cadena de texto ni array de bytes por cada tramo del viaje, y, usando los
+ * buffers de un {@link ByteBufferPool}, escribir un viaje no genera basura.
+ * <p>
+ * El texto escrito es el mismo que el de {@link Trip#showInfoTravel()}. Las tarjetas
+ * de tipos distintos de avión, tren y autobús se escriben a partir de su método
+ * {@link BoardingCard#showInfo()}.
+ * <p>
+ * Esta clase no guarda estado entre llamadas y puede compartirse entre hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class Utf8ItineraryRenderer {
+
+	private static final byte[] AEROPLANE_FROM = utf8("From ");
+	private static final byte[] AEROPLANE_TAKE_FLIGHT = utf8(" Airport, take flight ");
+	private static final byte[] AEROPLANE_TO = utf8(" to ");
+	private static final byte[] AEROPLANE_GATE = utf8(". ");
+	private static final byte[] AEROPLANE_SEAT = utf8(", seat ");
+	private static final byte[] AEROPLANE_END_SEAT = utf8(".");
+	private static final byte[] AEROPLANE_BAGGAGE_TRANSFERRED = utf8("Baggage will be automatically transferred from your last leg");
+	private static final byte[] AEROPLANE_BAGGAGE_DROP = utf8("Baggage drop at ticket counter");
+
+	private static final byte[] TRAIN_TAKE = utf8("Take train ");
+	private static final byte[] TRAIN_FROM = utf8(" from ");
+	private static final byte[] TRAIN_TO = utf8(" to ");
+	private static final byte[] TRAIN_SEAT = utf8(". Sit in seat ");
+
+	private static final byte[] BUS_FROM = utf8("Take the airport bus from ");
+	private static final byte[] BUS_TO = utf8(" to ");
+	private static final byte[] BUS_END = utf8(".");
+	private static final byte[] BUS_NO_SEAT = utf8("No seat assignment");
+	private static final byte[] BUS_SEAT = utf8("Seat ");
+
+	private static final byte[] NEW_LINE = utf8("\n");
+	private static final byte[] NULL = utf8("null");
+	private static final byte[] ARRIVAL = utf8("You have arrived at your final destination.");
+
+	/**
+	 * Número máximo de bytes UTF-8 por cada carácter UTF-16 de un texto
+	 */
+	private static final int MAX_BYTES_PER_CHAR = 3;
+
+	/**
+	 * Reserva de buffers usada al escribir un viaje en un canal
+	 */
+	private final ByteBufferPool pool;
+
+	/**
+	 * Construye un renderizador que usa buffers directos de una reserva propia
+	 */
+	public Utf8ItineraryRenderer() {
+		this(new ByteBufferPool());
+	}
+
+	/**
+	 * Construye un renderizador que usa los buffers de la reserva indicada
+	 * @param pool Reserva de buffers usada al escribir un viaje en un canal
+	 */
+	public Utf8ItineraryRenderer(ByteBufferPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Escribe la información de un viaje en un canal, usando un buffer de la reserva
+	 * que se devuelve a ella al terminar
+	 * @param trip El viaje
+	 * @param channel Canal en el que se escribe la información del viaje
+	 * @return El número de bytes escritos
+	 * @throws IOException si se produce un error al escribir en el canal
+	 */
+	public long writeTrip(Trip trip, WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = pool.acquire();
+		try {
+			return writeTrip(trip, channel, buffer);
+		} finally {
+			pool.release(buffer);
+		}
+	}
+
+	/**
+	 * Escribe la información de un viaje en un canal usando el buffer indicado. El
+	 * buffer se escribe en el canal cada vez que no queda espacio para el siguiente
+	 * tramo, y al terminar
+	 * @param trip El viaje
+	 * @param channel Canal en el que se escribe la información del viaje
+	 * @param buffer Buffer en el que se codifica la información antes de escribirla
+	 * @return El número de bytes escritos
+	 * @throws IOException si se produce un error al escribir en el canal
+	 * @throws BufferOverflowException si un tramo del viaje no cabe en el buffer vacío
+	 */
+	public long writeTrip(Trip trip, WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		long written = 0;
+		buffer.clear();
+		for (BoardingCard bcard : trip.getBoardingCards()) {
+			if (buffer.remaining() < maxEncodedLength(bcard)) {
+				written += flush(buffer, channel);
+			}
+			render(bcard, buffer);
+		}
+		if (buffer.remaining() < ARRIVAL.length) {
+			written += flush(buffer, channel);
+		}
+		renderArrival(buffer);
+		written += flush(buffer, channel);
+		return written;
+	}
+
+	/**
+	 * Escribe en el buffer la información de una tarjeta de embarque, a partir de su
+	 * posición actual
+	 * @param bcard La tarjeta de embarque
+	 * @param buffer Buffer en el que se escribe la información
+	 * @throws BufferOverflowException si no queda en el buffer espacio suficiente
+	 * para la tarjeta, según {@link #maxEncodedLength(BoardingCard)}. En ese caso no
+	 * se escribe nada
+	 */
+	public void render(BoardingCard bcard, ByteBuffer buffer) {
+		if (buffer.remaining() < maxEncodedLength(bcard)) {
+			throw new BufferOverflowException();
+		}
+		if (bcard instanceof AeroplaneBoardingCard) {
+			renderAeroplane((AeroplaneBoardingCard) bcard, buffer);
+		} else if (bcard instanceof TrainBoardingCard) {
+			renderTrain((TrainBoardingCard) bcard, buffer);
+		} else if (bcard instanceof BusBoardingCard) {
+			renderBus((BusBoardingCard) bcard, buffer);
+		} else {
+			putText(buffer, bcard.showInfo());
+		}
+	}
+
+	/**
+	 * Escribe en el buffer el texto con el que termina la información de un viaje
+	 * @param buffer Buffer en el que se escribe el texto
+	 */
+	public void renderArrival(ByteBuffer buffer) {
+		buffer.put(ARRIVAL);
+	}
+
+	/**
+	 * Calcula el número máximo de bytes que puede ocupar la información de una tarjeta
+	 * de embarque codificada en UTF-8, sin codificarla
+	 * @param bcard La tarjeta de embarque
+	 * @return El número máximo de bytes de la información de la tarjeta
+	 */
+	public int maxEncodedLength(BoardingCard bcard) {
+		if (bcard instanceof AeroplaneBoardingCard) {
+			AeroplaneBoardingCard card = (AeroplaneBoardingCard) bcard;
+			return AEROPLANE_FROM.length + AEROPLANE_TAKE_FLIGHT.length + AEROPLANE_TO.length
+					+ AEROPLANE_GATE.length + AEROPLANE_SEAT.length + AEROPLANE_END_SEAT.length
+					+ Math.max(AEROPLANE_BAGGAGE_TRANSFERRED.length, AEROPLANE_BAGGAGE_DROP.length)
+					+ NEW_LINE.length
+					+ maxLength(card.getDeparture().getCity()) + maxLength(card.getFlightNumber())
+					+ maxLength(card.getDestination().getCity()) + 2 * maxLength(card.getGate())
+					+ maxLength(card.getBaggageTicketCounter());
+		}
+		if (bcard instanceof TrainBoardingCard) {
+			return TRAIN_TAKE.length + TRAIN_FROM.length + TRAIN_TO.length + TRAIN_SEAT.length + NEW_LINE.length
+					+ maxLength(((Train) bcard.getTransport()).getTrainNumber())
+					+ maxLength(bcard.getDeparture().getCity()) + maxLength(bcard.getDestination().getCity())
+					+ maxLength(bcard.getSeat());
+		}
+		if (bcard instanceof BusBoardingCard) {
+			return BUS_FROM.length + BUS_TO.length + BUS_END.length
+					+ Math.max(BUS_NO_SEAT.length, BUS_SEAT.length) + NEW_LINE.length
+					+ maxLength(bcard.getDeparture().getCity()) + maxLength(bcard.getDestination().getCity())
+					+ maxLength(bcard.getSeat());
+		}
+		return maxLength(bcard.showInfo());
+	}
+
+	private void renderAeroplane(AeroplaneBoardingCard bcard, ByteBuffer buffer) {
+		buffer.put(AEROPLANE_FROM);
+		putText(buffer, bcard.getDeparture().getCity());
+		buffer.put(AEROPLANE_TAKE_FLIGHT);
+		putText(buffer, bcard.getFlightNumber());
+		buffer.put(AEROPLANE_TO);
+		putText(buffer, bcard.getDestination().getCity());
+		buffer.put(AEROPLANE_GATE);
+		putText(buffer, bcard.getGate());
+		buffer.put(AEROPLANE_SEAT);
+		putText(buffer, bcard.getGate());
+		buffer.put(AEROPLANE_END_SEAT);
+		if (bcard.getBaggageTicketCounter() == null) {
+			buffer.put(AEROPLANE_BAGGAGE_TRANSFERRED);
+		} else {
+			buffer.put(AEROPLANE_BAGGAGE_DROP);
+			putText(buffer, bcard.getBaggageTicketCounter());
+		}
+		buffer.put(NEW_LINE);
+	}
+
+	private void renderTrain(TrainBoardingCard bcard, ByteBuffer buffer) {
+		buffer.put(TRAIN_TAKE);
+		putText(buffer, ((Train) bcard.getTransport()).getTrainNumber());
+		buffer.put(TRAIN_FROM);
+		putText(buffer, bcard.getDeparture().getCity());
+		buffer.put(TRAIN_TO);
+		putText(buffer, bcard.getDestination().getCity());
+		buffer.put(TRAIN_SEAT);
+		putText(buffer, bcard.getSeat());
+		buffer.put(NEW_LINE);
+	}
+
+	private void renderBus(BusBoardingCard bcard, ByteBuffer buffer) {
+		buffer.put(BUS_FROM);
+		putText(buffer, bcard.getDeparture().getCity());
+		buffer.put(BUS_TO);
+		putText(buffer, bcard.getDestination().getCity());
+		buffer.put(BUS_END);
+		if (bcard.getSeat() == null) {
+			buffer.put(BUS_NO_SEAT);
+		} else {
+			buffer.put(BUS_SEAT);
+			putText(buffer, bcard.getSeat());
+		}
+		buffer.put(NEW_LINE);
+	}
+
+	/**
+	 * Codifica un texto en UTF-8 directamente en el buffer, carácter a carácter. Un
+	 * texto null se escribe como "null", igual que al añadirlo a un
+	 * {@link StringBuilder}
+	 * @param buffer Buffer en el que se escribe el texto
+	 * @param text El texto
+	 */
+	private static void putText(ByteBuffer buffer, String text) {
+		if (text == null) {
+			buffer.put(NULL);
+			return;
+		}
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				// Carácter sustituto sin pareja: se escribe '?', como hace String.getBytes
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	/**
+	 * Calcula el número máximo de bytes que puede ocupar un texto codificado en UTF-8
+	 * @param text El texto
+	 * @return El número máximo de bytes del texto codificado
+	 */
+	private static int maxLength(String text) {
+		return text == null ? NULL.length : text.length() * MAX_BYTES_PER_CHAR;
+	}
+
+	/**
+	 * Escribe en el canal todo el contenido del buffer y lo deja vacío para seguir
+	 * escribiendo en él
+	 * @param buffer Buffer con la información codificada
+	 * @param channel Canal en el que se escribe el buffer
+	 * @return El número de bytes escritos
+	 * @throws IOException si se produce un error al escribir en el canal
+	 */
+	private static int flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+		buffer.flip();
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		buffer.clear();
+		return written;
+	}
+
+	private static byte[] utf8(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -1,7 +1,8 @@
 package com.eduardo.location;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import com.eduardo.location.Place;
 
@@ -37,6 +38,23 @@ public class Place {
 	 */
 	private double latitude;
 	
+	/**
+	 * Número entero denso asignado por un {@link PlaceRegistry}, o -1 si la localización
+	 * no está registrada
+	 */
+	private int registryId = NOT_REGISTERED;
+	
+	/**
+	 * Indica si la localización es la instancia canónica de un {@link PlaceRegistry}, en
+	 * cuyo caso no puede modificarse
+	 */
+	private boolean canonical;
+	
+	/**
+	 * Valor de {@link #getRegistryId()} para una localización no registrada
+	 */
+	public static final int NOT_REGISTERED = -1;
+	
 	/**
 	 * Construye una localización con identificador 000000, con la cadena vacía como ciudad y país,
 	 * y con longitud y latitud 0.0
@@ -90,6 +108,7 @@ public class Place {
 	 * @param identifier El identificador único de la localidad
 	 */
 	public void setIdentifier(String identifier) {
+		checkMutable();
 		this.identifier = identifier;
 	}
 	
@@ -106,6 +125,7 @@ public class Place {
 	 * @param city La localidad correspondiente a la localización
 	 */
 	public void setCity(String city) {
+		checkMutable();
 		this.city = city;
 	}
 
@@ -122,6 +142,7 @@ public class Place {
 	 * @param country El país correspondiente a la localidad de la localización
 	 */
 	public void setCountry(String country) {
+		checkMutable();
 		this.country = country;
 	}
 	
@@ -138,6 +159,7 @@ public class Place {
 	 * @param longitude La longitud en coordenadas decimales de la localidad de la localización
 	 */
 	public void setLongitude(double longitude) {
+		checkMutable();
 		this.longitude = longitude;
 	}
 
@@ -154,19 +176,87 @@ public class Place {
 	 * @param latitude La latitud en coordenadas decimales de la localidad de la localización
 	 */
 	public void setLatitude(double latitude) {
+		checkMutable();
 		this.latitude = latitude;
 	}
 	
+	/**
+	 * Permite obtener el número entero denso asignado a la localización por un
+	 * {@link PlaceRegistry}. Los algoritmos de ordenación y los índices pueden usarlo para
+	 * indexar arrays por localización
+	 * @return El número asignado, o {@link #NOT_REGISTERED} si la localización no está
+	 * registrada
+	 */
+	public int getRegistryId() {
+		return registryId;
+	}
+	
+	/**
+	 * Permite saber si la localización es la instancia canónica de un
+	 * {@link PlaceRegistry}. Las localizaciones canónicas no pueden modificarse
+	 * @return true si la localización es canónica, false en caso contrario
+	 */
+	public boolean isCanonical() {
+		return canonical;
+	}
+	
+	/**
+	 * Convierte la localización en la instancia canónica de un registro
+	 * @param registryId Número entero denso asignado por el registro
+	 */
+	void makeCanonical(int registryId) {
+		this.registryId = registryId;
+		this.canonical = true;
+	}
+	
+	/**
+	 * Comprueba que la localización puede modificarse
+	 * @throws UnsupportedOperationException si la localización es canónica
+	 */
+	private void checkMutable() {
+		if (canonical) {
+			throw new UnsupportedOperationException("La localización " + identifier + " es canónica y no puede modificarse");
+		}
+	}
+	
+	/**
+	 * Dos localizaciones son iguales si tienen el mismo identificador único
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Place)) {
+			return false;
+		}
+		return Objects.equals(identifier, ((Place) obj).identifier);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(identifier);
+	}
+	
+	@Override
+	public String toString() {
+		return identifier;
+	}
+	
 	/**
 	 * Permite obtener los lugares más cercanos a una localidad en un radio en kilómetros indicado por
 	 * el parámetro <code>distance</code>
+	 * <p>
+	 * La búsqueda se realiza sobre el índice espacial del registro de localizaciones por
+	 * defecto (ver {@link PlaceRegistry#getSpatialIndex()}), por lo que sólo se encuentran
+	 * las localizaciones registradas en él con coordenadas
 	 * @param distance Radio de búsqueda (en kilómetros)
-	 * @return La lista de localidades que se encuentran dentro de un radio de <code>distance</code> kilómetros
+	 * @return La lista de localidades que se encuentran dentro de un radio de <code>distance</code> kilómetros,
+	 * ordenadas de la más cercana a la más lejana y sin incluir esta localidad
 	 */
 	public List<Place> nearestPlaces(double distance) {
-		return Arrays.asList(
-				new Place("000001", "Barcelona", "Espa�a", 23.456, 12.345),
-				new Place("000002", "Munich", "Alemania", 2.456, 1.345),
-				new Place("000003", "Lisboa", "Portugal", 20.456, 10.345));
+		List<Place> places = new ArrayList<>(PlaceRegistry.getDefault().getSpatialIndex().withinRadius(this, distance));
+		places.remove(this);
+		return places;
 	}
 }
@@ -0,0 +1,215 @@
+package com.eduardo.location;
+
+import java.util.Arrays;
+
+/**
+ * Diccionario que asigna a cada identificador de lugar un número entero denso
+ * (0, 1, 2, ...) en el orden en el que se van registrando los identificadores.
+ * <p>
+ * Permite que los algoritmos de ordenación trabajen con arrays de tipos primitivos
+ * indexados por lugar en lugar de con tablas hash de cadenas de texto. El hash de
+ * cada identificador se calcula una única vez al registrarlo, y la tabla usa
+ * direccionamiento abierto sobre arrays, por lo que no se crea ningún objeto
+ * intermedio por cada entrada.
+ * <p>
+ * Esta clase no es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class PlaceDictionary {
+
+	/**
+	 * Valor devuelto cuando un identificador no está registrado en el diccionario
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Capacidad inicial por defecto (número de lugares)
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Tabla de direccionamiento abierto. Cada posición contiene el número asignado al
+	 * identificador más uno, o cero si la posición está libre
+	 */
+	private int[] slots;
+
+	/**
+	 * Identificadores registrados, indexados por el número entero asignado
+	 */
+	private String[] identifiers;
+
+	/**
+	 * Hash de cada identificador registrado, indexado por el número entero asignado
+	 */
+	private int[] hashes;
+
+	/**
+	 * Número de identificadores registrados
+	 */
+	private int size;
+
+	/**
+	 * Construye un diccionario vacío con la capacidad por defecto
+	 */
+	public PlaceDictionary() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construye un diccionario vacío con capacidad para el número de lugares indicado
+	 * sin necesidad de redimensionarse
+	 * @param expectedPlaces Número de lugares distintos que se espera registrar
+	 */
+	public PlaceDictionary(int expectedPlaces) {
+		int capacity = Math.max(expectedPlaces, DEFAULT_CAPACITY);
+		identifiers = new String[capacity];
+		hashes = new int[capacity];
+		slots = new int[tableSizeFor(capacity)];
+	}
+
+	/**
+	 * Registra un identificador de lugar en el diccionario, si no lo estaba ya, y
+	 * devuelve el número entero asignado.
+	 * <p>
+	 * Coste computacional del método: O(1) amortizado
+	 * @param identifier Identificador del lugar
+	 * @return El número entero asignado al identificador
+	 */
+	public int intern(String identifier) {
+		int hash = mix(identifier.hashCode());
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		int entry;
+		while ((entry = slots[slot]) != 0) {
+			int id = entry - 1;
+			if (hashes[id] == hash && identifier.equals(identifiers[id])) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (size == identifiers.length) {
+			grow();
+			return intern(identifier);
+		}
+		int id = size++;
+		identifiers[id] = identifier;
+		hashes[id] = hash;
+		slots[slot] = id + 1;
+		return id;
+	}
+
+	/**
+	 * Registra en el diccionario el identificador del lugar indicado
+	 * @param place El lugar
+	 * @return El número entero asignado al identificador del lugar
+	 * @see #intern(String)
+	 */
+	public int intern(Place place) {
+		return intern(place.getIdentifier());
+	}
+
+	/**
+	 * Permite obtener el número entero asignado a un identificador sin registrarlo
+	 * @param identifier Identificador del lugar
+	 * @return El número entero asignado, o {@link #NOT_FOUND} si el identificador no
+	 * está registrado
+	 */
+	public int indexOf(String identifier) {
+		int hash = mix(identifier.hashCode());
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+		int entry;
+		while ((entry = slots[slot]) != 0) {
+			int id = entry - 1;
+			if (hashes[id] == hash && identifier.equals(identifiers[id])) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Permite obtener el identificador al que se le asignó un número entero
+	 * @param id El número entero asignado
+	 * @return El identificador del lugar
+	 */
+	public String identifier(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("Lugar no registrado: " + id);
+		}
+		return identifiers[id];
+	}
+
+	/**
+	 * Permite obtener el número de lugares registrados. Los números asignados van
+	 * desde 0 hasta este valor menos uno
+	 * @return El número de lugares registrados
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Elimina todos los identificadores registrados conservando la memoria reservada,
+	 * de modo que el diccionario pueda reutilizarse sin volver a reservar sus arrays.
+	 * <p>
+	 * Coste computacional del método: O(número de lugares registrados)
+	 */
+	public void clear() {
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			/*
+			 * En lugar de recorrer toda la tabla, se vacían sólo las posiciones ocupadas,
+			 * buscando cada identificador desde su posición inicial
+			 */
+			int slot = hashes[id] & mask;
+			while (slots[slot] != 0) {
+				slots[slot] = 0;
+				slot = (slot + 1) & mask;
+			}
+			identifiers[id] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Duplica la capacidad del diccionario y recoloca los identificadores registrados
+	 */
+	private void grow() {
+		int capacity = identifiers.length * 2;
+		identifiers = Arrays.copyOf(identifiers, capacity);
+		hashes = Arrays.copyOf(hashes, capacity);
+		slots = new int[tableSizeFor(capacity)];
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Calcula el tamaño de la tabla de direccionamiento abierto para una capacidad
+	 * dada, manteniendo un factor de carga máximo del 50%
+	 * @param capacity Número máximo de lugares
+	 * @return Potencia de dos mayor o igual que el doble de la capacidad
+	 */
+	private static int tableSizeFor(int capacity) {
+		return Integer.highestOneBit(capacity * 2 - 1) << 1;
+	}
+
+	/**
+	 * Mezcla los bits del hash de una cadena para repartir mejor las claves en la tabla
+	 * @param hash El hash original
+	 * @return El hash mezclado
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,180 @@
+package com.eduardo.location;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registro de localizaciones que devuelve una única instancia canónica e inmutable de
+ * {@link Place} por cada identificador de lugar (patrón Flyweight).
+ * <p>
+ * En lugar de crear un objeto Place nuevo en cada tarjeta de embarque, todas las
+ * tarjetas que pasan por una misma ciudad pueden compartir la misma instancia, lo que
+ * reduce la memoria ocupada y permite comparar localizaciones por referencia.
+ * <p>
+ * Además, el registro asigna a cada localización un número entero denso (0, 1, 2, ...)
+ * que puede consultarse con {@link Place#getRegistryId()}, de modo que los algoritmos
+ * de ordenación y los índices puedan usar arrays indexados por localización.
+ * <p>
+ * Las localizaciones registradas con coordenadas se añaden también a un índice
+ * espacial, disponible en {@link #getSpatialIndex()}, para buscar localizaciones
+ * cercanas. Las localizaciones sin coordenadas (latitud y longitud 0.0) no se indexan.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos.
+ * <p>
+ * {@code
+ * Place barcelona = PlaceRegistry.getDefault().intern("barcelona-spain", "Barcelona", "Spain");
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class PlaceRegistry {
+
+	/**
+	 * Registro compartido por defecto
+	 */
+	private static final PlaceRegistry DEFAULT = new PlaceRegistry();
+
+	/**
+	 * Localizaciones canónicas indexadas por su identificador
+	 */
+	private final ConcurrentMap<String, Place> placesByIdentifier = new ConcurrentHashMap<>();
+
+	/**
+	 * Localizaciones canónicas indexadas por su número entero asignado
+	 */
+	private volatile Place[] placesById = new Place[64];
+
+	/**
+	 * Número de localizaciones registradas
+	 */
+	private volatile int size;
+
+	/**
+	 * Índice espacial de las localizaciones registradas con coordenadas
+	 */
+	private final PlaceSpatialIndex spatialIndex = new PlaceSpatialIndex();
+
+	/**
+	 * Permite obtener el registro de localizaciones compartido por defecto
+	 * @return El registro de localizaciones por defecto
+	 */
+	public static PlaceRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Permite obtener la localización canónica de un identificador, creándola con los
+	 * datos indicados si todavía no estaba registrada
+	 * @param identifier Identificador único de la localización
+	 * @param city Ciudad
+	 * @param country País
+	 * @return La localización canónica del identificador
+	 */
+	public Place intern(String identifier, String city, String country) {
+		Place place = placesByIdentifier.get(identifier);
+		return place != null ? place : register(new Place(identifier, city, country));
+	}
+
+	/**
+	 * Permite obtener la localización canónica de un identificador, creándola con los
+	 * datos indicados si todavía no estaba registrada
+	 * @param identifier Identificador único de la localización
+	 * @param city Ciudad
+	 * @param country País
+	 * @param longitude Longitud de la localidad
+	 * @param latitude Latitud de la localidad
+	 * @return La localización canónica del identificador
+	 */
+	public Place intern(String identifier, String city, String country, double longitude, double latitude) {
+		Place place = placesByIdentifier.get(identifier);
+		return place != null ? place : register(new Place(identifier, city, country, longitude, latitude));
+	}
+
+	/**
+	 * Permite obtener la localización canónica equivalente a una localización. Si su
+	 * identificador todavía no estaba registrado, se registra una copia de ella
+	 * @param place La localización
+	 * @return La localización canónica con el mismo identificador
+	 */
+	public Place intern(Place place) {
+		if (place.isCanonical() && get(place.getRegistryId()) == place) {
+			return place;
+		}
+		Place canonical = placesByIdentifier.get(place.getIdentifier());
+		return canonical != null ? canonical : register(new Place(place.getIdentifier(), place.getCity(),
+				place.getCountry(), place.getLongitude(), place.getLatitude()));
+	}
+
+	/**
+	 * Permite obtener la localización canónica de un identificador
+	 * @param identifier Identificador único de la localización
+	 * @return La localización canónica, o null si el identificador no está registrado
+	 */
+	public Place get(String identifier) {
+		return placesByIdentifier.get(identifier);
+	}
+
+	/**
+	 * Permite obtener la localización canónica a la que se le asignó un número entero
+	 * @param registryId El número entero asignado a la localización
+	 * @return La localización canónica, o null si no hay ninguna con dicho número
+	 */
+	public Place get(int registryId) {
+		Place[] places = placesById;
+		return registryId >= 0 && registryId < places.length ? places[registryId] : null;
+	}
+
+	/**
+	 * Permite obtener el número de localizaciones registradas. Los números asignados
+	 * van desde 0 hasta este valor menos uno
+	 * @return El número de localizaciones registradas
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Permite obtener el índice espacial de las localizaciones registradas con
+	 * coordenadas
+	 * @return El índice espacial del registro
+	 */
+	public PlaceSpatialIndex getSpatialIndex() {
+		return spatialIndex;
+	}
+
+	/**
+	 * Registra una localización nueva como canónica, salvo que otro hilo haya
+	 * registrado antes el mismo identificador
+	 * @param place La localización a registrar
+	 * @return La localización canónica del identificador
+	 */
+	private Place register(Place place) {
+		/*
+		 * El alta se hace con el cerrojo del registro para que el número asignado sea
+		 * denso, y la localización sólo se publica en la tabla cuando ya es canónica.
+		 * Las consultas de localizaciones ya registradas no necesitan el cerrojo
+		 */
+		synchronized (this) {
+			Place previous = placesByIdentifier.get(place.getIdentifier());
+			if (previous != null) {
+				return previous;
+			}
+			int id = size;
+			Place[] places = placesById;
+			if (id == places.length) {
+				places = Arrays.copyOf(places, id * 2);
+			}
+			place.makeCanonical(id);
+			places[id] = place;
+			placesById = places;
+			size = id + 1;
+			placesByIdentifier.put(place.getIdentifier(), place);
+		}
+		if (place.getLatitude() != 0.0 || place.getLongitude() != 0.0) {
+			spatialIndex.add(place);
+		}
+		return place;
+	}
+}
@@ -0,0 +1,503 @@
+package com.eduardo.location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice espacial de localizaciones que permite buscar las localizaciones que se
+ * encuentran dentro de un radio en kilómetros, o las k localizaciones más cercanas a
+ * un punto, sin recorrer todas las localizaciones registradas.
+ * <p>
+ * Cada localización se representa como un punto de la esfera unidad en coordenadas
+ * cartesianas (x, y, z) a partir de su latitud y longitud, y los puntos se organizan
+ * en un árbol k-d de tres dimensiones. La distancia en línea recta entre dos puntos de
+ * la esfera crece con la distancia del círculo máximo entre ellos, por lo que el árbol
+ * puede descartar ramas enteras comparando sólo una coordenada, y las búsquedas tienen
+ * un coste medio logarítmico en el número de localizaciones.
+ * <p>
+ * El índice puede construirse de una vez a partir de una colección de localizaciones,
+ * obteniendo un árbol equilibrado, o ir creciendo con inserciones individuales. Si una
+ * inserción queda demasiado profunda, se reconstruye sólo el subárbol desequilibrado
+ * que la contiene, como en un árbol <i>scapegoat</i>.
+ * <p>
+ * Las localizaciones con las mismas coordenadas, por ejemplo varios lugares
+ * geocodificados en la misma ciudad, comparten un único nodo del árbol, de modo que
+ * no alargan sus ramas. Los empates en la coordenada de un eje se deshacen con las
+ * otras dos coordenadas, por lo que la mediana siempre divide un subárbol en dos
+ * mitades y las reconstrucciones lo dejan equilibrado.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class PlaceSpatialIndex {
+
+	/**
+	 * Radio medio de la Tierra, en kilómetros
+	 */
+	public static final double EARTH_RADIUS_KM = 6371.0088;
+
+	/**
+	 * Proporción máxima de los nodos de un subárbol que puede quedar en uno de sus
+	 * hijos, 2^(-1/3). Si todos los nodos la cumplen, la profundidad del árbol es como
+	 * mucho 3·log2(n), el límite de {@link #maxBalancedDepth(int)}
+	 */
+	private static final double BALANCE = Math.pow(2, -1.0 / 3);
+
+	/**
+	 * Raíz del árbol k-d
+	 */
+	private Node root;
+
+	/**
+	 * Número de localizaciones del índice
+	 */
+	private int size;
+
+	/**
+	 * Cerrojo que permite búsquedas concurrentes y serializa las inserciones
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Construye un índice vacío
+	 */
+	public PlaceSpatialIndex() {
+	}
+
+	/**
+	 * Construye un índice equilibrado con las localizaciones indicadas
+	 * @param places Las localizaciones a indexar
+	 */
+	public PlaceSpatialIndex(Collection<Place> places) {
+		addAll(places);
+	}
+
+	/**
+	 * Añade una localización al índice
+	 * <p>
+	 * Coste computacional del método: O(log n) de media, y O(log² n) amortizado en el
+	 * peor caso por las reconstrucciones de subárboles
+	 * @param place La localización a añadir
+	 */
+	public void add(Place place) {
+		Node node = new Node(place);
+		lock.writeLock().lock();
+		try {
+			size++;
+			if (root == null) {
+				root = node;
+				return;
+			}
+			List<Node> path = new ArrayList<>();
+			Node parent = root;
+			while (true) {
+				if (parent.sameCoordinates(node)) {
+					parent.addCoincident(node);
+					return;
+				}
+				path.add(parent);
+				Node next = node.compare(parent, parent.axis) < 0 ? parent.left : parent.right;
+				if (next == null) {
+					break;
+				}
+				parent = next;
+			}
+			node.axis = (parent.axis + 1) % 3;
+			if (node.compare(parent, parent.axis) < 0) {
+				parent.left = node;
+			} else {
+				parent.right = node;
+			}
+			for (Node ancestor : path) {
+				ancestor.count++;
+			}
+			if (path.size() > maxBalancedDepth(root.count)) {
+				rebuildScapegoat(path, node);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Añade varias localizaciones al índice, reconstruyendo el árbol equilibrado con
+	 * todas ellas
+	 * <p>
+	 * Coste computacional del método: O(n log² n)
+	 * @param places Las localizaciones a añadir
+	 */
+	public void addAll(Collection<Place> places) {
+		List<Node> nodes = new ArrayList<>(places.size());
+		for (Place place : places) {
+			nodes.add(new Node(place));
+		}
+		lock.writeLock().lock();
+		try {
+			collect(root, nodes);
+			size += places.size();
+			nodes = mergeCoincident(nodes);
+			root = build(nodes, 0, nodes.size(), 0);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Permite obtener las localizaciones que se encuentran a una distancia menor o igual
+	 * que el radio indicado de una localización, ordenadas de la más cercana a la más
+	 * lejana
+	 * @param center La localización central
+	 * @param radiusKm Radio de búsqueda, en kilómetros
+	 * @return Las localizaciones dentro del radio, incluida la propia localización
+	 * central si forma parte del índice
+	 */
+	public List<Place> withinRadius(Place center, double radiusKm) {
+		return withinRadius(center.getLatitude(), center.getLongitude(), radiusKm);
+	}
+
+	/**
+	 * Permite obtener las localizaciones que se encuentran a una distancia menor o igual
+	 * que el radio indicado de un punto, ordenadas de la más cercana a la más lejana
+	 * <p>
+	 * Coste computacional del método: O(log n + k) de media, siendo k el número de
+	 * localizaciones encontradas
+	 * @param latitude Latitud del punto, en grados
+	 * @param longitude Longitud del punto, en grados
+	 * @param radiusKm Radio de búsqueda, en kilómetros
+	 * @return Las localizaciones dentro del radio
+	 */
+	public List<Place> withinRadius(double latitude, double longitude, double radiusKm) {
+		Node target = new Node(latitude, longitude);
+		double maxChord = chordForDistance(radiusKm);
+		List<Node> found = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			searchRadius(root, target, maxChord * maxChord, maxChord, found);
+		} finally {
+			lock.readLock().unlock();
+		}
+		found.sort(Comparator.comparingDouble(node -> node.squaredChord(target)));
+		List<Place> places = new ArrayList<>(found.size());
+		for (Node node : found) {
+			places.add(node.place);
+		}
+		return places;
+	}
+
+	/**
+	 * Permite obtener las k localizaciones más cercanas a una localización, ordenadas
+	 * de la más cercana a la más lejana
+	 * @param center La localización central
+	 * @param k Número de localizaciones a obtener
+	 * @return Las k localizaciones más cercanas, incluida la propia localización
+	 * central si forma parte del índice
+	 */
+	public List<Place> nearest(Place center, int k) {
+		return nearest(center.getLatitude(), center.getLongitude(), k);
+	}
+
+	/**
+	 * Permite obtener las k localizaciones más cercanas a un punto, ordenadas de la más
+	 * cercana a la más lejana
+	 * <p>
+	 * Coste computacional del método: O(k log n) de media
+	 * @param latitude Latitud del punto, en grados
+	 * @param longitude Longitud del punto, en grados
+	 * @param k Número de localizaciones a obtener
+	 * @return Las k localizaciones más cercanas, o todas si el índice tiene menos de k
+	 */
+	public List<Place> nearest(double latitude, double longitude, int k) {
+		List<Place> places = new ArrayList<>();
+		if (k <= 0) {
+			return places;
+		}
+		Node target = new Node(latitude, longitude);
+		// Montículo con la localización más lejana de las k mejores en la cima
+		PriorityQueue<Node> best = new PriorityQueue<>(k,
+				Comparator.comparingDouble((Node node) -> node.squaredChord(target)).reversed());
+		lock.readLock().lock();
+		try {
+			searchNearest(root, target, k, best);
+		} finally {
+			lock.readLock().unlock();
+		}
+		while (!best.isEmpty()) {
+			places.add(best.poll().place);
+		}
+		Collections.reverse(places);
+		return places;
+	}
+
+	/**
+	 * Permite obtener el número de localizaciones del índice
+	 * @return El número de localizaciones del índice
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Calcula la distancia del círculo máximo entre dos localizaciones con la fórmula
+	 * del semiverseno
+	 * @param from Localización de origen
+	 * @param to Localización de destino
+	 * @return La distancia entre las dos localizaciones, en kilómetros
+	 */
+	public static double distanceKm(Place from, Place to) {
+		double lat1 = Math.toRadians(from.getLatitude());
+		double lat2 = Math.toRadians(to.getLatitude());
+		double dLat = lat2 - lat1;
+		double dLon = Math.toRadians(to.getLongitude() - from.getLongitude());
+		double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+				+ Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+
+	private static void searchRadius(Node node, Node target, double maxSquaredChord, double maxChord,
+			List<Node> found) {
+		while (node != null) {
+			if (node.squaredChord(target) <= maxSquaredChord) {
+				for (Node same = node; same != null; same = same.coincident) {
+					found.add(same);
+				}
+			}
+			double delta = target.coordinate(node.axis) - node.coordinate(node.axis);
+			Node near = delta < 0 ? node.left : node.right;
+			Node far = delta < 0 ? node.right : node.left;
+			if (Math.abs(delta) <= maxChord) {
+				searchRadius(far, target, maxSquaredChord, maxChord, found);
+			}
+			node = near;
+		}
+	}
+
+	private static void searchNearest(Node node, Node target, int k, PriorityQueue<Node> best) {
+		if (node == null) {
+			return;
+		}
+		double squaredChord = node.squaredChord(target);
+		for (Node same = node; same != null; same = same.coincident) {
+			if (best.size() < k) {
+				best.add(same);
+			} else if (squaredChord < best.peek().squaredChord(target)) {
+				best.poll();
+				best.add(same);
+			} else {
+				break;
+			}
+		}
+		double delta = target.coordinate(node.axis) - node.coordinate(node.axis);
+		searchNearest(delta < 0 ? node.left : node.right, target, k, best);
+		if (best.size() < k || delta * delta < best.peek().squaredChord(target)) {
+			searchNearest(delta < 0 ? node.right : node.left, target, k, best);
+		}
+	}
+
+	/**
+	 * Construye un subárbol equilibrado con los nodos de un tramo de la lista, tomando
+	 * como raíz la mediana según la coordenada del eje correspondiente a la profundidad.
+	 * Los nodos deben tener coordenadas distintas
+	 */
+	private static Node build(List<Node> nodes, int from, int to, int axis) {
+		if (from >= to) {
+			return null;
+		}
+		nodes.subList(from, to).sort((a, b) -> a.compare(b, axis));
+		int middle = (from + to) >>> 1;
+		Node median = nodes.get(middle);
+		median.axis = axis;
+		median.left = build(nodes, from, middle, (axis + 1) % 3);
+		median.right = build(nodes, middle + 1, to, (axis + 1) % 3);
+		median.count = 1 + count(median.left) + count(median.right);
+		return median;
+	}
+
+	/**
+	 * Tras insertar un nodo por debajo de la profundidad máxima, busca desde el nodo
+	 * hacia la raíz el primer antecesor en el que uno de sus hijos tiene más de la
+	 * proporción {@link #BALANCE} de sus nodos, y reconstruye equilibrado sólo el
+	 * subárbol de dicho antecesor
+	 * <p>
+	 * Coste computacional del método: O(m log² m), siendo m el tamaño del subárbol
+	 * reconstruido
+	 * @param path Los antecesores del nodo insertado, desde la raíz
+	 * @param inserted El nodo insertado
+	 */
+	private void rebuildScapegoat(List<Node> path, Node inserted) {
+		Node child = inserted;
+		for (int i = path.size() - 1; i >= 0; i--) {
+			Node ancestor = path.get(i);
+			if (child.count > BALANCE * ancestor.count) {
+				List<Node> nodes = new ArrayList<>(ancestor.count);
+				collect(ancestor, nodes);
+				Node subtree = build(nodes, 0, nodes.size(), ancestor.axis);
+				if (i == 0) {
+					root = subtree;
+				} else if (path.get(i - 1).left == ancestor) {
+					path.get(i - 1).left = subtree;
+				} else {
+					path.get(i - 1).right = subtree;
+				}
+				return;
+			}
+			child = ancestor;
+		}
+	}
+
+	/**
+	 * Agrupa en un único nodo los nodos con las mismas coordenadas
+	 * <p>
+	 * Coste computacional del método: O(n log n)
+	 * @param nodes Los nodos a agrupar
+	 * @return Un nodo por cada punto distinto, con el resto de nodos del mismo punto
+	 * encadenados a él
+	 */
+	private static List<Node> mergeCoincident(List<Node> nodes) {
+		nodes.sort((a, b) -> a.compare(b, 0));
+		List<Node> merged = new ArrayList<>(nodes.size());
+		for (Node node : nodes) {
+			Node last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && last.sameCoordinates(node)) {
+				last.addCoincident(node);
+			} else {
+				merged.add(node);
+			}
+		}
+		return merged;
+	}
+
+	private static int count(Node node) {
+		return node == null ? 0 : node.count;
+	}
+
+	private static void collect(Node node, List<Node> nodes) {
+		while (node != null) {
+			nodes.add(node);
+			collect(node.left, nodes);
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Profundidad a partir de la cual se considera que el árbol está desequilibrado y
+	 * debe reconstruirse
+	 */
+	private static int maxBalancedDepth(int size) {
+		return 3 * (32 - Integer.numberOfLeadingZeros(size)) + 4;
+	}
+
+	/**
+	 * Calcula la distancia en línea recta entre dos puntos de la esfera unidad
+	 * separados por una distancia del círculo máximo dada
+	 * @param distanceKm Distancia del círculo máximo, en kilómetros
+	 * @return La longitud de la cuerda en la esfera unidad
+	 */
+	private static double chordForDistance(double distanceKm) {
+		double angle = Math.min(Math.PI, Math.max(0, distanceKm) / EARTH_RADIUS_KM);
+		return 2 * Math.sin(angle / 2);
+	}
+
+	/**
+	 * Nodo del árbol k-d: una localización y su posición en la esfera unidad
+	 */
+	private static final class Node {
+
+		private final Place place;
+		private final double x;
+		private final double y;
+		private final double z;
+		private int axis;
+		private Node left;
+		private Node right;
+
+		/**
+		 * Número de nodos del árbol en el subárbol de este nodo, sin contar los nodos
+		 * con las mismas coordenadas
+		 */
+		private int count = 1;
+
+		/**
+		 * Siguiente nodo con las mismas coordenadas que este, o null. Los nodos
+		 * encadenados no forman parte del árbol y no tienen hijos
+		 */
+		private Node coincident;
+
+		Node(Place place) {
+			this(place, place.getLatitude(), place.getLongitude());
+		}
+
+		Node(double latitude, double longitude) {
+			this(null, latitude, longitude);
+		}
+
+		private Node(Place place, double latitude, double longitude) {
+			this.place = place;
+			double lat = Math.toRadians(latitude);
+			double lon = Math.toRadians(longitude);
+			// Al sumar 0.0 el cero negativo pasa a ser cero, y compare coincide con ==
+			this.x = Math.cos(lat) * Math.cos(lon) + 0.0;
+			this.y = Math.cos(lat) * Math.sin(lon) + 0.0;
+			this.z = Math.sin(lat) + 0.0;
+		}
+
+		double coordinate(int axis) {
+			return axis == 0 ? x : axis == 1 ? y : z;
+		}
+
+		/**
+		 * Compara la posición de dos nodos según la coordenada de un eje y, en caso de
+		 * empate, según las de los otros dos ejes
+		 * @return Un número negativo, cero o positivo si este nodo va antes, en el mismo
+		 * punto o después que el otro nodo
+		 */
+		int compare(Node other, int axis) {
+			int result = Double.compare(coordinate(axis), other.coordinate(axis));
+			if (result == 0) {
+				result = Double.compare(coordinate((axis + 1) % 3), other.coordinate((axis + 1) % 3));
+			}
+			if (result == 0) {
+				result = Double.compare(coordinate((axis + 2) % 3), other.coordinate((axis + 2) % 3));
+			}
+			return result;
+		}
+
+		boolean sameCoordinates(Node other) {
+			return x == other.x && y == other.y && z == other.z;
+		}
+
+		/**
+		 * Encadena a este nodo otro nodo con las mismas coordenadas, junto con los nodos
+		 * que ya estuvieran encadenados a él
+		 */
+		void addCoincident(Node other) {
+			Node last = other;
+			while (last.coincident != null) {
+				last = last.coincident;
+			}
+			last.coincident = coincident;
+			coincident = other;
+			other.left = null;
+			other.right = null;
+		}
+
+		double squaredChord(Node other) {
+			double dx = x - other.x;
+			double dy = y - other.y;
+			double dz = z - other.z;
+			return dx * dx + dy * dy + dz * dz;
+		}
+	}
+}
@@ -14,6 +14,7 @@ import com.eduardo.boardingcards.TrainBoardingCard;
 import com.eduardo.boardingcards.TrainBoardingCardFactory;
 import com.eduardo.boardingcards.Trip;
 import com.eduardo.location.Place;
+import com.eduardo.location.PlaceRegistry;
 import com.eduardo.transport.Train;
 
 public class Main {
@@ -26,6 +27,15 @@ public class Main {
 		BoardingCardFactory trainBoardingCardFactory = new TrainBoardingCardFactory();
 		BoardingCardFactory busBoardingCardFactory = new BusBoardingCardFactory();
 		
+		// Cada lugar se crea una sola vez en el registro y todas las tarjetas que pasan por él
+		// comparten la misma instancia
+		PlaceRegistry places = PlaceRegistry.getDefault();
+		Place madrid = places.intern("madrid-spain", "Madrid", "Spain");
+		Place barcelona = places.intern("barcelona-spain", "Barcelona", "Spain");
+		Place gerona = places.intern("geronaairport-spain", "Gerona", "Spain");
+		Place stockolm = places.intern("stockolm-sweeden", "Stockolm", "Sweeden");
+		Place newYork = places.intern("ny-usa", "New York", "USA");
+		
 		List<BoardingCard> unorderedBoardingCards = Arrays.asList(
 				aeroplaneBoardingCardFactory.createBoardingCard(),
 				trainBoardingCardFactory.createBoardingCard(),
@@ -40,16 +50,16 @@ public class Main {
 			.setBaggageTicketCounter(null)
 			.setIdentifier("004")
 			.setSeat("7B")
-			.setDeparture(new Place("stockolm-sweeden", "Stockolm", "Sweeden"))
-			.setDestination(new Place("ny-usa", "New York", "USA"));
+			.setDeparture(stockolm)
+			.setDestination(newYork);
 		
 		TrainBoardingCard bcard2 = (TrainBoardingCard)unorderedBoardingCards.get(1);
 		bcard2
 			.setIdentifier("001")
 			.setTransport(new Train("78A"))
 			.setSeat("45B")
-			.setDeparture(new Place("madrid-spain", "Madrid", "Spain"))
-			.setDestination(new Place("barcelona-spain", "Barcelona", "Spain"));
+			.setDeparture(madrid)
+			.setDestination(barcelona);
 		
 		AeroplaneBoardingCard bcard3 = (AeroplaneBoardingCard)unorderedBoardingCards.get(2);
 		bcard3
@@ -58,15 +68,15 @@ public class Main {
 			.setBaggageTicketCounter("344")
 			.setIdentifier("003")
 			.setSeat("3A")
-			.setDeparture(new Place("geronaairport-spain", "Gerona", "Spain"))
-			.setDestination(new Place("stockolm-sweeden", "Stockolm", "Sweeden"));
+			.setDeparture(gerona)
+			.setDestination(stockolm);
 		
 		BusBoardingCard bcard4 = (BusBoardingCard)unorderedBoardingCards.get(3);
 		bcard4
 			.setIdentifier("002")
 			.setSeat(null)
-			.setDeparture(new Place("barcelona-spain", "Barcelona", "Spain"))
-			.setDestination(new Place("geronaairport-spain", "Gerona", "Spain"));
+			.setDeparture(barcelona)
+			.setDestination(gerona);
 		
 		// Establecemos la estrategia de ordenamiento siguiendo el patrón Strategy
 		Trip trip = new Trip(unorderedBoardingCards);
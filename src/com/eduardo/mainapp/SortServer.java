@@ -0,0 +1,429 @@
+package com.eduardo.mainapp;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.eduardo.boardingcards.BoardingCard;
+import com.eduardo.boardingcards.BoardingCardLineFormatter;
+import com.eduardo.boardingcards.MappedBoardingCardLoader;
+import com.eduardo.boardingcards.SortRequestCoalescer;
+import com.eduardo.boardingcards.StrategyAdaptive;
+import com.eduardo.boardingcards.StrategySharedChain;
+import com.eduardo.boardingcards.Trip;
+import com.eduardo.boardingcards.TripSorterStrategy;
+import com.eduardo.location.Place;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Servicio HTTP que ordena viajes, construido sobre el servidor HTTP incluido en el
+ * JDK, para usar el ordenador de viajes como un servicio en lugar de como una
+ * librería.
+ * <p>
+ * El servicio atiende peticiones POST en la ruta {@value #SORT_PATH}. El cuerpo de la
+ * petición contiene las tarjetas de embarque de un viaje, una por línea, con el
+ * formato de {@link MappedBoardingCardLoader}. La respuesta contiene el itinerario
+ * ordenado:
+ * <ul>
+ * <li>Por defecto, como texto plano, el mismo que devuelve
+ * {@link Trip#showInfoTravel()}</li>
+ * <li>Con el parámetro {@code format=json}, como un documento JSON con los datos de
+ * cada tramo en el orden del viaje</li>
+ * </ul>
+ * Si las tarjetas no son válidas o no forman un único viaje, porque falta un tramo,
+ * el viaje se bifurca o hay tarjetas desconectadas, la respuesta tiene el código 400
+ * y el motivo en texto plano, con las anomalías descritas por
+ * {@link StrategySharedChain#checkSingleTrip(List, List)}. Cualquier otro error al
+ * ordenar el viaje se responde con el código 500.
+ * <p>
+ * Cada petición se atiende en su propio hilo virtual cuando la JVM los admite (Java
+ * 21 o posterior), y en un pool de hilos que crece bajo demanda en otro caso. Todas
+ * las peticiones comparten una única estrategia de ordenación sin estado, por
+ * defecto {@link StrategyAdaptive}. Los lugares de cada petición, o de cada lote,
+ * se registran en un registro propio del cargador, para que los datos recibidos no
+ * se acumulen en el registro por defecto.
+ * <p>
+ * Con mucha carga de viajes cortos, el servicio puede agrupar las peticiones en
+ * lotes con un {@link SortRequestCoalescer}, que carga y ordena juntas las
+ * peticiones que llegan en un intervalo de tiempo acotado. El servicio entrega al
+ * agrupador el cuerpo de cada petición sin cargar, y el agrupador comprueba que las
+ * tarjetas cargadas forman un único viaje.
+ * <p>
+ * {@code
+ * java -cp target/classes com.eduardo.mainapp.SortServer 8080 [tamañoLote [retardoMicros]]
+ * curl --data-binary @trip.txt "http://localhost:8080/sort?format=json"
+ * }
+ *
+ * @author eduardo
+ *
+ */
+public class SortServer {
+
+	/**
+	 * Ruta en la que se atienden las peticiones de ordenación
+	 */
+	public static final String SORT_PATH = "/sort";
+
+	/**
+	 * Puerto por defecto del servicio
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * Tamaño máximo por defecto del cuerpo de una petición, en bytes
+	 */
+	public static final int DEFAULT_MAX_BODY_SIZE = 16 << 20;
+
+	private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+	private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+
+	/**
+	 * Propiedad del servidor HTTP del JDK que desactiva el algoritmo de Nagle en las
+	 * conexiones aceptadas
+	 */
+	private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+	static {
+		/*
+		 * El servidor escribe la cabecera y el cuerpo de la respuesta por separado. Con el
+		 * algoritmo de Nagle activo, el cuerpo espera al ACK retardado del cliente y cada
+		 * petición tarda unos 40 ms. La propiedad se lee al cargar el servidor, por lo que
+		 * sólo se fija si no se ha indicado otro valor al arrancar la JVM
+		 */
+		if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+			System.setProperty(NO_DELAY_PROPERTY, "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final TripSorterStrategy strategy;
+	private final int maxBodySize;
+
+	/**
+	 * Agrupador en lotes de las peticiones, o null si cada petición se ordena por
+	 * separado
+	 */
+	private final SortRequestCoalescer coalescer;
+
+	/**
+	 * Construye el servicio con la estrategia {@link StrategyAdaptive} y el tamaño
+	 * máximo de petición por defecto ({@link #DEFAULT_MAX_BODY_SIZE})
+	 * @param address Dirección y puerto en los que escucha el servicio. El puerto 0
+	 * elige un puerto libre
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public SortServer(InetSocketAddress address) throws IOException {
+		this(address, new StrategyAdaptive(), DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * Construye el servicio
+	 * @param address Dirección y puerto en los que escucha el servicio. El puerto 0
+	 * elige un puerto libre
+	 * @param strategy Estrategia de ordenación compartida por todas las peticiones,
+	 * que debe poder usarse de forma concurrente desde varios hilos
+	 * @param maxBodySize Tamaño máximo del cuerpo de una petición, en bytes
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public SortServer(InetSocketAddress address, TripSorterStrategy strategy, int maxBodySize) throws IOException {
+		this(address, strategy, null, maxBodySize);
+	}
+
+	/**
+	 * Construye el servicio agrupando las peticiones en lotes. El agrupador no se
+	 * cierra al detener el servicio
+	 * @param address Dirección y puerto en los que escucha el servicio. El puerto 0
+	 * elige un puerto libre
+	 * @param coalescer Agrupador que carga y ordena las peticiones en lotes
+	 * @param maxBodySize Tamaño máximo del cuerpo de una petición, en bytes
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public SortServer(InetSocketAddress address, SortRequestCoalescer coalescer, int maxBodySize) throws IOException {
+		this(address, null, coalescer, maxBodySize);
+	}
+
+	private SortServer(InetSocketAddress address, TripSorterStrategy strategy, SortRequestCoalescer coalescer,
+			int maxBodySize) throws IOException {
+		if (maxBodySize <= 0) {
+			throw new IllegalArgumentException("El tamaño máximo de la petición debe ser positivo: " + maxBodySize);
+		}
+		this.strategy = strategy;
+		this.coalescer = coalescer;
+		this.maxBodySize = maxBodySize;
+		this.executor = requestExecutor();
+		this.server = HttpServer.create(address, 0);
+		this.server.createContext(SORT_PATH, this::handle);
+		this.server.setExecutor(executor);
+	}
+
+	/**
+	 * Arranca el servicio en el puerto indicado como primer argumento, o en
+	 * {@link #DEFAULT_PORT}. Si se indica como segundo argumento un tamaño máximo de
+	 * lote, las peticiones se agrupan en lotes con el retardo máximo indicado como
+	 * tercer argumento, en microsegundos
+	 * @param args Argumentos de la línea de comandos
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		InetSocketAddress address = new InetSocketAddress(port);
+		SortServer sortServer;
+		if (args.length > 1) {
+			long maxDelayMicros = args.length > 2 ? Long.parseLong(args[2]) : SortRequestCoalescer.DEFAULT_MAX_DELAY_MICROS;
+			SortRequestCoalescer coalescer = new SortRequestCoalescer(new StrategySharedChain(),
+					Integer.parseInt(args[1]), maxDelayMicros, TimeUnit.MICROSECONDS);
+			sortServer = new SortServer(address, coalescer, DEFAULT_MAX_BODY_SIZE);
+		} else {
+			sortServer = new SortServer(address);
+		}
+		sortServer.start();
+		System.out.println("Servicio de ordenación escuchando en http://localhost:" + sortServer.getPort() + SORT_PATH);
+	}
+
+	/**
+	 * Comienza a atender peticiones
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Deja de atender peticiones y libera el puerto y los hilos del servicio
+	 * @param delaySeconds Número máximo de segundos que se espera a que terminen las
+	 * peticiones en curso
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	/**
+	 * Permite obtener el puerto en el que escucha el servicio
+	 * @return El puerto del servicio
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Atiende una petición de ordenación
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				sendError(exchange, 405, "Método no permitido: " + exchange.getRequestMethod());
+				return;
+			}
+			byte[] body = readBody(exchange.getRequestBody());
+			if (body == null) {
+				sendError(exchange, 413, "La petición supera el tamaño máximo de " + maxBodySize + " bytes");
+				return;
+			}
+			Trip trip;
+			try {
+				trip = sortTrip(body);
+			} catch (IllegalArgumentException | IllegalStateException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			} catch (RuntimeException e) {
+				sendError(exchange, 500, "Error interno al ordenar el viaje: " + e);
+				return;
+			}
+			boolean json = "json".equals(queryParameter(exchange.getRequestURI(), "format"));
+			// La respuesta se genera completa para enviarla con su longitud
+			ByteArrayOutputStream response = new ByteArrayOutputStream(1024);
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(response, StandardCharsets.UTF_8))) {
+				if (json) {
+					writeJson(trip.getBoardingCards(), writer);
+				} else {
+					trip.writeInfoTravel(writer);
+				}
+			}
+			exchange.getResponseHeaders().set("Content-Type", json ? JSON_CONTENT_TYPE : TEXT_CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, response.size());
+			try (OutputStream out = exchange.getResponseBody()) {
+				response.writeTo(out);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Carga y ordena las tarjetas de embarque del cuerpo de una petición, por separado o
+	 * en el lote del agrupador
+	 * @return El viaje ordenado
+	 * @throws IllegalArgumentException si las tarjetas no son válidas o no forman un
+	 * único viaje
+	 */
+	private Trip sortTrip(byte[] body) {
+		if (coalescer != null) {
+			try {
+				return new Trip(coalescer.submit(ByteBuffer.wrap(body)).join());
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		MappedBoardingCardLoader loader = new MappedBoardingCardLoader();
+		List<BoardingCard> boardingCards = loader.load(ByteBuffer.wrap(body));
+		Trip trip = new Trip(boardingCards);
+		trip.setOrderingTravelStrategy(strategy);
+		trip.sortTrip(boardingCards);
+		StrategySharedChain.checkSingleTrip(boardingCards, trip.getBoardingCards());
+		return trip;
+	}
+
+	/**
+	 * Lee el cuerpo de la petición
+	 * @return Los bytes del cuerpo, o null si supera el tamaño máximo
+	 */
+	private byte[] readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int read;
+		while ((read = in.read(chunk)) != -1) {
+			if (body.size() + read > maxBodySize) {
+				return null;
+			}
+			body.write(chunk, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Obtiene el valor de un parámetro de la consulta de una URI
+	 * @return El valor del parámetro, o null si no aparece en la consulta
+	 */
+	private static String queryParameter(URI uri, String name) {
+		String query = uri.getRawQuery();
+		if (query == null) {
+			return null;
+		}
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			String key = equals < 0 ? parameter : parameter.substring(0, equals);
+			if (key.equals(name)) {
+				return equals < 0 ? "" : parameter.substring(equals + 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Escribe el itinerario ordenado de un viaje como un documento JSON:
+	 * <pre>
+	 * {"legs":[{"identifier":..,"type":..,"seat":..,"departure":{..},"destination":{..},"info":..}, ...]}
+	 * </pre>
+	 */
+	private static void writeJson(List<BoardingCard> sortedCards, Writer out) throws IOException {
+		out.write("{\"legs\":[");
+		boolean first = true;
+		for (BoardingCard bcard : sortedCards) {
+			if (!first) {
+				out.write(',');
+			}
+			first = false;
+			out.write("{\"identifier\":");
+			writeJsonString(bcard.getIdentifier(), out);
+			out.write(",\"type\":");
+			writeJsonString(BoardingCardLineFormatter.type(bcard), out);
+			out.write(",\"seat\":");
+			writeJsonString(bcard.getSeat(), out);
+			out.write(",\"departure\":");
+			writeJsonPlace(bcard.getDeparture(), out);
+			out.write(",\"destination\":");
+			writeJsonPlace(bcard.getDestination(), out);
+			out.write(",\"info\":");
+			writeJsonString(bcard.showInfo().trim(), out);
+			out.write('}');
+		}
+		out.write("]}");
+	}
+
+	private static void writeJsonPlace(Place place, Writer out) throws IOException {
+		out.write("{\"identifier\":");
+		writeJsonString(place.getIdentifier(), out);
+		out.write(",\"city\":");
+		writeJsonString(place.getCity(), out);
+		out.write(",\"country\":");
+		writeJsonString(place.getCountry(), out);
+		out.write('}');
+	}
+
+	private static void writeJsonString(String value, Writer out) throws IOException {
+		if (value == null) {
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+				break;
+			}
+		}
+		out.write('"');
+	}
+
+	/**
+	 * Crea el ejecutor de las peticiones: un hilo virtual por petición si la JVM los
+	 * admite, o un pool de hilos que crece bajo demanda en otro caso
+	 */
+	private static ExecutorService requestExecutor() {
+		try {
+			// Se invoca por reflexión para poder compilar y ejecutar con Java 17
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+}
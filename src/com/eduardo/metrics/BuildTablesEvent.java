@@ -0,0 +1,18 @@
+package com.eduardo.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR de la construcción de las tablas de lugares de salida y de llegada
+ * de las tarjetas de embarque, al comienzo de la ordenación de un viaje.
+ *
+ * @author eduardo
+ *
+ */
+@Name("com.eduardo.BuildTables")
+@Label("Build Departures/Destinations Tables")
+@Description("Construcción de las tablas de lugares de salida y de llegada")
+public final class BuildTablesEvent extends TripPhaseEvent {
+}
@@ -0,0 +1,18 @@
+package com.eduardo.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR de la búsqueda de la tarjeta de embarque en la que comienza un
+ * viaje.
+ *
+ * @author eduardo
+ *
+ */
+@Name("com.eduardo.InitialCard")
+@Label("Find Initial Boarding Card")
+@Description("Búsqueda de la tarjeta de embarque en la que comienza el viaje")
+public final class InitialCardEvent extends TripPhaseEvent {
+}
@@ -0,0 +1,153 @@
+package com.eduardo.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores enteros no negativos, como latencias en nanosegundos o
+ * longitudes de viaje, con buckets de tamaño logarítmico-lineal al estilo de
+ * HdrHistogram.
+ * <p>
+ * Los valores menores que 64 tienen su propio bucket. A partir de ahí, cada potencia
+ * de 2 se divide en 32 buckets del mismo tamaño, de modo que el error relativo de
+ * cualquier valor es menor del 3,2% y todo el rango de valores de tipo long cabe en
+ * menos de 2.000 buckets, reservados al construir el histograma.
+ * <p>
+ * El registro de un valor no usa cerrojos: sólo incrementa de forma atómica el
+ * contador de su bucket y actualiza el total, la suma y el máximo. Las consultas leen
+ * los contadores sin detener los registros, por lo que reflejan un estado
+ * aproximado si hay registros concurrentes.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Número de bits significativos con los que se distingue cada valor
+	 */
+	private static final int SIGNIFICANT_BITS = 6;
+
+	/**
+	 * Número de buckets de cada potencia de 2
+	 */
+	private static final int SUB_BUCKETS = 1 << (SIGNIFICANT_BITS - 1);
+
+	/**
+	 * Número total de buckets, suficiente para el mayor valor de tipo long
+	 */
+	private static final int BUCKETS = bucketIndex(Long.MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Registra un valor. Los valores negativos se registran como 0
+	 * <p>
+	 * Coste computacional del método: O(1)
+	 * @param value El valor
+	 */
+	public void record(long value) {
+		long v = Math.max(0, value);
+		counts.incrementAndGet(bucketIndex(v));
+		count.increment();
+		sum.add(v);
+		max.accumulate(v);
+	}
+
+	/**
+	 * Permite obtener el número de valores registrados
+	 * @return El número de valores registrados
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Permite obtener la media de los valores registrados
+	 * @return La media, o 0 si no hay valores registrados
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Permite obtener el mayor valor registrado
+	 * @return El mayor valor registrado, o 0 si no hay valores registrados
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Permite obtener el valor por debajo del cual queda el porcentaje indicado de los
+	 * valores registrados, con la precisión de los buckets del histograma
+	 * <p>
+	 * Coste computacional del método: O(b), siendo b el número de buckets
+	 * @param percentile El percentil, entre 0 y 100
+	 * @return El valor del percentil, o 0 si no hay valores registrados
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			snapshot[bucket] = counts.get(bucket);
+			total += snapshot[bucket];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		double p = Math.min(100, Math.max(0, percentile));
+		long target = Math.max(1, (long) Math.ceil(p / 100 * total));
+		long accumulated = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			accumulated += snapshot[bucket];
+			if (accumulated >= target) {
+				return Math.min(highestValue(bucket), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Borra todos los valores registrados. Los valores registrados de forma concurrente
+	 * con el borrado pueden conservarse sólo en parte
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Calcula el bucket de un valor no negativo
+	 */
+	private static int bucketIndex(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - (SIGNIFICANT_BITS - 1);
+		return exponent * SUB_BUCKETS + (int) (value >>> exponent);
+	}
+
+	/**
+	 * Calcula el mayor valor que corresponde a un bucket
+	 */
+	private static long highestValue(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket - exponent * SUB_BUCKETS;
+		return ((subBucket + 1) << exponent) - 1;
+	}
+}
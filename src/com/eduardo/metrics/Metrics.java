@@ -0,0 +1,84 @@
+package com.eduardo.metrics;
+
+/**
+ * Punto de acceso a la instrumentación de la ordenación y de la generación del texto
+ * de los viajes.
+ * <p>
+ * La instrumentación está desactivada por defecto: mientras no haya un destino de
+ * medidas instalado, el código instrumentado sólo comprueba si {@link #getSink()}
+ * devuelve null, sin medir tiempos ni reservar memoria. Se activa con
+ * {@link #enable()}, que instala un {@link TripMetrics} y lo publica como MBean de
+ * JMX, con {@link #setSink(MetricsSink)} para usar otro destino, o arrancando la
+ * aplicación con la propiedad de sistema {@code -Dcom.eduardo.metrics.enabled=true}.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public final class Metrics {
+
+	/**
+	 * Propiedad de sistema que activa la instrumentación al arrancar
+	 */
+	public static final String ENABLED_PROPERTY = "com.eduardo.metrics.enabled";
+
+	/**
+	 * Destino de las medidas, o null si la instrumentación está desactivada
+	 */
+	private static volatile MetricsSink sink;
+
+	static {
+		if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+			enable();
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Permite obtener el destino de las medidas
+	 * @return El destino de las medidas, o null si la instrumentación está desactivada
+	 */
+	public static MetricsSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Instala un destino de medidas
+	 * @param metricsSink El destino de las medidas, o null para desactivar la
+	 * instrumentación
+	 */
+	public static void setSink(MetricsSink metricsSink) {
+		sink = metricsSink;
+	}
+
+	/**
+	 * Permite saber si la instrumentación está activada
+	 * @return true si hay un destino de medidas instalado
+	 */
+	public static boolean isEnabled() {
+		return sink != null;
+	}
+
+	/**
+	 * Activa la instrumentación con un {@link TripMetrics} nuevo, registrado como
+	 * MBean de JMX con el nombre {@link TripMetrics#OBJECT_NAME}
+	 * @return Las medidas agregadas instaladas
+	 */
+	public static synchronized TripMetrics enable() {
+		TripMetrics metrics = new TripMetrics();
+		metrics.registerMBean();
+		sink = metrics;
+		return metrics;
+	}
+
+	/**
+	 * Desactiva la instrumentación y elimina el MBean de JMX, si estaba registrado
+	 */
+	public static synchronized void disable() {
+		sink = null;
+		TripMetrics.unregisterMBean();
+	}
+}
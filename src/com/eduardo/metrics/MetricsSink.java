@@ -0,0 +1,36 @@
+package com.eduardo.metrics;
+
+/**
+ * Destino de las medidas de la ordenación y de la generación del texto de los viajes.
+ * <p>
+ * Permite enviar las medidas a cualquier sistema de monitorización implementando esta
+ * interfaz e instalándola con {@link Metrics#setSink(MetricsSink)}. La implementación
+ * por defecto, {@link TripMetrics}, agrega las medidas en memoria y las publica como
+ * un MBean de JMX.
+ * <p>
+ * Los métodos se invocan desde los hilos que ordenan o muestran los viajes, por lo
+ * que las implementaciones deben ser seguras para su uso concurrente, rápidas y no
+ * lanzar excepciones.
+ *
+ * @author eduardo
+ *
+ */
+public interface MetricsSink {
+
+	/**
+	 * Registra una ordenación de un viaje
+	 * @param strategy Nombre de la estrategia de ordenación
+	 * @param tripLength Número de tarjetas de embarque del viaje
+	 * @param elapsedNanos Duración de la ordenación, en nanosegundos
+	 * @param failed true si la ordenación terminó con una excepción
+	 */
+	void recordSort(String strategy, int tripLength, long elapsedNanos, boolean failed);
+
+	/**
+	 * Registra la generación del texto de un viaje
+	 * @param tripLength Número de tarjetas de embarque del viaje
+	 * @param elapsedNanos Duración de la generación, en nanosegundos
+	 * @param failed true si la generación terminó con una excepción
+	 */
+	void recordRender(int tripLength, long elapsedNanos, boolean failed);
+}
@@ -0,0 +1,43 @@
+package com.eduardo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Medidas agregadas de una operación: número de invocaciones, número de fallos e
+ * histograma de latencias en nanosegundos
+ *
+ * @author eduardo
+ *
+ */
+final class OperationStats {
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	void record(long elapsedNanos, boolean failed) {
+		calls.increment();
+		if (failed) {
+			failures.increment();
+		}
+		latency.record(elapsedNanos);
+	}
+
+	long getCalls() {
+		return calls.sum();
+	}
+
+	long getFailures() {
+		return failures.sum();
+	}
+
+	LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	void reset() {
+		calls.reset();
+		failures.reset();
+		latency.reset();
+	}
+}
@@ -0,0 +1,17 @@
+package com.eduardo.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR de la generación del texto con la información de un viaje.
+ *
+ * @author eduardo
+ *
+ */
+@Name("com.eduardo.Render")
+@Label("Render Trip")
+@Description("Generación del texto con la información del viaje")
+public final class RenderEvent extends TripPhaseEvent {
+}
@@ -0,0 +1,18 @@
+package com.eduardo.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR del recorrido que coloca las tarjetas de embarque en el orden del
+ * viaje a partir de la tarjeta inicial.
+ *
+ * @author eduardo
+ *
+ */
+@Name("com.eduardo.SortCards")
+@Label("Sort Boarding Cards")
+@Description("Recorrido de las tarjetas de embarque desde la tarjeta inicial")
+public final class SortCardsEvent extends TripPhaseEvent {
+}
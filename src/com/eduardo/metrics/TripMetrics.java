@@ -0,0 +1,221 @@
+package com.eduardo.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Destino de medidas por defecto, que agrega en memoria las ordenaciones y las
+ * generaciones de texto de los viajes y las publica como un MBean de JMX.
+ * <p>
+ * Para las ordenaciones guarda el número de invocaciones, los fallos y el histograma
+ * de latencias, tanto en total como desglosados por estrategia de ordenación. Para la
+ * generación de texto guarda las mismas medidas en total. Además guarda la
+ * distribución de la longitud de los viajes ordenados.
+ * <p>
+ * Esta clase es segura para su uso concurrente desde varios hilos.
+ *
+ * @author eduardo
+ *
+ */
+public class TripMetrics implements MetricsSink, TripMetricsMXBean {
+
+	/**
+	 * Nombre con el que se registra el MBean por defecto
+	 */
+	public static final String OBJECT_NAME = "com.eduardo.metrics:type=TripMetrics";
+
+	private final OperationStats sorts = new OperationStats();
+	private final ConcurrentMap<String, OperationStats> sortsByStrategy = new ConcurrentHashMap<>();
+	private final OperationStats renders = new OperationStats();
+	private final LatencyHistogram tripLengths = new LatencyHistogram();
+
+	@Override
+	public void recordSort(String strategy, int tripLength, long elapsedNanos, boolean failed) {
+		sorts.record(elapsedNanos, failed);
+		OperationStats strategyStats = sortsByStrategy.get(strategy);
+		if (strategyStats == null) {
+			strategyStats = sortsByStrategy.computeIfAbsent(strategy, name -> new OperationStats());
+		}
+		strategyStats.record(elapsedNanos, failed);
+		tripLengths.record(tripLength);
+	}
+
+	@Override
+	public void recordRender(int tripLength, long elapsedNanos, boolean failed) {
+		renders.record(elapsedNanos, failed);
+	}
+
+	/**
+	 * Registra estas medidas en el servidor de MBeans de la plataforma con el nombre
+	 * {@link #OBJECT_NAME}, sustituyendo al MBean registrado anteriormente con dicho
+	 * nombre
+	 * @throws IllegalStateException si no se puede registrar el MBean
+	 */
+	public void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("No se puede registrar el MBean " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Elimina del servidor de MBeans de la plataforma el MBean registrado con el nombre
+	 * {@link #OBJECT_NAME}, si lo hay
+	 */
+	public static void unregisterMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException("No se puede eliminar el MBean " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Permite obtener el histograma de latencias de ordenación, en nanosegundos
+	 * @return El histograma de latencias de todas las ordenaciones
+	 */
+	public LatencyHistogram getSortLatency() {
+		return sorts.getLatency();
+	}
+
+	/**
+	 * Permite obtener el histograma de latencias de generación de texto, en
+	 * nanosegundos
+	 * @return El histograma de latencias de generación de texto
+	 */
+	public LatencyHistogram getRenderLatency() {
+		return renders.getLatency();
+	}
+
+	/**
+	 * Permite obtener el histograma de longitudes de los viajes ordenados
+	 * @return El histograma de número de tarjetas por viaje
+	 */
+	public LatencyHistogram getTripLengths() {
+		return tripLengths;
+	}
+
+	@Override
+	public long getSortCount() {
+		return sorts.getCalls();
+	}
+
+	@Override
+	public long getSortFailureCount() {
+		return sorts.getFailures();
+	}
+
+	@Override
+	public double getSortMeanMicros() {
+		return sorts.getLatency().getMean() / 1000;
+	}
+
+	@Override
+	public long getSortP50Micros() {
+		return micros(sorts.getLatency().getValueAtPercentile(50));
+	}
+
+	@Override
+	public long getSortP99Micros() {
+		return micros(sorts.getLatency().getValueAtPercentile(99));
+	}
+
+	@Override
+	public long getSortMaxMicros() {
+		return micros(sorts.getLatency().getMax());
+	}
+
+	@Override
+	public Map<String, Long> getSortCountByStrategy() {
+		return byStrategy(OperationStats::getCalls);
+	}
+
+	@Override
+	public Map<String, Long> getSortFailureCountByStrategy() {
+		return byStrategy(OperationStats::getFailures);
+	}
+
+	@Override
+	public Map<String, Long> getSortP99MicrosByStrategy() {
+		return byStrategy(stats -> micros(stats.getLatency().getValueAtPercentile(99)));
+	}
+
+	@Override
+	public long getRenderCount() {
+		return renders.getCalls();
+	}
+
+	@Override
+	public long getRenderFailureCount() {
+		return renders.getFailures();
+	}
+
+	@Override
+	public double getRenderMeanMicros() {
+		return renders.getLatency().getMean() / 1000;
+	}
+
+	@Override
+	public long getRenderP99Micros() {
+		return micros(renders.getLatency().getValueAtPercentile(99));
+	}
+
+	@Override
+	public double getTripLengthMean() {
+		return tripLengths.getMean();
+	}
+
+	@Override
+	public long getTripLengthP50() {
+		return tripLengths.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getTripLengthP99() {
+		return tripLengths.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getTripLengthMax() {
+		return tripLengths.getMax();
+	}
+
+	@Override
+	public void reset() {
+		sorts.reset();
+		sortsByStrategy.clear();
+		renders.reset();
+		tripLengths.reset();
+	}
+
+	private Map<String, Long> byStrategy(ToLongFunction<OperationStats> value) {
+		Map<String, Long> values = new TreeMap<>();
+		for (Map.Entry<String, OperationStats> entry : sortsByStrategy.entrySet()) {
+			values.put(entry.getKey(), value.applyAsLong(entry.getValue()));
+		}
+		return values;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
@@ -0,0 +1,54 @@
+package com.eduardo.metrics;
+
+import java.util.Map;
+
+/**
+ * Interfaz de gestión JMX de las medidas agregadas por {@link TripMetrics}.
+ * <p>
+ * Las latencias se expresan en microsegundos. Los desgloses por estrategia se
+ * indexan por el nombre simple de la clase de la estrategia de ordenación.
+ *
+ * @author eduardo
+ *
+ */
+public interface TripMetricsMXBean {
+
+	long getSortCount();
+
+	long getSortFailureCount();
+
+	double getSortMeanMicros();
+
+	long getSortP50Micros();
+
+	long getSortP99Micros();
+
+	long getSortMaxMicros();
+
+	Map<String, Long> getSortCountByStrategy();
+
+	Map<String, Long> getSortFailureCountByStrategy();
+
+	Map<String, Long> getSortP99MicrosByStrategy();
+
+	long getRenderCount();
+
+	long getRenderFailureCount();
+
+	double getRenderMeanMicros();
+
+	long getRenderP99Micros();
+
+	double getTripLengthMean();
+
+	long getTripLengthP50();
+
+	long getTripLengthP99();
+
+	long getTripLengthMax();
+
+	/**
+	 * Borra todas las medidas agregadas
+	 */
+	void reset();
+}
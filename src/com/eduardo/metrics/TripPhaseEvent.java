@@ -0,0 +1,83 @@
+package com.eduardo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JDK Flight Recorder que mide una fase de la ordenación o de la generación
+ * del texto de un viaje. Cada fase tiene su propio tipo de evento, de modo que una
+ * grabación de JFR muestra por separado la duración de cada fase.
+ * <p>
+ * Registran las fases de la ordenación las estrategias que construyen tablas o
+ * índices de las tarjetas ({@code StrategyNoStartNoEnd}, {@code StrategyIndexedChain},
+ * {@code StrategySharedChain} y {@code StrategyParallelListRanking}), incluidas las
+ * que elige {@code StrategyAdaptive}, cuyos eventos llevan el nombre de la estrategia
+ * elegida. {@code StrategyLinearScan} no construye ninguna tabla, por lo que sólo registra la búsqueda de la tarjeta inicial y el
+ * encadenamiento de las tarjetas. El resto de estrategias sólo registra la
+ * ordenación completa, como un {@link TripSortEvent}.
+ * <p>
+ * Mientras JFR no esté grabando el evento, crear el evento y llamar a
+ * {@link #begin()} y a {@link #finish(int, String, String)} no tiene un coste
+ * apreciable.
+ * <p>
+ * {@code
+ * BuildTablesEvent event = new BuildTablesEvent();
+ * event.begin();
+ * ...
+ * event.finish(boardingCards.size(), strategy, TripPhaseEvent.SUCCESS);
+ * }
+ *
+ * @author eduardo
+ *
+ */
+@Category("Trip Sorter")
+@StackTrace(false)
+public abstract class TripPhaseEvent extends Event {
+
+	/**
+	 * Resultado de una fase que terminó correctamente
+	 */
+	public static final String SUCCESS = "SUCCESS";
+
+	/**
+	 * Resultado de una fase que terminó con una excepción
+	 */
+	public static final String FAILURE = "FAILURE";
+
+	/**
+	 * Resultado de la búsqueda de la tarjeta inicial cuando el viaje no tiene ninguna
+	 */
+	public static final String NOT_FOUND = "NOT_FOUND";
+
+	@Label("Trip Length")
+	@Description("Número de tarjetas de embarque del viaje")
+	int tripLength;
+
+	@Label("Strategy")
+	@Description("Nombre de la estrategia de ordenación")
+	String strategy;
+
+	@Label("Outcome")
+	@Description("Resultado de la fase: SUCCESS, FAILURE o NOT_FOUND")
+	String outcome;
+
+	/**
+	 * Termina la medida de la fase y, si JFR está grabando el evento y la duración
+	 * supera el umbral configurado, registra el evento
+	 * @param tripLength Número de tarjetas de embarque del viaje
+	 * @param strategy Nombre de la estrategia de ordenación, o null si no hay
+	 * @param outcome Resultado de la fase
+	 */
+	public void finish(int tripLength, String strategy, String outcome) {
+		end();
+		if (shouldCommit()) {
+			this.tripLength = tripLength;
+			this.strategy = strategy;
+			this.outcome = outcome;
+			commit();
+		}
+	}
+}
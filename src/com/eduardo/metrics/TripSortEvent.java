@@ -0,0 +1,18 @@
+package com.eduardo.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR de la ordenación completa de un viaje con una estrategia de
+ * ordenación, que engloba las fases de la estrategia.
+ *
+ * @author eduardo
+ *
+ */
+@Name("com.eduardo.TripSort")
+@Label("Sort Trip")
+@Description("Ordenación completa de un viaje")
+public final class TripSortEvent extends TripPhaseEvent {
+}